@@ -0,0 +1,63 @@
+package num110_at_gmail_dot_com.malishchak;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Queen.findAngle, the angle calculation every AngleCheck candidate makes once per placed queen. Each
+ * operation finds the angle from a queen in the middle of the board to every square of the board.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueenBenchmark
+{
+    @Param({"8", "16", "32"})
+    public int m_BoardSize;
+
+    private int m_QueenX;
+    private int m_QueenY;
+
+    @Setup
+    public void setup()
+    {
+        m_QueenX = m_BoardSize / 2;
+        m_QueenY = m_BoardSize / 2;
+    }
+
+    @Benchmark
+    public void findAngle(Blackhole blackhole)
+    {
+        for (int y = 0; y < m_BoardSize; y++)
+        {
+            for (int x = 0; x < m_BoardSize; x++)
+            {
+                blackhole.consume(Queen.findAngle(m_QueenX, m_QueenY, x, y));
+            }
+        }
+    }
+}
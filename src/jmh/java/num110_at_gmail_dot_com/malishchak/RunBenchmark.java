@@ -0,0 +1,68 @@
+package num110_at_gmail_dot_com.malishchak;
+
+import num110_at_gmail_dot_com.malishchak.algorithms.BaseN3QueensAlgorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full run of an algorithm, from construction to its results, for a fixed problem set. Algorithms are
+ * selected by the same index as the -algorithm switch, and run with logging off and no metrics, checkpoint or deadline.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RunBenchmark
+{
+    @Param({"1", "2", "3", "4", "8"})
+    public int m_Algorithm;
+
+    @Param({"10", "13", "16"})
+    public int m_BoardSize;
+
+    @Param({"1"})
+    public int m_StartX;
+
+    @Setup
+    public void setup()
+    {
+        N3Queens.m_TargetQueens = m_BoardSize;
+        N3Queens.m_BoardWidth = m_BoardSize;
+        N3Queens.m_BoardHeight = m_BoardSize;
+        N3Queens.m_StartXOffset = m_StartX;
+        if (N3Queens.createAlgorithm(m_Algorithm) == null)
+        {
+            throw new IllegalArgumentException("No algorithm with index " + m_Algorithm + ".");
+        }
+    }
+
+    @Benchmark
+    public Results run()
+    {
+        BaseN3QueensAlgorithm algorithm = N3Queens.createAlgorithm(m_Algorithm);
+        algorithm.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        return algorithm.run();
+    }
+}
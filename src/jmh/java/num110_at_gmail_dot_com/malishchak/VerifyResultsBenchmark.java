@@ -0,0 +1,88 @@
+package num110_at_gmail_dot_com.malishchak;
+
+import num110_at_gmail_dot_com.malishchak.algorithms.BaseN3QueensAlgorithm;
+import num110_at_gmail_dot_com.malishchak.algorithms.MostConstrainedRowScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures N3Queens.verifyResults on a known solution for each board size. The solution is found and checked once
+ * during setup, so only the check itself is measured. verifyResults reports to standard output, which is discarded
+ * while the benchmark runs.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VerifyResultsBenchmark
+{
+    @Param({"8", "16", "24", "32"})
+    public int m_BoardSize;
+
+    private ArrayList<Queen> m_Solution;
+    private PrintStream m_StandardOut;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        N3Queens.m_TargetQueens = m_BoardSize;
+        N3Queens.m_BoardWidth = m_BoardSize;
+        N3Queens.m_BoardHeight = m_BoardSize;
+
+        MostConstrainedRowScanner scanner = new MostConstrainedRowScanner(m_BoardSize, m_BoardSize, m_BoardSize, 0);
+        scanner.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        Results results = scanner.run();
+        if (results.getSuccess() != 1)
+        {
+            throw new IllegalStateException("No solution found for a " + m_BoardSize + "x" + m_BoardSize + " board.");
+        }
+        m_Solution = results.getPlaced_queens();
+
+        m_StandardOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        if (!N3Queens.verifyResults(m_Solution))
+        {
+            System.setOut(m_StandardOut);
+            throw new IllegalStateException("Solution for a " + m_BoardSize + "x" + m_BoardSize + " board was rejected.");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        System.setOut(m_StandardOut);
+    }
+
+    @Benchmark
+    public boolean verifyResults()
+    {
+        return N3Queens.verifyResults(m_Solution);
+    }
+}
@@ -0,0 +1,86 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per-candidate conflict check of AngleCheckScannerUndo. The scanner is given the first half of a known
+ * solution, and each operation checks every square of the next row against those queens, as a run would when placing
+ * the next queen.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AngleCheckCandidateBenchmark
+{
+    @Param({"8", "16", "24", "32"})
+    public int m_BoardSize;
+
+    private AngleCheckScannerUndo m_Scanner;
+    private int m_Row;
+
+    @Setup
+    public void setup()
+    {
+        MostConstrainedRowScanner solver = new MostConstrainedRowScanner(m_BoardSize, m_BoardSize, m_BoardSize, 0);
+        solver.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        Results results = solver.run();
+        if (results.getSuccess() != 1)
+        {
+            throw new IllegalStateException("No solution found for a " + m_BoardSize + "x" + m_BoardSize + " board.");
+        }
+
+        //Take the queens of the first half of the rows, in row order as AngleCheckScannerUndo would have placed them
+        m_Row = m_BoardSize / 2;
+        ArrayList<Queen> placed = new ArrayList<Queen>();
+        for (int y = 0; y < m_Row; y++)
+        {
+            for (Queen queen : results.getPlaced_queens())
+            {
+                if (queen.getY() == y)
+                {
+                    placed.add(queen);
+                }
+            }
+        }
+        m_Scanner = new AngleCheckScannerUndo(m_BoardSize, m_BoardSize, m_BoardSize, 0);
+        m_Scanner.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        m_Scanner.setPlacedQueens(placed);
+    }
+
+    @Benchmark
+    public void checkRow(Blackhole blackhole)
+    {
+        for (int x = 0; x < m_BoardSize; x++)
+        {
+            blackhole.consume(m_Scanner.isCandidateSafe(x, m_Row));
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package num110_at_gmail_dot_com.malishchak;
+
+/**
+ * Container class for storing the results of exhaustive counting runs, which enumerate every solution for a problem
+ * set instead of stopping at the first
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class CountResults {
+
+    /**
+     * @return The date on which the counting run was completed as milliseconds after the UNIX epoch
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * @param date The date on which the counting run was completed as milliseconds after the UNIX epoch
+     */
+    public void setDate(long date) {
+        this.date = date;
+    }
+
+    /**
+     * @return The name of the algorithm that produced these counts
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param algorithm The name of the algorithm that produced these counts
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * @return The version of the algorithm that produced these counts
+     */
+    public int getAlgorithm_version() {
+        return algorithm_version;
+    }
+
+    /**
+     * @param algorithm_version The version of the algorithm that produced these counts
+     */
+    public void setAlgorithm_version(int algorithm_version) {
+        this.algorithm_version = algorithm_version;
+    }
+
+    /**
+     * @return The number of queens placed by each counted solution
+     */
+    public int getTarget_queens() {
+        return target_queens;
+    }
+
+    /**
+     * @param target_queens The number of queens placed by each counted solution
+     */
+    public void setTarget_queens(int target_queens) {
+        this.target_queens = target_queens;
+    }
+
+    /**
+     * @return The width of the chess board the solutions were counted on
+     */
+    public int getBoard_width() {
+        return board_width;
+    }
+
+    /**
+     * @param board_width The width of the chess board the solutions were counted on
+     */
+    public void setBoard_width(int board_width) {
+        this.board_width = board_width;
+    }
+
+    /**
+     * @return The height of the chess board the solutions were counted on
+     */
+    public int getBoard_height() {
+        return board_height;
+    }
+
+    /**
+     * @param board_height The height of the chess board the solutions were counted on
+     */
+    public void setBoard_height(int board_height) {
+        this.board_height = board_height;
+    }
+
+    /**
+     * @return The first x position searched. Solutions with the first queen left of this position are not counted
+     */
+    public int getStart_x() {
+        return start_x;
+    }
+
+    /**
+     * @param start_x The first x position searched. Solutions with the first queen left of this position are not counted
+     */
+    public void setStart_x(int start_x) {
+        this.start_x = start_x;
+    }
+
+    /**
+     * @return 1 if only one solution of each group of rotations and reflections was enumerated, and the others
+     * added by weight
+     */
+    public int getSymmetry_breaking() {
+        return symmetry_breaking;
+    }
+
+    /**
+     * @param symmetry_breaking 1 if only one solution of each group of rotations and reflections was enumerated, and
+     *                          the others added by weight
+     */
+    public void setSymmetry_breaking(int symmetry_breaking) {
+        this.symmetry_breaking = symmetry_breaking;
+    }
+
+    /**
+     * @return Number of worker threads the count was run with
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads Number of worker threads the count was run with
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return Total number of solutions found
+     */
+    public long getTotal_solutions() {
+        return total_solutions;
+    }
+
+    /**
+     * @param total_solutions Total number of solutions found
+     */
+    public void setTotal_solutions(long total_solutions) {
+        this.total_solutions = total_solutions;
+    }
+
+    /**
+     * @return Number of solutions found for each x position of the first queen
+     */
+    public long[] getColumn_counts() {
+        return column_counts;
+    }
+
+    /**
+     * @param column_counts Number of solutions found for each x position of the first queen
+     */
+    public void setColumn_counts(long[] column_counts) {
+        this.column_counts = column_counts;
+    }
+
+    /**
+     * @return Number of search nodes expanded while counting
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param nodes Number of search nodes expanded while counting
+     */
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return The total time in ms the count took
+     */
+    public long getCount_time_in_ms() {
+        return count_time_in_ms;
+    }
+
+    /**
+     * @param count_time_in_ms The total time in ms the count took
+     */
+    public void setCount_time_in_ms(long count_time_in_ms) {
+        this.count_time_in_ms = count_time_in_ms;
+    }
+
+    private long date;
+    private String algorithm;
+    private int algorithm_version;
+    private int target_queens;
+    private int board_width;
+    private int board_height;
+    private int start_x;
+    private int symmetry_breaking;
+    private int threads;
+    private long total_solutions;
+    private long[] column_counts = new long[0];
+    private long nodes;
+    private long count_time_in_ms;
+
+    /**
+     * @return The per-column counts as a comma separated string, as stored in the database
+     */
+    public String getColumnCountsString()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < column_counts.length; i++)
+        {
+            if (i > 0)
+            {
+                builder.append(',');
+            }
+            builder.append(column_counts[i]);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param columnCounts Per-column counts as a comma separated string, as stored in the database
+     */
+    public void setColumnCountsString(String columnCounts)
+    {
+        if (columnCounts == null || columnCounts.isEmpty())
+        {
+            column_counts = new long[0];
+            return;
+        }
+        String[] values = columnCounts.split(",");
+        column_counts = new long[values.length];
+        for (int i = 0; i < values.length; i++)
+        {
+            column_counts[i] = Long.parseLong(values[i].trim());
+        }
+    }
+
+    /**
+     * Print a simple summary of the counts, including per-column counts and search throughput
+     */
+    public void printCountsSummary()
+    {
+        System.out.println("===COUNT SUMMARY===");
+        System.out.println("TARGET: "+target_queens+" Queens. BOARD: "+board_width+"x"+board_height+".");
+        System.out.println("ALGORITHM: \""+algorithm+".\" VERSION: "+algorithm_version+". THREADS: "+threads+". SYMMETRY BREAKING: "+(symmetry_breaking > 0 ? "On" : "Off")+".");
+        System.out.println("SOLUTIONS: "+total_solutions+".");
+        for (int x = start_x; x < column_counts.length; x++)
+        {
+            System.out.println("\tFirst queen at x="+x+": "+column_counts[x]);
+        }
+        double seconds = Math.max(count_time_in_ms, 1) / 1000d;
+        System.out.println("NODES: "+nodes+". NODES/SEC: "+String.format("%.0f", nodes / seconds)+". SOLUTIONS/SEC: "+String.format("%.2f", total_solutions / seconds)+".");
+        System.out.println("RUNTIME: "+count_time_in_ms+"ms.");
+    }
+}
@@ -3,15 +3,37 @@ package num110_at_gmail_dot_com.malishchak;
 import num110_at_gmail_dot_com.malishchak.algorithms.AngleCheckScannerFullRestart;
 import num110_at_gmail_dot_com.malishchak.algorithms.AngleCheckScannerUndo;
 import num110_at_gmail_dot_com.malishchak.algorithms.BaseN3QueensAlgorithm;
+import num110_at_gmail_dot_com.malishchak.algorithms.BitboardScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.DistributedScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.DistributedWorker;
+import num110_at_gmail_dot_com.malishchak.algorithms.ForbiddenMaskScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.LubyRestartScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.MinConflictsSolver;
+import num110_at_gmail_dot_com.malishchak.algorithms.MostConstrainedRowScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.NogoodLearningScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.ParallelAngleCheckScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.SearchCheckpoint;
+import num110_at_gmail_dot_com.malishchak.algorithms.SearchEventLog;
+import num110_at_gmail_dot_com.malishchak.algorithms.SearchMetrics;
+import num110_at_gmail_dot_com.malishchak.algorithms.SlopeCheckScanner;
+import num110_at_gmail_dot_com.malishchak.algorithms.SolutionVerifier;
+import num110_at_gmail_dot_com.malishchak.algorithms.Verification;
+import num110_at_gmail_dot_com.malishchak.algorithms.WorkStealingScanner;
 import num110_at_gmail_dot_com.malishchak.databases.N3QueensDataContract;
 import num110_at_gmail_dot_com.malishchak.databases.N3QueensDatabaseAdapter;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.TimeZone;
+import javax.management.JMException;
 
 /**
  *  Primary program class to manage and run algorithms to solve the N-Queens problem, with the restriction no
@@ -62,16 +84,71 @@ public class N3Queens {
                                    "\t\t\t <board height>. Overwrites values from size switch\n" +
                                    "\t\t-algorithm <#>: Sets which algorithm to use. Defaults to 1\n" +
                                    "\t\t\t0=AngleCheckScannerFullRestart, 1=AngleCheckScannerUndo\n" +
+                                   "\t\t\t2=SlopeCheckScanner, 3=BitboardScanner,\n" +
+                                   "\t\t\t4=ForbiddenMaskScanner, 5=ParallelAngleCheckScanner,\n" +
+                                   "\t\t\t6=WorkStealingScanner, 7=MinConflictsSolver,\n" +
+                                   "\t\t\t8=MostConstrainedRowScanner, 9=LubyRestartScanner,\n" +
+                                   "\t\t\t10=NogoodLearningScanner\n" +
                                    "\t\t-logging <#>. Sets logging level to 0-3. Defaults to 1.\n" +
                                    "\t\t\t0=NONE, 1=SUMMARY, 2=VERBOSE, 3=DEBUG\n" +
+                                   "\t\t-eventlog <file>. Appends VERBOSE and DEBUG events to\n" +
+                                   "\t\t\t <file> instead of printing them.\n" +
                                    "\t\t-startX <#>. Sets the starting x position for algorithms.\n" +
                                    "\t\t\t Defaults to 0.\n" +
+                                   "\t\t-count. Counts every solution instead of stopping at the\n" +
+                                   "\t\t\t first, reporting counts for each first queen position.\n" +
+                                   "\t\t\t Requires algorithms 2-6 or 8-10. Algorithms 5 and 6\n" +
+                                   "\t\t\t count in parallel.\n" +
+                                   "\t\t-symmetry. Skips rotations and reflections of placements\n" +
+                                   "\t\t\t already searched. Applies to square boards with one\n" +
+                                   "\t\t\t queen per row and a startX of 0, for algorithms 2-6\n" +
+                                   "\t\t\t and 8-10.\n" +
+                                   "\t\t-seed <#>. Sets the random seed for algorithms 7 and 9,\n" +
+                                   "\t\t\t replaying the run saved with that seed. Defaults to\n" +
+                                   "\t\t\t a seed taken from the clock.\n" +
+                                   "\t\t-threads <#>. Sets the number of worker threads for\n" +
+                                   "\t\t\t parallel algorithms. Defaults to the number of\n" +
+                                   "\t\t\t available processors.\n" +
+                                   "\t\t-checkpoint <file>. Writes the search to <file> every\n" +
+                                   "\t\t\t minute so an interrupted run can be resumed. The\n" +
+                                   "\t\t\t file is removed once the run completes. Requires\n" +
+                                   "\t\t\t algorithms 1-4.\n" +
+                                   "\t\t-resume <file>. Resumes the run saved in checkpoint\n" +
+                                   "\t\t\t <file> with its algorithm and settings, continuing\n" +
+                                   "\t\t\t to checkpoint to <file> unless -checkpoint is given.\n" +
+                                   "\t\t-timeout <seconds>. Stops the run after <seconds> of\n" +
+                                   "\t\t\t wall-clock time and reports the best run found so\n" +
+                                   "\t\t\t far, saved as timed out. Timed out counts are partial\n" +
+                                   "\t\t\t and are not saved.\n" +
+                                   "\t\t-coordinator <port>. Splits the search into work units\n" +
+                                   "\t\t\t and serves them to workers connecting on <port>,\n" +
+                                   "\t\t\t in place of the -algorithm switch.\n" +
+                                   "\t\t-worker <host>:<port>. Runs as a worker for the\n" +
+                                   "\t\t\t coordinator at <host>:<port>, searching the units it\n" +
+                                   "\t\t\t hands out until the run is done. Other switches are\n" +
+                                   "\t\t\t ignored.\n" +
+                                   "\t\t-cached. Outputs a verified solution saved for the\n" +
+                                   "\t\t\t problem set, verified again, instead of running the\n" +
+                                   "\t\t\t algorithm. Runs the algorithm if none is saved.\n" +
+                                   "\t\t-fresh. Runs the algorithm even if -cached is given.\n" +
+                                   "\t\t-sweep. Times every combination of the values given to\n" +
+                                   "\t\t\t -n, -size, -algorithm and -startX, which may be\n" +
+                                   "\t\t\t ranges such as 10-16 or lists such as 1,2,4. Each\n" +
+                                   "\t\t\t trial is saved with the sweep id, and the median,\n" +
+                                   "\t\t\t p90 and max times of each configuration are output.\n" +
+                                   "\t\t-warmup <#>. Untimed runs of each sweep configuration\n" +
+                                   "\t\t\t before its trials. Defaults to 1.\n" +
+                                   "\t\t-trials <#>. Timed runs of each sweep configuration.\n" +
+                                   "\t\t\t Defaults to 5.\n" +
                                    "\n" +
                                    "\tExamples:\n" +
                                    "\t\t./N3Queens -n 12\n" +
                                    "\t\t\tAttempts to place 12 queens on a 12x12 board\n" +
                                    "\t\t./N3Queens -n 12 -size 16\n" +
-                                   "\t\t\tAttempts to place 12 queens on a 16x16 board\n";
+                                   "\t\t\tAttempts to place 12 queens on a 16x16 board\n" +
+                                   "\t\t./N3Queens -sweep -n 10-20 -algorithm 2,4 -startX 1\n" +
+                                   "\t\t\tTimes algorithms 2 and 4 on every board from 10x10\n" +
+                                   "\t\t\tto 20x20\n";
 
     /**
      * How to represent a queen when outputting board at end of run.
@@ -128,6 +205,99 @@ public class N3Queens {
      */
     public static int m_StartXOffset = 0;
 
+    /**
+     * Number of worker threads used by parallel algorithms
+     */
+    public static int m_Threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * If true, algorithms that support it skip placements that are rotations or reflections of placements they
+     * search anyway
+     */
+    public static boolean m_SymmetryBreaking = false;
+
+    /**
+     * If true, the algorithm counts every solution for the problem set instead of stopping at the first
+     */
+    public static boolean m_CountSolutions = false;
+
+    /**
+     * Seed for algorithms that make random choices, or null to let each run pick its own
+     */
+    public static Long m_RandomSeed = null;
+
+    /**
+     * File the search is periodically checkpointed to, or null for no checkpoints
+     */
+    public static File m_CheckpointFile = null;
+
+    /**
+     * Checkpoint the run continues from, or null to start afresh
+     */
+    public static SearchCheckpoint m_ResumeCheckpoint = null;
+
+    /**
+     * Wall-clock budget of the run, or 0 to run until the algorithm finishes
+     */
+    public static long m_TimeoutMillis = 0;
+
+    /**
+     * Port to serve work units to distributed workers on, or -1 to run the chosen algorithm locally
+     */
+    public static int m_CoordinatorPort = -1;
+
+    /**
+     * Host and port of the coordinator to work for, or null if this process is not a worker
+     */
+    public static String m_WorkerHost = null;
+    public static int m_WorkerPort = -1;
+
+    /**
+     * If true, every combination of the values given to -n, -size, -algorithm and -startX is timed over repeated
+     * trials instead of making a single run
+     */
+    public static boolean m_Sweep = false;
+
+    /**
+     * Values given to -n, -size, -algorithm and -startX, which may be ranges under -sweep. Sizes are null if no size
+     * was given, in which case each board is sized to its number of queens
+     */
+    public static int[] m_SweepQueens = null;
+    public static int[] m_SweepSizes = null;
+    public static int[] m_SweepAlgorithms = null;
+    public static int[] m_SweepStartXs = null;
+
+    /**
+     * True if the board width or height was fixed with -BoardX or -BoardY, overriding the sizes of a sweep
+     */
+    public static boolean m_SweepFixedWidth = false;
+    public static boolean m_SweepFixedHeight = false;
+
+    /**
+     * Untimed runs of each sweep configuration made before its trials, so the JIT has compiled the search first
+     */
+    public static int m_WarmupRuns = 1;
+
+    /**
+     * Timed runs of each sweep configuration
+     */
+    public static int m_Trials = 5;
+
+    /**
+     * File VERBOSE and DEBUG events are written to, or null to write them to standard output
+     */
+    public static File m_EventLogFile = null;
+
+    /**
+     * If true, a verified solution saved for the problem set is returned instead of running the algorithm
+     */
+    public static boolean m_UseCache = false;
+
+    /**
+     * If true, the algorithm is run even when -cached is given, so runs can be timed from scripts that pass -cached
+     */
+    public static boolean m_ForceFresh = false;
+
     /**
      * Parses the arguments provided on the command line into their respective variables.
      * If there is an error parsing the arguments, the m_Usage string will be output and the
@@ -149,6 +319,9 @@ public class N3Queens {
         //Did the user specify a specific height for the board? Overrides height from -size and -n
         boolean boardYSpecified = false;
 
+        //Checkpoint file to resume from. Its problem set and algorithm override those given on the command line
+        File resumeFile = null;
+
         //Print Usage if no arguments provided
         if(args.length==0)
         {
@@ -161,7 +334,8 @@ public class N3Queens {
                     case "-n": { //Number of queens and size of board equal to provided argument. "-n 10"
                         if ((i + 1) < args.length) {
                             try {
-                                m_TargetQueens = Integer.parseInt(args[i + 1]);
+                                m_SweepQueens = parseRange(args[i + 1]);
+                                m_TargetQueens = m_SweepQueens[0];
                                 if (!boardYSpecified && !boardSizeSpecified) m_BoardHeight = m_TargetQueens;
                                 if (!boardXSpecified && !boardSizeSpecified) m_BoardWidth = m_TargetQueens;
                                 i++;
@@ -177,7 +351,8 @@ public class N3Queens {
                     case "-size": { //Size of board equal to provided argument. "-size 10"
                         if ((i + 1) < args.length) {
                             try {
-                                int value = Integer.parseInt(args[i + 1]);
+                                m_SweepSizes = parseRange(args[i + 1]);
+                                int value = m_SweepSizes[0];
                                 if (!boardYSpecified) m_BoardHeight = value;
                                 if (!boardXSpecified) m_BoardWidth = value;
                                 boardSizeSpecified = true;
@@ -224,7 +399,8 @@ public class N3Queens {
                     case "-algorithm": { //Index of algorithm to run equal to provided argument. "-algorithm 1"
                         if ((i + 1) < args.length) {
                             try {
-                                m_TargetAlgorithmIndex = Integer.parseInt(args[i + 1]);
+                                m_SweepAlgorithms = parseRange(args[i + 1]);
+                                m_TargetAlgorithmIndex = m_SweepAlgorithms[0];
                                 i++;
                             } catch (NumberFormatException e) {
                                 System.err.println("Error parsing algorithm number:" + e);
@@ -255,7 +431,8 @@ public class N3Queens {
                     case "-startX": { //First zero-indexed X position for an algorithm equal to provided argument. "-startX 1"
                         if ((i + 1) < args.length) {
                             try {
-                                m_StartXOffset = Integer.parseInt(args[i + 1]);
+                                m_SweepStartXs = parseRange(args[i + 1]);
+                                m_StartXOffset = m_SweepStartXs[0];
                                 i++;
                             } catch (NumberFormatException e) {
                                 System.err.println("Error parsing logging level:" + e);
@@ -266,6 +443,171 @@ public class N3Queens {
                         }
                         break;
                     }
+                    case "-count": { //Count every solution instead of finding one. "-count"
+                        m_CountSolutions = true;
+                        break;
+                    }
+                    case "-symmetry": { //Enable symmetry breaking on square boards. "-symmetry"
+                        m_SymmetryBreaking = true;
+                        break;
+                    }
+                    case "-seed": { //Seed for algorithms that make random choices. "-seed 42"
+                        if ((i + 1) < args.length) {
+                            try {
+                                m_RandomSeed = Long.parseLong(args[i + 1]);
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing seed:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-threads": { //Number of worker threads for parallel algorithms. "-threads 8"
+                        if ((i + 1) < args.length) {
+                            try {
+                                m_Threads = Integer.parseInt(args[i + 1]);
+                                if (m_Threads < 1) {
+                                    argumentParseError = true;
+                                }
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing threads:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-checkpoint": { //File the search is periodically saved to. "-checkpoint n20.ckpt"
+                        if ((i + 1) < args.length) {
+                            m_CheckpointFile = new File(args[i + 1]);
+                            i++;
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-resume": { //Checkpoint file to resume the run from. "-resume n20.ckpt"
+                        if ((i + 1) < args.length) {
+                            resumeFile = new File(args[i + 1]);
+                            i++;
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-timeout": { //Seconds the run may take before reporting its best run. "-timeout 60"
+                        if ((i + 1) < args.length) {
+                            try {
+                                m_TimeoutMillis = Long.parseLong(args[i + 1]) * 1000;
+                                if (m_TimeoutMillis < 1) {
+                                    argumentParseError = true;
+                                }
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing timeout:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-coordinator": { //Serve the search to distributed workers. "-coordinator 5150"
+                        if ((i + 1) < args.length) {
+                            try {
+                                m_CoordinatorPort = Integer.parseInt(args[i + 1]);
+                                if (m_CoordinatorPort < 0 || m_CoordinatorPort > 65535) {
+                                    argumentParseError = true;
+                                }
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing coordinator port:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-worker": { //Work for the coordinator at the provided address. "-worker localhost:5150"
+                        if ((i + 1) < args.length) {
+                            int separator = args[i + 1].lastIndexOf(':');
+                            try {
+                                m_WorkerHost = args[i + 1].substring(0, Math.max(0, separator));
+                                m_WorkerPort = Integer.parseInt(args[i + 1].substring(separator + 1));
+                                if (separator <= 0 || m_WorkerPort < 1 || m_WorkerPort > 65535) {
+                                    argumentParseError = true;
+                                }
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing worker address:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-eventlog": { //File VERBOSE and DEBUG events are written to. "-eventlog trace.txt"
+                        if ((i + 1) < args.length) {
+                            m_EventLogFile = new File(args[i + 1]);
+                            i++;
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-cached": { //Answer from a verified solution saved for the problem set. "-cached"
+                        m_UseCache = true;
+                        break;
+                    }
+                    case "-fresh": { //Run the algorithm even if -cached is given. "-fresh"
+                        m_ForceFresh = true;
+                        break;
+                    }
+                    case "-sweep": { //Time every combination of ranges given to -n, -size, -algorithm and -startX. "-sweep"
+                        m_Sweep = true;
+                        break;
+                    }
+                    case "-warmup": { //Untimed runs of each sweep configuration before its trials. "-warmup 2"
+                        if ((i + 1) < args.length) {
+                            try {
+                                m_WarmupRuns = Integer.parseInt(args[i + 1]);
+                                if (m_WarmupRuns < 0) {
+                                    argumentParseError = true;
+                                }
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing warmup runs:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
+                    case "-trials": { //Timed runs of each sweep configuration. "-trials 10"
+                        if ((i + 1) < args.length) {
+                            try {
+                                m_Trials = Integer.parseInt(args[i + 1]);
+                                if (m_Trials < 1) {
+                                    argumentParseError = true;
+                                }
+                                i++;
+                            } catch (NumberFormatException e) {
+                                System.err.println("Error parsing trials:" + e);
+                                argumentParseError = true;
+                            }
+                        } else {
+                            argumentParseError = true;
+                        }
+                        break;
+                    }
                     default: {
                         //Unrecognized command line argument provided
                         argumentParseError = true;
@@ -278,19 +620,72 @@ public class N3Queens {
                 }
             }
 
-            switch (m_TargetAlgorithmIndex) {
-                case 0: {
-                    m_CurrentAlgorithm = new AngleCheckScannerFullRestart(m_TargetQueens, m_BoardWidth, m_BoardHeight, m_StartXOffset);
-                    break;
+            if (!argumentParseError) {
+                m_SweepFixedWidth = boardXSpecified;
+                m_SweepFixedHeight = boardYSpecified;
+                if (m_Sweep) {
+                    //Sweeps make many fresh runs of their own, so none of the single run modes apply
+                    if (m_CountSolutions || m_CheckpointFile != null || resumeFile != null || m_CoordinatorPort >= 0 || m_WorkerHost != null) {
+                        System.err.println("-sweep cannot be combined with -count, -checkpoint, -resume, -coordinator or -worker.");
+                        argumentParseError = true;
+                    }
+                    for (int index : (m_SweepAlgorithms != null ? m_SweepAlgorithms : new int[]{m_TargetAlgorithmIndex})) {
+                        if (createAlgorithm(index) == null) {
+                            System.err.println("No algorithm with index " + index + ".");
+                            argumentParseError = true;
+                        }
+                    }
+                } else if (isRange(m_SweepQueens) || isRange(m_SweepSizes) || isRange(m_SweepAlgorithms) || isRange(m_SweepStartXs)) {
+                    System.err.println("Ranges of values require -sweep.");
+                    argumentParseError = true;
                 }
-                case 1: {
-                    m_CurrentAlgorithm = new AngleCheckScannerUndo(m_TargetQueens, m_BoardWidth, m_BoardHeight, m_StartXOffset);
-                    break;
+            }
+
+            if (m_UseCache && !m_ForceFresh && (m_CountSolutions || resumeFile != null || m_CoordinatorPort >= 0 || m_Sweep)) {
+                System.err.println("-cached cannot be combined with -count, -resume, -coordinator or -sweep.");
+                argumentParseError = true;
+            }
+
+            if (resumeFile != null && !argumentParseError) {
+                try {
+                    m_ResumeCheckpoint = SearchCheckpoint.read(resumeFile);
+                } catch (IOException e) {
+                    System.err.println("Error reading checkpoint file " + resumeFile + ": " + e.getMessage());
+                    System.exit(1);
                 }
-                default: {
-                    argumentParseError = true;
+                m_TargetQueens = m_ResumeCheckpoint.getTargetQueens();
+                m_BoardWidth = m_ResumeCheckpoint.getBoardWidth();
+                m_BoardHeight = m_ResumeCheckpoint.getBoardHeight();
+                m_StartXOffset = m_ResumeCheckpoint.getStartXOffset();
+                m_SymmetryBreaking = m_ResumeCheckpoint.isSymmetryBreaking();
+                m_CountSolutions = m_ResumeCheckpoint.isCountingSolutions();
+                if (m_CheckpointFile == null) {
+                    m_CheckpointFile = resumeFile;
+                }
+
+                //Find the algorithm that wrote the checkpoint
+                m_TargetAlgorithmIndex = -1;
+                BaseN3QueensAlgorithm candidate;
+                for (int index = 0; (candidate = createAlgorithm(index)) != null; index++) {
+                    if (candidate.getAlgorithmName().equals(m_ResumeCheckpoint.getAlgorithmName())) {
+                        m_TargetAlgorithmIndex = index;
+                        break;
+                    }
+                }
+                if (m_TargetAlgorithmIndex < 0) {
+                    System.err.println("Checkpoint was written by unknown algorithm \"" + m_ResumeCheckpoint.getAlgorithmName() + "\".");
+                    System.exit(1);
                 }
             }
+
+            if (m_CoordinatorPort >= 0) {
+                m_CurrentAlgorithm = new DistributedScanner(m_TargetQueens, m_BoardWidth, m_BoardHeight, m_StartXOffset, m_CoordinatorPort);
+            } else {
+                m_CurrentAlgorithm = createAlgorithm(m_TargetAlgorithmIndex);
+            }
+            if (m_CurrentAlgorithm == null) {
+                argumentParseError = true;
+            }
         }
 
         //If there was an error print usage and exit
@@ -303,6 +698,142 @@ public class N3Queens {
 
     }
 
+    /**
+     * Parses the value of a switch that accepts a range under -sweep. Values may be a single number, an inclusive range
+     * such as 10-16, or a comma separated list of either, such as 8,10-12
+     * @param value Value given on the command line
+     * @return Every number the value covers, in the order given
+     * @throws NumberFormatException If the value is not a number, range or list of them
+     */
+    public static int[] parseRange(String value)
+    {
+        ArrayList<Integer> values = new ArrayList<Integer>();
+        for (String part : value.split(","))
+        {
+            int separator = part.indexOf('-', 1);
+            if (separator < 0)
+            {
+                values.add(Integer.parseInt(part));
+            }
+            else
+            {
+                int first = Integer.parseInt(part.substring(0, separator));
+                int last = Integer.parseInt(part.substring(separator + 1));
+                if (last < first)
+                {
+                    throw new NumberFormatException("Range \"" + part + "\" ends before it starts.");
+                }
+                for (int v = first; v <= last; v++)
+                {
+                    values.add(v);
+                }
+            }
+        }
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return True if values holds more than one value
+     */
+    private static boolean isRange(int[] values)
+    {
+        return values != null && values.length > 1;
+    }
+
+    /**
+     * Creates the algorithm with the given index for the parsed problem set, on the transposed board if
+     * isTransposedSearch
+     * @param index Index of the algorithm, as given to the -algorithm switch
+     * @return The algorithm, or null if there is no algorithm with that index
+     */
+    public static BaseN3QueensAlgorithm createAlgorithm(int index)
+    {
+        boolean transposed = isTransposedSearch();
+        int width = (transposed ? m_BoardHeight : m_BoardWidth);
+        int height = (transposed ? m_BoardWidth : m_BoardHeight);
+        switch (index) {
+            case 0: {
+                return new AngleCheckScannerFullRestart(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 1: {
+                return new AngleCheckScannerUndo(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 2: {
+                return new SlopeCheckScanner(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 3: {
+                return new BitboardScanner(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 4: {
+                return new ForbiddenMaskScanner(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 5: {
+                return new ParallelAngleCheckScanner(m_TargetQueens, width, height, m_StartXOffset, m_Threads);
+            }
+            case 6: {
+                return new WorkStealingScanner(m_TargetQueens, width, height, m_StartXOffset, m_Threads);
+            }
+            case 7: {
+                return new MinConflictsSolver(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 8: {
+                return new MostConstrainedRowScanner(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 9: {
+                return new LubyRestartScanner(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            case 10: {
+                return new NogoodLearningScanner(m_TargetQueens, width, height, m_StartXOffset);
+            }
+            default: {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Saves every distinct rotation and reflection of a verified solution to the solutions table, then reports how many
+     * distinct solutions are stored for the problem set
+     * @param results Results of a successful, verified run
+     */
+    private static void saveSymmetricSolutions(Results results)
+    {
+        SymmetricSolutions images = SymmetricSolutions.fromResults(results);
+        if(images == null)
+        {
+            return;
+        }
+        if(!N3QueensDatabaseAdapter.addSolutions(images) || !N3QueensDatabaseAdapter.flush())
+        {
+            System.err.println("Symmetric solutions failed to save to database.");
+            return;
+        }
+        System.out.println("Solution and its "+(images.getImages().size() - 1)+" distinct rotations and reflections saved to database.");
+        long[] counts = N3QueensDatabaseAdapter.getSolutionCounts(m_TargetQueens, m_BoardWidth, m_BoardHeight);
+        if(counts != null)
+        {
+            System.out.println(counts[0]+" distinct solutions in "+counts[1]+" symmetry classes saved for this problem set.");
+        }
+    }
+
+    /**
+     * Runs are searched on the transposed board when the algorithms prefer it. Counts, checkpoints, distributed runs and
+     * runs with a startX above 0 keep the board as given, as their start positions, column counts and saved frontiers
+     * are all taken along the first row of the board, which becomes the first column once transposed
+     * @return True if the current problem set is searched with the board's rows and columns exchanged
+     */
+    public static boolean isTransposedSearch()
+    {
+        return !m_CountSolutions && m_CheckpointFile == null && m_ResumeCheckpoint == null && m_CoordinatorPort < 0
+                && m_StartXOffset == 0
+                && BaseN3QueensAlgorithm.prefersTransposedBoard(m_TargetQueens, m_BoardWidth, m_BoardHeight);
+    }
+
     /**
      * Confirms that the found solution is correct
      * @param queens List of queens places by the solution
@@ -312,52 +843,362 @@ public class N3Queens {
     {
         System.out.println("Verifying results...");
 
-        //Check all queens placed
-        if(queens.size() != m_TargetQueens)
+        Verification verification = verifySolution(queens);
+        if(!verification.isVerified())
         {
-            System.out.println("SOLUTION REJECTED. Target was to place "+m_TargetQueens+" queens, solution placed "+queens.size()+".");
+            System.out.println("SOLUTION REJECTED. "+verification.getMessage());
             return false;
         }
+        System.out.println("Solution verified!");
+        return true;
+    }
 
-        //Check to ensure no queens threaten another, and no three queens form a straight line at any angle
-        HashMap<Double, Integer> angles = new HashMap<Double, Integer>();
-        for(int i = 0; i < queens.size(); i++)
+    /**
+     * Checks a solution for the current problem set exactly, using integer coordinates only
+     * @param queens List of queens placed by the solution
+     * @return Verification holding the reason the solution was rejected, and the queens involved, if it was
+     */
+    public static Verification verifySolution(ArrayList<Queen> queens)
+    {
+        return SolutionVerifier.verify(queens, m_TargetQueens, m_BoardWidth, m_BoardHeight);
+    }
+
+    /**
+     * Publishes live counters of the current algorithm's search over JMX, for jconsole or any other JMX client to watch
+     * without raising the logging level
+     */
+    private static void registerMetrics()
+    {
+        SearchMetrics metrics = new SearchMetrics(m_CurrentAlgorithm.getAlgorithmName());
+        try
         {
-            angles.clear();
-            Queen current = queens.get(i);
-            for (int j = 0; j < queens.size(); j++)
+            metrics.register();
+            m_CurrentAlgorithm.setMetrics(metrics);
+        }
+        catch (JMException e)
+        {
+            System.err.println("Search metrics could not be published over JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sends the current algorithm's VERBOSE and DEBUG events to the file given by the -eventlog switch. Without the
+     * switch, the algorithm writes them to standard output once its logging level is set
+     */
+    private static void setEventLog()
+    {
+        if(m_EventLogFile == null || m_TargetLoggingLevel < BaseN3QueensAlgorithm.LOGGING_LEVEL_VERBOSE)
+        {
+            return;
+        }
+        try
+        {
+            //Appended, so every trial of a sweep is kept
+            m_CurrentAlgorithm.setEventLog(new SearchEventLog(new PrintStream(new FileOutputStream(m_EventLogFile, true), false)));
+        }
+        catch (FileNotFoundException e)
+        {
+            System.err.println("Error opening event log file " + m_EventLogFile + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return Time spent in earlier sessions of a run resumed from a checkpoint, or 0 for a fresh run
+     */
+    private static long getResumedMillis()
+    {
+        return (m_ResumeCheckpoint != null ? m_ResumeCheckpoint.getElapsedMillis() : 0);
+    }
+
+    /**
+     * @param timerStart Time the run starts
+     * @return Deadline of a run starting at timerStart under the -timeout switch, or 0 for no deadline
+     */
+    private static long getDeadline(long timerStart)
+    {
+        return (m_TimeoutMillis > 0 ? timerStart + m_TimeoutMillis : 0);
+    }
+
+    /**
+     * Counts every solution for the problem set using the current algorithm, then outputs and saves the counts
+     */
+    public static void runCount()
+    {
+        System.out.println("Counting Solutions...");
+        long timerStart = System.currentTimeMillis();
+        m_CurrentAlgorithm.setDeadline(getDeadline(timerStart));
+        CountResults counts = m_CurrentAlgorithm.count();
+        long timerDuration = System.currentTimeMillis() - timerStart + getResumedMillis();
+        m_CurrentAlgorithm.closeEventLog();
+
+        if(counts == null)
+        {
+            System.out.println("Algorithm \""+m_CurrentAlgorithm.getAlgorithmName()+"\" does not support counting. Please choose algorithm 2-6 or 8-10.");
+            System.exit(1);
+        }
+        counts.setCount_time_in_ms(timerDuration);
+
+        if(m_CurrentAlgorithm.wasTimedOut())
+        {
+            //Partial counts would be mistaken for totals, so they are shown but never saved
+            System.out.println("\n\nCounting timed out after " + timerDuration + "ms total. Counts below are partial.\n");
+            counts.printCountsSummary();
+            System.out.println("\n");
+            System.out.println("Partial counts not saved to database.");
+            return;
+        }
+
+        System.out.println("\n\nCounting completed in " + timerDuration + "ms total.\n");
+        counts.printCountsSummary();
+        System.out.println("\n");
+
+        //Compare against the most recent count for this problem set before saving
+        ArrayList<CountResults> previousCounts = N3QueensDatabaseAdapter.getCounts("where "
+                + N3QueensDataContract.CountsTable.COLUMN_NAME_TARGET_QUEENS + " = " + m_TargetQueens
+                + " AND " + N3QueensDataContract.CountsTable.COLUMN_NAME_BOARD_WIDTH + " = " + m_BoardWidth
+                + " AND " + N3QueensDataContract.CountsTable.COLUMN_NAME_BOARD_HEIGHT + " = " + m_BoardHeight
+                + " AND " + N3QueensDataContract.CountsTable.COLUMN_NAME_START_X + " = " + m_StartXOffset
+                + " ORDER BY " + N3QueensDataContract.CountsTable.COLUMN_NAME_ID + " DESC LIMIT 1");
+        if(previousCounts != null && previousCounts.size() > 0)
+        {
+            CountResults previous = previousCounts.get(0);
+            if(previous.getTotal_solutions() == counts.getTotal_solutions())
             {
-                //Skip current queen
-                if(j==i)
-                {
-                    continue;
-                }
+                System.out.println("Count matches previous count by \""+previous.getAlgorithm()+"\" in "+previous.getCount_time_in_ms()+"ms.");
+            }
+            else
+            {
+                System.err.println("COUNT MISMATCH. Previous count by \""+previous.getAlgorithm()+"\" found "+previous.getTotal_solutions()+" solutions.");
+            }
+        }
 
-                Double angle = current.findAngle(queens.get(j));
-                if(angle % 45d == 0d)
-                {
-                    System.out.println("SOLUTION REJECTED. Queen "+(i+1)+" threatened by Queen "+(j+1)+".");
-                    return false;
-                }
-                Double oppositeAngle = (angle > 0d ? angle-180d : angle +180d);
-                if(angles.containsKey(angle) || angles.containsKey(oppositeAngle))
-                {
-                    int secondConflict = (angles.containsKey(angle) ? angles.get(angle) : angles.get(oppositeAngle));
-                    System.out.println("SOLUTION REJECTED. Queen "+(i+1)+" on a line with Queens "+(secondConflict+1)+" and "+(j+1)+".");
-                    return false;
-                }
-                else
+        if(N3QueensDatabaseAdapter.addCounts(counts) && N3QueensDatabaseAdapter.flush())
+        {
+            System.out.println("Counts saved to database.");
+        }
+        else
+        {
+            System.err.println("Counts failed to save to database.");
+        }
+    }
+
+    /**
+     * Times every combination of the algorithms, numbers of queens, board sizes and start positions given under -sweep
+     * in this JVM. Each configuration is run untimed m_WarmupRuns times, then timed m_Trials times. Every trial is
+     * verified and saved to the results table with the id of the sweep, and the median, 90th percentile and maximum
+     * times of each configuration are output once its trials finish and again as a table at the end of the sweep.
+     */
+    public static void runSweep()
+    {
+        long sweepId = System.currentTimeMillis();
+        int[] algorithms = (m_SweepAlgorithms != null ? m_SweepAlgorithms : new int[]{m_TargetAlgorithmIndex});
+        int[] queens = (m_SweepQueens != null ? m_SweepQueens : new int[]{m_TargetQueens});
+        int[] startXs = (m_SweepStartXs != null ? m_SweepStartXs : new int[]{m_StartXOffset});
+        int fixedWidth = m_BoardWidth;
+        int fixedHeight = m_BoardHeight;
+        ArrayList<String> summaries = new ArrayList<String>();
+        System.out.println("Sweep "+sweepId+" started. "+m_WarmupRuns+" warmup runs and "+m_Trials+" trials per configuration.");
+
+        for (int algorithmIndex : algorithms)
+        {
+            for (int targetQueens : queens)
+            {
+                int[] sizes = (m_SweepSizes != null ? m_SweepSizes : new int[]{targetQueens});
+                for (int size : sizes)
                 {
-                    angles.put(angle, j);
+                    int boardWidth = (m_SweepFixedWidth ? fixedWidth : size);
+                    int boardHeight = (m_SweepFixedHeight ? fixedHeight : size);
+                    for (int startX : startXs)
+                    {
+                        m_TargetQueens = targetQueens;
+                        m_BoardWidth = boardWidth;
+                        m_BoardHeight = boardHeight;
+                        m_StartXOffset = startX;
+                        String configuration = "ALGORITHM: \""+createAlgorithm(algorithmIndex).getAlgorithmName()+".\" TARGET: "+targetQueens+" Queens. BOARD: "+boardHeight+"x"+boardWidth+". STARTX: "+startX+".";
+                        if (startX < 0 || startX >= boardWidth)
+                        {
+                            System.out.println("\nSkipping "+configuration+" StartX is off the board.");
+                            continue;
+                        }
+
+                        System.out.println("\nSweeping "+configuration);
+                        for (int warmup = 0; warmup < m_WarmupRuns; warmup++)
+                        {
+                            runSweepTrial(algorithmIndex);
+                        }
+
+                        long[] times = new long[m_Trials];
+                        int solved = 0;
+                        for (int trial = 0; trial < m_Trials; trial++)
+                        {
+                            Results results = runSweepTrial(algorithmIndex);
+                            results.setSweep_id(sweepId);
+                            times[trial] = results.getSolution_time_in_ms();
+                            if (results.getSuccess() > 0 && results.getVerified() > 0)
+                            {
+                                solved++;
+                            }
+                            //Trials are written behind the sweep, many to a transaction
+                            if (!N3QueensDatabaseAdapter.addResults(results))
+                            {
+                                System.err.println("Trial "+(trial+1)+" failed to save to database.");
+                            }
+                            if (results.getSuccess() > 0 && results.getVerified() > 0)
+                            {
+                                SymmetricSolutions images = SymmetricSolutions.fromResults(results);
+                                if (images != null)
+                                {
+                                    N3QueensDatabaseAdapter.addSolutions(images);
+                                }
+                            }
+                        }
+
+                        Arrays.sort(times);
+                        String summary = configuration+" SOLVED: "+solved+" of "+m_Trials+". MEDIAN: "+getMedian(times)+"ms. P90: "+getPercentile(times, 90)+"ms. MAX: "+times[times.length - 1]+"ms.";
+                        System.out.println(summary);
+                        summaries.add(summary);
+                    }
                 }
             }
         }
-        System.out.println("Solution verified!");
+
+        if (!N3QueensDatabaseAdapter.flush())
+        {
+            System.err.println("Some trials failed to save to database.");
+        }
+
+        System.out.println("\n\n===SWEEP SUMMARY===");
+        System.out.println("SWEEP: "+sweepId+". WARMUP: "+m_WarmupRuns+". TRIALS: "+m_Trials+".");
+        for (String summary : summaries)
+        {
+            System.out.println(summary);
+        }
+    }
+
+    /**
+     * Makes one run of a sweep configuration with a fresh algorithm, on the problem set currently held by the parsed
+     * arguments
+     * @param algorithmIndex Index of the algorithm, as given to the -algorithm switch
+     * @return Results of the run, timed and verified, but not saved
+     */
+    private static Results runSweepTrial(int algorithmIndex)
+    {
+        m_CurrentAlgorithm = createAlgorithm(algorithmIndex);
+        m_CurrentAlgorithm.setKeepBestRun(m_KeepBestRun);
+        setEventLog();
+        m_CurrentAlgorithm.setLoggingLevel(m_TargetLoggingLevel);
+        m_CurrentAlgorithm.setSymmetryBreaking(m_SymmetryBreaking);
+        if(m_RandomSeed != null)
+        {
+            m_CurrentAlgorithm.setRandomSeed(m_RandomSeed);
+        }
+        registerMetrics();
+
+        long timerStart = System.currentTimeMillis();
+        m_CurrentAlgorithm.setDeadline(getDeadline(timerStart));
+        Results results = m_CurrentAlgorithm.run();
+        long timerDuration = System.currentTimeMillis() - timerStart;
+        m_CurrentAlgorithm.closeEventLog();
+        if(isTransposedSearch())
+        {
+            results.transpose();
+        }
+        boolean success = results.getSuccess() > 0;
+
+        results.setSolution_time_in_ms(timerDuration);
+        results.setTimed_out((!success && m_CurrentAlgorithm.wasTimedOut() ? 1 : 0));
+        results.setVerified(((success ? verifyResults(results.getPlaced_queens()) : true) ? 1 : 0));
+        return results;
+    }
+
+    /**
+     * @param sorted Times in ascending order
+     * @return Median of the times, the mean of the middle two for an even number of times
+     */
+    private static long getMedian(long[] sorted)
+    {
+        int middle = sorted.length / 2;
+        return (sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2);
+    }
+
+    /**
+     * @param sorted Times in ascending order
+     * @param percentile Percentile to find, from 1 to 100
+     * @return Smallest time at least percentile percent of the times are no greater than
+     */
+    private static long getPercentile(long[] sorted, int percentile)
+    {
+        int rank = (int)Math.ceil(percentile / 100d * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Looks up the fastest verified solution saved for the problem set, verifies it again and outputs it without
+     * running any algorithm. Cached answers are not saved, so they never count as runs of an algorithm
+     * @return True if a saved solution passed verification and was output, false if the algorithm should be run
+     */
+    public static boolean runCached()
+    {
+        System.out.println("Looking up cached solution...");
+        Results cached = N3QueensDatabaseAdapter.getCachedSolution(m_TargetQueens, m_BoardWidth, m_BoardHeight);
+        if(cached == null || cached.getPlaced_queens() == null)
+        {
+            System.out.println("No cached solution for this problem set, running algorithm.\n");
+            return false;
+        }
+
+        long verifyStart = System.nanoTime();
+        boolean verified = verifyResults(cached.getPlaced_queens());
+        long verifyMicros = (System.nanoTime() - verifyStart) / 1000;
+        if(!verified)
+        {
+            System.err.println("Cached solution failed verification, running algorithm.\n");
+            return false;
+        }
+
+        Date date = new Date(cached.getDate());
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        format.setTimeZone(TimeZone.getDefault());
+        System.out.println("\n\nCached solution verified in " + verifyMicros + "us. Found " + format.format(date) + ".");
+        cached.printPlacedQueens();
+        cached.printBoard();
+        System.out.println("\n");
+        cached.printResultsSummary();
         return true;
     }
 
+    /**
+     * Serves the coordinator given by the -worker switch until its run is done. Workers do not save results, the
+     * coordinator saves the results of the whole run
+     */
+    public static void runWorker()
+    {
+        DistributedWorker worker = new DistributedWorker(m_WorkerHost, m_WorkerPort);
+        worker.setLoggingLevel(m_TargetLoggingLevel);
+        try
+        {
+            worker.run();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Worker stopped, connection to coordinator "+m_WorkerHost+":"+m_WorkerPort+" failed: "+e.getMessage());
+            System.exit(1);
+        }
+    }
+
     public static void main(String[] args) {
         parseArguments(args);
+        if(m_WorkerHost != null)
+        {
+            runWorker();
+            return;
+        }
+        if(m_Sweep)
+        {
+            runSweep();
+            return;
+        }
         System.out.println("Argument Parsing complete. Queens: "+m_TargetQueens+", Board: "+m_BoardHeight+"x"+m_BoardWidth+", StartX: "+m_StartXOffset+".");
 
         //Validate parsed arguments. Format was correct, but bad values may have been used
@@ -368,6 +1209,11 @@ public class N3Queens {
             System.exit(1);
         }
 
+        if(m_UseCache && !m_ForceFresh && runCached())
+        {
+            return;
+        }
+
         //Track solution times
         long timerStart = 0;
         long timerDuration = 0;
@@ -378,21 +1224,56 @@ public class N3Queens {
             m_CurrentAlgorithm = new AngleCheckScannerUndo(m_TargetQueens, m_BoardWidth, m_BoardHeight, m_StartXOffset);
         }
         m_CurrentAlgorithm.setKeepBestRun(m_KeepBestRun);
+        setEventLog();
         m_CurrentAlgorithm.setLoggingLevel(m_TargetLoggingLevel);
+        m_CurrentAlgorithm.setSymmetryBreaking(m_SymmetryBreaking);
+        if(m_RandomSeed != null)
+        {
+            m_CurrentAlgorithm.setRandomSeed(m_RandomSeed);
+        }
+        if(m_CheckpointFile != null || m_ResumeCheckpoint != null)
+        {
+            if(!m_CurrentAlgorithm.supportsCheckpoints())
+            {
+                System.out.println("Algorithm \""+m_CurrentAlgorithm.getAlgorithmName()+"\" does not support checkpoints. Please choose algorithm 1-4.");
+                System.exit(1);
+            }
+            m_CurrentAlgorithm.setCheckpointFile(m_CheckpointFile, BaseN3QueensAlgorithm.DEFAULT_CHECKPOINT_INTERVAL_MS);
+            m_CurrentAlgorithm.setResumeCheckpoint(m_ResumeCheckpoint);
+        }
+        registerMetrics();
 
         //Output algorithm to be run
         System.out.println("\nRunning algorithm \""+m_CurrentAlgorithm.getAlgorithmName()+".\" version "+m_CurrentAlgorithm.getVersion()+".");
         System.out.println("\""+m_CurrentAlgorithm.getAlgorithmDescription()+"\"\n");
 
+        if(m_CountSolutions)
+        {
+            runCount();
+            return;
+        }
+
         //Execute algorithm, keeping track of total time to run
+        if(isTransposedSearch())
+        {
+            System.out.println("Searching the board transposed, along its "+m_BoardWidth+" columns. Queens are mapped back once the run ends.");
+        }
         System.out.println("Placing Queens...");
         timerStart = System.currentTimeMillis();
+        m_CurrentAlgorithm.setDeadline(getDeadline(timerStart));
         Results results = m_CurrentAlgorithm.run();
-        timerDuration = System.currentTimeMillis() - timerStart;
+        timerDuration = System.currentTimeMillis() - timerStart + getResumedMillis();
+        m_CurrentAlgorithm.closeEventLog();
+        if(isTransposedSearch())
+        {
+            //Map back to the board of the problem set before the results are verified and saved
+            results.transpose();
+        }
         boolean success = results.getSuccess() > 0;
 
         //Update results
         results.setSolution_time_in_ms(timerDuration);
+        results.setTimed_out((!success && m_CurrentAlgorithm.wasTimedOut() ? 1 : 0));
 
         //If algorithm reported solution was not found, assume algorithm was correct
         boolean verified = (success ? verifyResults(results.getPlaced_queens()) : true);
@@ -405,7 +1286,7 @@ public class N3Queens {
         }
         else
         {
-            System.out.println("\n\nNo solution found, attempt completed in " + timerDuration + "ms total.");
+            System.out.println("\n\nNo solution found, attempt " + (results.getTimed_out() > 0 ? "timed out after " : "completed in ") + timerDuration + "ms total.");
             System.out.println((m_KeepBestRun ? "Best" : "Final")+" Run (Iteration "+results.getBest_iteration()+"): "+results.getPlaced_queens().size()+" of "+m_TargetQueens+" placed. (Remaining: "+results.getRemaining_queens()+").");
         }
 
@@ -415,7 +1296,7 @@ public class N3Queens {
         results.printResultsSummary();
         System.out.println("\n");
 
-        if(N3QueensDatabaseAdapter.addResults(results))
+        if(N3QueensDatabaseAdapter.addResults(results) && N3QueensDatabaseAdapter.flush())
         {
             System.out.println("Results saved to database.");
         }
@@ -423,6 +1304,10 @@ public class N3Queens {
         {
             System.err.println("Results failed to save to database.");
         }
+        if(success && verified)
+        {
+            saveSymmetricSolutions(results);
+        }
 
         //Print best result thus far for this problem set
         System.out.println("\n");
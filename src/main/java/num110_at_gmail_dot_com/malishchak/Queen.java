@@ -75,6 +75,19 @@ public class Queen {
      * @return Angle from this queen to the target x,y coordinate relative to the horizontal.
      */
     public double findAngle(int otherX, int otherY)
+    {
+        return findAngle(x, y, otherX, otherY);
+    }
+
+    /**
+     * Finds the angle between two x,y coordinates relative to the horizontal, without needing a Queen object
+     * @param x X-position of the queen the angle is measured from.
+     * @param y Y-position of the queen the angle is measured from.
+     * @param otherX The target x-position to which an angle is needed.
+     * @param otherY The target y-position to which an angle is needed.
+     * @return Angle from (x,y) to the target x,y coordinate relative to the horizontal.
+     */
+    public static double findAngle(int x, int y, int otherX, int otherY)
     {
         return Math.toDegrees(Math.atan2(y-otherY, x-otherX));
     }
@@ -1,6 +1,7 @@
 package num110_at_gmail_dot_com.malishchak;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Container class for storing the results of algorithm runs
@@ -209,6 +210,82 @@ public class Results {
         this.placed_queens = placed_queens;
     }
 
+    /**
+     * Packs the placed queens for storage as the column of the queen on each row plus one, or 0 for a row without a
+     * queen. Rows take one byte on boards narrower than 255 squares, otherwise two bytes, high byte first
+     * @return The packed queens, or null if there are none, or they do not fit on the board one per row
+     */
+    public byte[] getPacked_queens() {
+        return packQueens(placed_queens, board_width, board_height);
+    }
+
+    /**
+     * Packs queens in the format of getPacked_queens
+     * @param queens Queens to pack
+     * @param board_width Width of the board the queens are placed on
+     * @param board_height Height of the board the queens are placed on
+     * @return The packed queens, or null if there are none, or they do not fit on the board one per row
+     */
+    public static byte[] packQueens(List<Queen> queens, int board_width, int board_height) {
+        if(queens == null || queens.size() == 0 || board_height < 1 || board_width < 1)
+        {
+            return null;
+        }
+        int bytesPerRow = (board_width < 255 ? 1 : 2);
+        byte[] packed = new byte[board_height * bytesPerRow];
+        for(Queen queen : queens)
+        {
+            int x = queen.getX();
+            int y = queen.getY();
+            if(x < 0 || x >= board_width || y < 0 || y >= board_height)
+            {
+                return null;
+            }
+            int value = x + 1;
+            if(bytesPerRow == 1)
+            {
+                if(packed[y] != 0)
+                {
+                    return null;
+                }
+                packed[y] = (byte)value;
+            }
+            else
+            {
+                if(packed[2 * y] != 0 || packed[2 * y + 1] != 0)
+                {
+                    return null;
+                }
+                packed[2 * y] = (byte)(value >>> 8);
+                packed[2 * y + 1] = (byte)value;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks queens packed by getPacked_queens into the placed queens, in row order. The board width and height must
+     * be set first
+     * @param packed The packed queens, or null to leave the placed queens unset
+     */
+    public void setPacked_queens(byte[] packed) {
+        if(packed == null)
+        {
+            return;
+        }
+        int bytesPerRow = (board_width < 255 ? 1 : 2);
+        ArrayList<Queen> queens = new ArrayList<Queen>();
+        for(int y = 0; y < packed.length / bytesPerRow; y++)
+        {
+            int value = (bytesPerRow == 1 ? packed[y] & 0xFF : ((packed[2 * y] & 0xFF) << 8) | (packed[2 * y + 1] & 0xFF));
+            if(value != 0)
+            {
+                queens.add(new Queen(value - 1, y));
+            }
+        }
+        placed_queens = queens;
+    }
+
     /**
      * @return Which iteration produced the provided result. Iteration numbering is determined by the algorithm.
      */
@@ -237,6 +314,109 @@ public class Results {
         this.total_iterations = total_iterations;
     }
 
+    /**
+     * @return Seed of the random choices made by the algorithm, allowing the run to be replayed. 0 for algorithms that
+     * make no random choices
+     */
+    public long getRandom_seed() {
+        return random_seed;
+    }
+
+    /**
+     * @param random_seed Seed of the random choices made by the algorithm, allowing the run to be replayed. 0 for
+     *                    algorithms that make no random choices
+     */
+    public void setRandom_seed(long random_seed) {
+        this.random_seed = random_seed;
+    }
+
+    /**
+     * @return Number of randomized attempts the algorithm started. 0 for algorithms that do not restart
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * @param attempts Number of randomized attempts the algorithm started. 0 for algorithms that do not restart
+     */
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    /**
+     * @return 1 if the run stopped at its wall-clock budget before finding a solution, in which case the placed queens
+     * are the best partial run found in time, otherwise 0
+     */
+    public int getTimed_out() {
+        return timed_out;
+    }
+
+    /**
+     * @param timed_out 1 if the run stopped at its wall-clock budget before finding a solution, otherwise 0
+     */
+    public void setTimed_out(int timed_out) {
+        this.timed_out = timed_out;
+    }
+
+    /**
+     * @return Id of the -sweep the run was a trial of, or 0 if it was a single run
+     */
+    public long getSweep_id() {
+        return sweep_id;
+    }
+
+    /**
+     * @param sweep_id Id of the -sweep the run was a trial of, or 0 if it was a single run
+     */
+    public void setSweep_id(long sweep_id) {
+        this.sweep_id = sweep_id;
+    }
+
+    /**
+     * @return 1 if the board was searched with its rows and columns exchanged and the queens mapped back, in which case
+     * first_queen_x counts down the first column rather than across the first row, otherwise 0
+     */
+    public int getTransposed() {
+        return transposed;
+    }
+
+    /**
+     * @param transposed 1 if the board was searched with its rows and columns exchanged, otherwise 0
+     */
+    public void setTransposed(int transposed) {
+        this.transposed = transposed;
+    }
+
+    /**
+     * Exchanges the rows and columns of the board and of every placed queen, mapping results found on a transposed
+     * board back to the board of the problem set, and marks the results as transposed. The first queen column becomes
+     * the column of the queen on the first row, or 0 if that row is empty, as transposed runs always start from column 0
+     */
+    public void transpose() {
+        int width = board_width;
+        board_width = board_height;
+        board_height = width;
+        if(placed_queens != null)
+        {
+            ArrayList<Queen> queens = new ArrayList<Queen>(placed_queens.size());
+            for(Queen queen : placed_queens)
+            {
+                queens.add(new Queen(queen.getY(), queen.getX()));
+            }
+            placed_queens = queens;
+            first_queen_x = 0;
+            for(Queen queen : queens)
+            {
+                if(queen.getY() == 0)
+                {
+                    first_queen_x = queen.getX();
+                }
+            }
+        }
+        transposed = (transposed > 0 ? 0 : 1);
+    }
+
 
     private long date;
     private String algorithm;
@@ -252,6 +432,11 @@ public class Results {
     private long solution_time_in_ms;
     private int best_iteration;
     private int total_iterations;
+    private long random_seed;
+    private int attempts;
+    private int timed_out;
+    private long sweep_id;
+    private int transposed;
     private ArrayList<Queen> placed_queens;
 
     /**
@@ -276,6 +461,11 @@ public class Results {
         result += "SolutionTime: " + solution_time_in_ms + "ms, ";
         result += "BestIteration: " + best_iteration + ", ";
         result += "TotalIterations: " + total_iterations + ", ";
+        result += "RandomSeed: " + random_seed + ", ";
+        result += "Attempts: " + attempts + ", ";
+        result += "TimedOut: " + timed_out + ", ";
+        result += "SweepId: " + sweep_id + ", ";
+        result += "Transposed: " + transposed + ", ";
 
         if(printQueens)
         {
@@ -309,9 +499,13 @@ public class Results {
         System.out.println("===RUN SUMMARY===");
         System.out.println("TARGET: "+target_queens+" Queens. BOARD: "+board_width+"x"+board_height+".");
         System.out.println("ALGORITHM: \""+algorithm+".\" VERSION: "+algorithm_version+".");
+        if(attempts>0)
+        {
+            System.out.println("SEED: "+random_seed+". ATTEMPTS: "+attempts+".");
+        }
         if(verified>0)
         {
-            System.out.println("RESULT: "+(success >0 ? "Success." : "Failure - Best Result was "+(target_queens - remaining_queens)+" of "+target_queens+" placed."));
+            System.out.println("RESULT: "+(success >0 ? "Success." : (timed_out>0 ? "Timed Out" : "Failure")+" - Best Result was "+(target_queens - remaining_queens)+" of "+target_queens+" placed."));
         }
         else
         {
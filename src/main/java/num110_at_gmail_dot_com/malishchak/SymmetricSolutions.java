@@ -0,0 +1,194 @@
+package num110_at_gmail_dot_com.malishchak;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Container class for the distinct rotations and reflections of a verified solution. Every rule of the problem is kept
+ * by the symmetries of the board, so each image is itself a solution, found with no further search. A square board has
+ * eight symmetries and any other board four: the identity, the two mirrors and the half turn. Images are held packed in
+ * the format of Results.getPacked_queens, and the smallest image, comparing bytes as unsigned values, is the canonical
+ * form shared by every solution in the same symmetry class.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SymmetricSolutions {
+
+    /**
+     * Finds the distinct images of a solution under the symmetries of its board
+     * @param results Results of a successful, verified run
+     * @return The images of the placed queens, including the queens as placed, or null if the queens could not be
+     * packed one per row
+     */
+    public static SymmetricSolutions fromResults(Results results)
+    {
+        int width = results.getBoard_width();
+        int height = results.getBoard_height();
+        ArrayList<Queen> queens = results.getPlaced_queens();
+        if(Results.packQueens(queens, width, height) == null)
+        {
+            return null;
+        }
+
+        SymmetricSolutions solutions = new SymmetricSolutions();
+        solutions.setDate(System.currentTimeMillis());
+        solutions.setAlgorithm(results.getAlgorithm());
+        solutions.setTarget_queens(results.getTarget_queens());
+        solutions.setBoard_width(width);
+        solutions.setBoard_height(height);
+
+        int symmetries = (width == height ? 8 : 4);
+        ArrayList<Queen> image = new ArrayList<Queen>(queens.size());
+        for(int symmetry = 0; symmetry < symmetries; symmetry++)
+        {
+            image.clear();
+            for(Queen queen : queens)
+            {
+                image.add(transform(queen.getX(), queen.getY(), width, height, symmetry));
+            }
+            byte[] packed = Results.packQueens(image, width, height);
+            boolean seen = false;
+            for(byte[] other : solutions.images)
+            {
+                seen |= Arrays.equals(packed, other);
+            }
+            if(!seen)
+            {
+                solutions.images.add(packed);
+                if(solutions.canonical_queens == null || Arrays.compareUnsigned(packed, solutions.canonical_queens) < 0)
+                {
+                    solutions.canonical_queens = packed;
+                }
+            }
+        }
+        return solutions;
+    }
+
+    /**
+     * @param x X-coordinate of a square
+     * @param y Y-coordinate of a square
+     * @param width Width of the board
+     * @param height Height of the board
+     * @param symmetry 0 to 3 for the identity, left-right mirror, top-bottom mirror and half turn, or on a square board
+     *                 4 to 7 for the main diagonal mirror, quarter turn, three quarter turn and anti-diagonal mirror
+     * @return A queen on the image of the square
+     */
+    private static Queen transform(int x, int y, int width, int height, int symmetry)
+    {
+        switch (symmetry) {
+            case 1: return new Queen(width - 1 - x, y);
+            case 2: return new Queen(x, height - 1 - y);
+            case 3: return new Queen(width - 1 - x, height - 1 - y);
+            case 4: return new Queen(y, x);
+            case 5: return new Queen(width - 1 - y, x);
+            case 6: return new Queen(y, height - 1 - x);
+            case 7: return new Queen(width - 1 - y, height - 1 - x);
+            default: return new Queen(x, y);
+        }
+    }
+
+    /**
+     * @return The date on which the images were found as milliseconds after the UNIX epoch
+     */
+    public long getDate() {
+        return date;
+    }
+
+    /**
+     * @param date The date on which the images were found as milliseconds after the UNIX epoch
+     */
+    public void setDate(long date) {
+        this.date = date;
+    }
+
+    /**
+     * @return The name of the algorithm that found the solution
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * @param algorithm The name of the algorithm that found the solution
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * @return Number of queens placed by each image
+     */
+    public int getTarget_queens() {
+        return target_queens;
+    }
+
+    /**
+     * @param target_queens Number of queens placed by each image
+     */
+    public void setTarget_queens(int target_queens) {
+        this.target_queens = target_queens;
+    }
+
+    /**
+     * @return Width of the board
+     */
+    public int getBoard_width() {
+        return board_width;
+    }
+
+    /**
+     * @param board_width Width of the board
+     */
+    public void setBoard_width(int board_width) {
+        this.board_width = board_width;
+    }
+
+    /**
+     * @return Height of the board
+     */
+    public int getBoard_height() {
+        return board_height;
+    }
+
+    /**
+     * @param board_height Height of the board
+     */
+    public void setBoard_height(int board_height) {
+        this.board_height = board_height;
+    }
+
+    /**
+     * @return The smallest of the packed images, shared by every solution in the symmetry class
+     */
+    public byte[] getCanonical_queens() {
+        return canonical_queens;
+    }
+
+    /**
+     * @return Each distinct image, packed in the format of Results.getPacked_queens
+     */
+    public ArrayList<byte[]> getImages() {
+        return images;
+    }
+
+    private long date;
+    private String algorithm;
+    private int target_queens;
+    private int board_width;
+    private int board_height;
+    private byte[] canonical_queens;
+    private ArrayList<byte[]> images = new ArrayList<byte[]>();
+}
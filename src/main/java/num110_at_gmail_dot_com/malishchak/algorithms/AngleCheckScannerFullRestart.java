@@ -4,12 +4,13 @@ import num110_at_gmail_dot_com.malishchak.Queen;
 import num110_at_gmail_dot_com.malishchak.Results;
 
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Basic algorithm that tries to place queens on the board abiding by the N3Queens conditions. Uses each square on the
  * first row beginning with the startXOffset and makes a single attempt to find a solution. If no solution found, it
- * discards the entire run and restarts at the next square on the first row.
+ * discards the entire run and restarts at the next square on the first row. Placed queens, the angles of the square
+ * being checked and the best run are held in primitive arrays that are reused, so no objects are allocated per square.
  *
  * @author nmalishchak
  * Copyright (C) 2021  Nick Malishchak
@@ -29,13 +30,30 @@ import java.util.List;
  */
 public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
 {
-    private List<Queen> m_PlacedQueens = new ArrayList<Queen>();
+    private int[] m_QueenXs = new int[0];
+    private int[] m_QueenYs = new int[0];
+    private int m_PlacedCount = 0;
     private int m_RemainingQueens = 0;
 
+    /**
+     * Squares tested since the counters were last published to the metrics
+     */
+    private long m_SquaresTested = 0;
+
+    /**
+     * Angles from the square being checked to each placed queen, reset for every square
+     */
+    private double[] m_Angles = new double[0];
+    private int m_AngleCount = 0;
+
+    private int[] m_BestXs = new int[0];
+    private int[] m_BestYs = new int[0];
+    private int m_BestCount = 0;
+
     public AngleCheckScannerFullRestart(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
     {
         super(targetQueens, boardWidth, boardHeight, startXOffset);
-        m_Version = 1;
+        m_Version = 2;
         m_AlgorithmName = "AngleCheckScannerFullRestart";
         m_AlgorithmDescription = "Iterates row-by-row through the chess board placing queens.\n" +
                 "First queen is placed at (0,0), each following potential queen checks the angle\n" +
@@ -60,35 +78,45 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
         int xStartPosition = m_StartXOffset;
         int yStartPosition = 0;
         m_RemainingQueens = m_TargetQueens;
+        allocateBuffers();
         while(m_RemainingQueens!=0 &&!startPositionsExhausted) {
+            publishMetrics(m_SquaresTested, m_PlacedCount);
+            m_SquaresTested = 0;
+            if (isStopRequested())
+            {
+                //Out of time, the best run so far is already kept
+                if(m_LoggingLevel>=LOGGING_LEVEL_SUMMARY) System.out.println("XXX "+(wasTimedOut() ? "Timed out" : "Cancelled")+" before X start position "+xStartPosition+". XXX");
+                break;
+            }
             secondTimerStart = System.currentTimeMillis();
             m_RemainingQueens = m_TargetQueens;
-            m_PlacedQueens.clear();
+            m_UndoCount += m_PlacedCount;
+            m_PlacedCount = 0;
             for (int y = yStartPosition; y < m_BoardHeight; y++) {
                 if (m_RemainingQueens == 0) {
                     break;
                 }
                 for (int x = (y==0 ? xStartPosition : 0); x < m_BoardWidth; x++) {
+                    m_SquaresTested++;
 
-
-                    if (m_PlacedQueens.isEmpty()) {
-                        m_PlacedQueens.add(new Queen(x, y));
-                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("(SUCCESS) First Queen " + m_PlacedQueens.size() + " placed at (" + x + "," + y + ").");
+                    if (m_PlacedCount == 0) {
+                        placeQueen(x, y);
+                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
                         m_RemainingQueens--;
                         break;
                     } else {
-                        List<Double> angles = new ArrayList<Double>();
+                        m_AngleCount = 0;
 
                         boolean successfulPlace = true;
-                        for (int j = 0; j < m_PlacedQueens.size(); j++) {
-                            Queen existingQueen = m_PlacedQueens.get(j);
-                            double angle = existingQueen.findAngle(x, y);
+                        for (int j = 0; j < m_PlacedCount; j++) {
+                            double angle = Queen.findAngle(m_QueenXs[j], m_QueenYs[j], x, y);
                             if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
-                                System.out.println("New Queen "+(m_PlacedQueens.size()+1)+" at (" + x + "," + y + ") has angle " + angle + " degrees to queen " + (j + 1) + " at (" + existingQueen.getX() + "," + existingQueen.getY() + ").");
+                                m_EventLog.angle(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], angle);
                             if (Math.round(angle) % 45 == 0) {
                                 //Threatened
                                 if (m_LoggingLevel>=LOGGING_LEVEL_VERBOSE)
-                                    System.out.println("(FAILURE) New Queen "+(m_PlacedQueens.size()+1)+" at (" + x + "," + y + ") threatened by queen " + (j + 1) + " at (" + existingQueen.getX() + "," + existingQueen.getY() + ").");
+                                    m_EventLog.rejectedByAttack(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j]);
+                                m_AttackRejectionCount++;
                                 successfulPlace = false;
                                 break;
                             } else {
@@ -100,38 +128,26 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
                                 if (angle < 0d) {
                                     angle += 360d;
                                 }
-                                if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
-                                    System.out.println("Checking angle " + angle + " and opposite " + oppositeAngle + ".");
-                                if (angles.contains(angle) || angles.contains(oppositeAngle)) {
+                                //Angles are stored in queen order, so the index of a matching angle is the index of its queen
+                                int conflictIndex = indexOfAngle(angle);
+                                if (conflictIndex < 0) {
+                                    conflictIndex = indexOfAngle(oppositeAngle);
+                                }
+                                if (conflictIndex >= 0) {
                                     //3 Queens in one line
-                                    if (m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) {
-                                        Queen conflict = null;
-                                        double conflictAngle;
-                                        int conflictIndex;
-                                        if (angles.contains(angle)) {
-                                            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG) System.out.println("Conflict at angle " + angle + ".");
-                                            conflictIndex = angles.indexOf(angle);
-                                            conflict = m_PlacedQueens.get(conflictIndex);
-                                            conflictAngle = angle;
-                                        } else {
-                                            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG) System.out.println("Conflict at angle " + oppositeAngle + ".");
-                                            conflictIndex = angles.indexOf(oppositeAngle);
-                                            conflict = m_PlacedQueens.get(conflictIndex);
-                                            conflictAngle = oppositeAngle;
-                                        }
-                                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("(FAILURE) New Queen "+(m_PlacedQueens.size()+1)+" at (" + x + "," + y + ") on line with queen " + (j + 1) + " (" + existingQueen.getX() + "," + existingQueen.getY() + ") at angle " + angle + " degrees and queen " + (conflictIndex + 1) + " (" + conflict.getX() + "," + conflict.getY() + ") at angle " + conflictAngle + " degrees.");
-                                    }
+                                    if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.rejectedByLine(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], conflictIndex + 1, m_QueenXs[conflictIndex], m_QueenYs[conflictIndex]);
+                                    m_LineRejectionCount++;
                                     successfulPlace = false;
                                     break;
                                 } else {
-                                    angles.add(angle);
+                                    m_Angles[m_AngleCount++] = angle;
                                 }
                             }
                         }
                         if (successfulPlace) {
                             //No Conflicts!
-                            m_PlacedQueens.add(new Queen(x, y));
-                            if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("(SUCCESS) New Queen " + m_PlacedQueens.size() + " placed at (" + x + "," + y + ").");
+                            placeQueen(x, y);
+                            if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
                             m_RemainingQueens--;
                             break;
                         }
@@ -144,10 +160,10 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
                 if(m_LoggingLevel>=LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration "+(xStartPosition+1)+" completed in "+secondTimerDuration+"ms. No solution found at X start position "+xStartPosition+". XXX");
                 if(m_KeepBestRun)
                 {
-                    if(m_PlacedQueens.size()>m_BestPlacedQueens.size())
+                    if(m_PlacedCount>m_BestCount)
                     {
                         //Remember new Best
-                        m_BestPlacedQueens = new ArrayList<Queen>(m_PlacedQueens);
+                        copyPlacedToBest();
                         m_BestRemainingQueens = m_RemainingQueens;
                         m_BestIteration = (xStartPosition+1);
                     }
@@ -159,7 +175,7 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
                 }
                 else
                 {
-                    if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("XXX Retrying with X start position "+xStartPosition+". XXX\n\n");
+                    if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.iterationEnded(xStartPosition, m_PlacedCount, m_TargetQueens, xStartPosition);
                 }
             }
             else
@@ -169,6 +185,9 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
         }
 
 
+        publishMetrics(m_SquaresTested, m_PlacedCount);
+        m_SquaresTested = 0;
+
         Results results = new Results();
         results.setAlgorithm(m_AlgorithmName);
         results.setAlgorithm_version(m_Version);
@@ -180,12 +199,12 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
         if(m_RemainingQueens==0)
         {
             //Solution Found, this is the new best run
-            results.setPlaced_queens(new ArrayList<Queen>(m_PlacedQueens));
+            results.setPlaced_queens(toQueens(m_QueenXs, m_QueenYs, m_PlacedCount));
             results.setRemaining_queens(m_RemainingQueens);
             results.setBest_iteration(xStartPosition+1);
             results.setTotal_iterations(xStartPosition+1);
             results.setSuccess(1);
-            results.setFirst_queen_x((m_PlacedQueens.size()>0 ? m_PlacedQueens.get(0).getX() : m_StartXOffset ));
+            results.setFirst_queen_x((m_PlacedCount>0 ? m_QueenXs[0] : m_StartXOffset ));
             results.setWas_best_run(1);
 
             return results;
@@ -195,19 +214,79 @@ public class AngleCheckScannerFullRestart extends BaseN3QueensAlgorithm
             if(!m_KeepBestRun)
             {
                 //We weren't told to track best run, so report final run
-                m_BestPlacedQueens = new ArrayList<Queen>(m_PlacedQueens);
+                copyPlacedToBest();
                 m_BestRemainingQueens = m_RemainingQueens;
                 m_BestIteration = (xStartPosition+1);
             }
-            results.setPlaced_queens(new ArrayList<Queen>(m_BestPlacedQueens));
+            results.setPlaced_queens(toQueens(m_BestXs, m_BestYs, m_BestCount));
             results.setRemaining_queens(m_BestRemainingQueens);
             results.setBest_iteration(m_BestIteration);
             results.setTotal_iterations(xStartPosition+1);
             results.setSuccess(0);
-            results.setFirst_queen_x((m_PlacedQueens.size()>0 ? m_PlacedQueens.get(0).getX() : m_StartXOffset ));
+            results.setFirst_queen_x((m_PlacedCount>0 ? m_QueenXs[0] : m_StartXOffset ));
             results.setWas_best_run((m_KeepBestRun ? 1: 0));
 
             return results;
         }
     }
+
+    /**
+     * Sizes the queen, angle and best run buffers for the board, keeping any best run from an earlier run
+     */
+    private void allocateBuffers()
+    {
+        int capacity = Math.max(1, m_TargetQueens);
+        if (m_QueenXs.length < capacity)
+        {
+            m_QueenXs = new int[capacity];
+            m_QueenYs = new int[capacity];
+            m_Angles = new double[capacity];
+            m_BestXs = Arrays.copyOf(m_BestXs, capacity);
+            m_BestYs = Arrays.copyOf(m_BestYs, capacity);
+        }
+    }
+
+    private void placeQueen(int x, int y)
+    {
+        m_QueenXs[m_PlacedCount] = x;
+        m_QueenYs[m_PlacedCount] = y;
+        m_PlacedCount++;
+        m_PlacementCount++;
+        if (m_PlacedCount > m_DeepestDepth)
+        {
+            m_DeepestDepth = m_PlacedCount;
+        }
+    }
+
+    /**
+     * @return Index of the first stored angle equal to angle, or -1 if there is none
+     */
+    private int indexOfAngle(double angle)
+    {
+        for (int i = 0; i < m_AngleCount; i++)
+        {
+            if (m_Angles[i] == angle)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void copyPlacedToBest()
+    {
+        System.arraycopy(m_QueenXs, 0, m_BestXs, 0, m_PlacedCount);
+        System.arraycopy(m_QueenYs, 0, m_BestYs, 0, m_PlacedCount);
+        m_BestCount = m_PlacedCount;
+    }
+
+    private static ArrayList<Queen> toQueens(int[] xs, int[] ys, int count)
+    {
+        ArrayList<Queen> queens = new ArrayList<Queen>(count);
+        for (int i = 0; i < count; i++)
+        {
+            queens.add(new Queen(xs[i], ys[i]));
+        }
+        return queens;
+    }
 }
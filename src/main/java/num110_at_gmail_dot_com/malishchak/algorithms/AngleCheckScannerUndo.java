@@ -3,12 +3,21 @@ package num110_at_gmail_dot_com.malishchak.algorithms;
 import num110_at_gmail_dot_com.malishchak.Queen;
 import num110_at_gmail_dot_com.malishchak.Results;
 
-import java.util.*;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Builds on the simpler AngleCheckScannerFullRestart class to implement an "undo" capability that will work backwards
  * to re-place recent queens when it fails to find a solution. Each time the algorithm needs to undo and re-place the
- * first queen, the algorithm treats this as a new iteration.
+ * first queen, the algorithm treats this as a new iteration. Placed queens, blocked columns, the angles of the square
+ * being checked and the best run are held in primitive arrays that are reused, so no objects are allocated per square.
+ *
+ * On boards with a LineTable, a square is checked with integer offsets for attacks and with a count of placed queens
+ * on each line through it, so no angles are computed. Larger boards compare the angles to each placed queen.
+ *
+ * Between two passes of the search its whole state is the placed queens and the square to continue from, so the
+ * checkpoints it writes share the row frontier format of BaseRowScannerAlgorithm.
  *
  * @author nmalishchak
  * Copyright (C) 2021 Nick Malishchak
@@ -27,7 +36,9 @@ import java.util.*;
  */
 public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
 {
-    private List<Queen> m_PlacedQueens = new ArrayList<Queen>();
+    private int[] m_QueenXs = new int[0];
+    private int[] m_QueenYs = new int[0];
+    private int m_PlacedCount = 0;
     private int m_RemainingQueens = 0;
     private int m_LastRootQueenRemovedIndex = -1;
     private boolean m_StartPositionsExhausted = false;
@@ -37,12 +48,54 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
     private int m_YStartPosition = 0;
     private int m_IterationCount = 0;
 
-    private HashMap<Integer, Integer> m_BlockedXPositions = new HashMap<Integer, Integer>();
+    /**
+     * Squares tested since the counters were last published to the metrics, and in total over every session of the run
+     */
+    private long m_SquaresTested = 0;
+    private long m_NodeCount = 0;
+
+    /**
+     * Time this session of the run started, and time spent in earlier sessions of a run resumed from a checkpoint
+     */
+    private long m_SessionStartTime = 0;
+    private long m_EarlierSessionsMillis = 0;
+
+    /**
+     * Time the next checkpoint is due, or Long.MAX_VALUE if this run writes none
+     */
+    private long m_NextCheckpointTime = Long.MAX_VALUE;
+
+    /**
+     * Columns holding a placed queen
+     */
+    private boolean[] m_BlockedXPositions = new boolean[0];
+
+    /**
+     * Angles from the square being checked to each placed queen, reset for every square
+     */
+    private double[] m_Angles = new double[0];
+    private int m_AngleCount = 0;
+
+    private int[] m_BestXs = new int[0];
+    private int[] m_BestYs = new int[0];
+    private int m_BestCount = 0;
+
+    /**
+     * Lines through three or more squares of the board, or null on boards too large for a line table
+     */
+    private LineTable m_LineTable = null;
+    private boolean m_LineTableLoaded = false;
+
+    /**
+     * Placed queens on each line of the line table, and the indices of the first two of them
+     */
+    private int[] m_LineCounts = new int[0];
+    private int[] m_LineQueens = new int[0];
 
     public AngleCheckScannerUndo(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
     {
         super(targetQueens, boardWidth, boardHeight, startXOffset);
-        m_Version = 3;
+        m_Version = 5;
         m_AlgorithmName = "AngleCheckScannerUndo";
         m_AlgorithmDescription = "Iterates row-by-row through the chess board placing queens.\n" +
                 "First queen is placed at (0,0), each following potential queen checks the angle\n" +
@@ -60,29 +113,56 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
                 "queen. This repeats each time a solution is not found. If the algorithm returns\n" +
                 "to the first queen, it will move the first queen one position to the right and\n" +
                 "start a new iteration. When all start positions for the first Queen on the first\n" +
-                "row are exhausted, the algorithm will give up.";
+                "row are exhausted, the algorithm will give up. On boards of up to 64x64 squares,\n" +
+                "the same checks are made exactly, with integer offsets for attacks and a count of\n" +
+                "placed queens on each line of the board's cached line table.";
     }
 
     @Override
     public Results run() {
         m_RemainingQueens = m_TargetQueens;
-        m_PlacedQueens.clear();
+        allocateBuffers();
+        m_PlacedCount = 0;
         m_IterationCount = 1;
         m_XStartPosition = m_StartXOffset;
+        m_YStartPosition = 0;
+        m_NodeCount = 0;
+        startSession();
+        boolean stopped = false;
 
         //Begin iterating across the chess board, continue until there's a solution or every
         //square in the first row have been exhausted
         while(m_RemainingQueens!=0 &&!m_StartPositionsExhausted) {
+            publishMetrics(m_SquaresTested, m_PlacedCount);
+            m_NodeCount += m_SquaresTested;
+            m_SquaresTested = 0;
+            if (isStopRequested())
+            {
+                //Out of time, report the best run so far
+                if(m_LoggingLevel>=LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration "+(m_IterationCount)+" "+(wasTimedOut() ? "timed out" : "cancelled")+" with "+m_PlacedCount+" of "+m_TargetQueens+" queens placed. XXX");
+                checkBestRun();
+                stopped = true;
+                if (m_NextCheckpointTime != Long.MAX_VALUE)
+                {
+                    //Save the square the run stopped on, so a timed out run loses no work
+                    writeCheckpoint();
+                }
+                break;
+            }
+            if (m_NextCheckpointTime != Long.MAX_VALUE && System.currentTimeMillis() >= m_NextCheckpointTime)
+            {
+                writeCheckpoint();
+            }
             m_IterationTimerStart = System.currentTimeMillis();
 
             for (int y = m_YStartPosition; y < m_BoardHeight; y++)
             {
                 //Check if complete
-                if (m_RemainingQueens == 0 || (m_PlacedQueens.size()>0 && !isSolutionPossibleIfQueenLast(m_PlacedQueens.size()-1))) {
+                if (m_RemainingQueens == 0 || (m_PlacedCount>0 && !isSolutionPossibleIfQueenLast(m_PlacedCount-1))) {
                     if(m_RemainingQueens != 0)
                     {
                         //Done, but unsuccessful
-                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("X Solution not possible with "+m_RemainingQueens+" queens and "+(m_BoardHeight-y)+" rows remaining.");
+                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.pruned(m_RemainingQueens, m_BoardHeight-y);
                     }
                     checkBestRun();
                     break;
@@ -90,81 +170,26 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
                 for (int x = (y==m_YStartPosition ? m_XStartPosition : 0); x < m_BoardWidth; x++)
                 {
                     //Skip checking squares we already know are threatened
-                    if(m_BlockedXPositions.containsKey(x))
+                    if(m_BlockedXPositions[x])
                     {
+                        m_AttackRejectionCount++;
                         continue;
                     }
+                    m_SquaresTested++;
 
-                    if (m_PlacedQueens.isEmpty()) {
+                    if (m_PlacedCount == 0) {
                         //Place first queen in first position
-                        m_PlacedQueens.add(new Queen(x, y));
-                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("(SUCCESS) First Queen " + m_PlacedQueens.size() + " placed at (" + x + "," + y + ").");
-                        m_BlockedXPositions.put(x,x);
+                        placeQueen(x, y);
+                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
                         m_RemainingQueens--;
                         break;
                     } else {
                         //Try to place second queen, if not threatened and not forming a line of 3 queens
-                        List<Double> angles = new ArrayList<Double>();
-
-                        boolean successfulPlace = true;
-
-                        //Check potential new queen against all already placed queens
-                        for (int j = 0; j < m_PlacedQueens.size(); j++) {
-                            Queen existingQueen = m_PlacedQueens.get(j);
-                            double angle = existingQueen.findAngle(x, y);
-                            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
-                                System.out.println("New Queen "+(m_PlacedQueens.size()+1)+" at (" + x + "," + y + ") has angle " + angle + " degrees to queen " + (j + 1) + " at (" + existingQueen.getX() + "," + existingQueen.getY() + ").");
-
-                            if (Math.round(angle) % 45 == 0) {
-                                //Threatened
-                                if (m_LoggingLevel>=LOGGING_LEVEL_VERBOSE)
-                                    System.out.println("(FAILURE) New Queen "+(m_PlacedQueens.size()+1)+" at (" + x + "," + y + ") threatened by queen " + (j + 1) + " at (" + existingQueen.getX() + "," + existingQueen.getY() + ").");
-                                successfulPlace = false;
-                                break;
-                            } else {
-                                //Search for queens found on same line
-                                double oppositeAngle = (angle >= 0d ? angle - 180d : angle + 180d);
-                                if (oppositeAngle < 0d) {
-                                    oppositeAngle += 360d;
-                                }
-                                if (angle < 0d) {
-                                    angle += 360d;
-                                }
-                                if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
-                                    System.out.println("Checking angle " + angle + " and opposite " + oppositeAngle + ".");
-                                if (angles.contains(angle) || angles.contains(oppositeAngle)) {
-                                    //3 Queens in one line, existing hash map entry means at least one other queen at
-                                    //same or opposite angle to queen currently being checked and potential new queen
-                                    if (m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) {
-                                        Queen conflict = null;
-                                        double conflictAngle;
-                                        int conflictIndex;
-                                        if (angles.contains(angle)) {
-                                            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG) System.out.println("Conflict at angle " + angle + ".");
-                                            conflictIndex = angles.indexOf(angle);
-                                            conflict = m_PlacedQueens.get(conflictIndex);
-                                            conflictAngle = angle;
-                                        } else {
-                                            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG) System.out.println("Conflict at angle " + oppositeAngle + ".");
-                                            conflictIndex = angles.indexOf(oppositeAngle);
-                                            conflict = m_PlacedQueens.get(conflictIndex);
-                                            conflictAngle = oppositeAngle;
-                                        }
-                                        if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("(FAILURE) New Queen "+(m_PlacedQueens.size()+1)+" at (" + x + "," + y + ") on line with queen " + (j + 1) + " (" + existingQueen.getX() + "," + existingQueen.getY() + ") at angle " + angle + " degrees and queen " + (conflictIndex + 1) + " (" + conflict.getX() + "," + conflict.getY() + ") at angle " + conflictAngle + " degrees.");
-                                    }
-                                    successfulPlace = false;
-                                    break;
-                                } else {
-                                    //No conflicts found yet, store angle for future queen checks
-                                    angles.add(angle);
-                                }
-                            }
-                        }
+                        boolean successfulPlace = isCandidateSafe(x, y);
                         if (successfulPlace) {
                             //No Conflicts!
-                            m_PlacedQueens.add(new Queen(x, y));
-                            if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("(SUCCESS) New Queen " + m_PlacedQueens.size() + " placed at (" + x + "," + y + ").");
-                            m_BlockedXPositions.put(x,x);
+                            placeQueen(x, y);
+                            if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
                             m_RemainingQueens--;
                             break;
                         }
@@ -175,18 +200,11 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
             if (m_RemainingQueens!=0)
             {
                 //Revert to last queen. If all variations since last root queen failed, revert root queen up one node
-                if(m_LoggingLevel>=LOGGING_LEVEL_DEBUG) System.out.println("Run failed! "+m_PlacedQueens.size()+" of "+m_TargetQueens+" placed.");
-                int nextRootIndex = m_PlacedQueens.size()-1;
+                int nextRootIndex = m_PlacedCount-1;
                 while(!isSolutionPossibleIfQueenLast(nextRootIndex) && nextRootIndex>=0)
                 {
-                    if(m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
-                    {
-                        Queen q = m_PlacedQueens.get(nextRootIndex);
-                        System.out.println("Solution not possible from Queen "+(nextRootIndex+1)+" ("+q.getX()+","+q.getY()+").");
-                    }
                     nextRootIndex--;
                 }
-                if(m_LoggingLevel>=LOGGING_LEVEL_DEBUG) System.out.println("NextRootIndex = "+(nextRootIndex+1)+".");
                 if(nextRootIndex<0)
                 {
                     //No solution possible
@@ -202,29 +220,22 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
                     checkBestRun();
                     //Move back to next possible index
                     m_LastRootQueenRemovedIndex = nextRootIndex;
-                    Queen removed = m_PlacedQueens.get(m_LastRootQueenRemovedIndex);
+                    int removedX = m_QueenXs[m_LastRootQueenRemovedIndex];
+                    int removedY = m_QueenYs[m_LastRootQueenRemovedIndex];
 
-                    //Remove all placed queens from the next possible index onwards
-                    if (m_LoggingLevel >= LOGGING_LEVEL_DEBUG)
-                        System.out.println("Removing " + (m_PlacedQueens.size() - m_LastRootQueenRemovedIndex) + " queens for revert from list of " + m_PlacedQueens.size() + " queens.");
-                    List<Queen> deletedQueens = m_PlacedQueens.subList(m_LastRootQueenRemovedIndex, m_PlacedQueens.size());
-                    for(int dq = 0; dq<deletedQueens.size(); dq++)
+                    //Remove all placed queens from the next possible index onwards, last placed first
+                    for(int dq = m_PlacedCount-1; dq>=m_LastRootQueenRemovedIndex; dq--)
                     {
-                        m_BlockedXPositions.remove(deletedQueens.get(dq).getX());
+                        m_BlockedXPositions[m_QueenXs[dq]] = false;
+                        removeFromLines(m_QueenXs[dq], m_QueenYs[dq]);
+                        if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.removed(dq + 1, m_QueenXs[dq], m_QueenYs[dq]);
                     }
-                    deletedQueens.clear();
-                    if (m_LoggingLevel >= LOGGING_LEVEL_DEBUG)
-                        System.out.println("Post revert list of placed queens has " + m_PlacedQueens.size() + " queens.");
-
-                    int oldRemaining = m_RemainingQueens;
-                    m_RemainingQueens = (m_TargetQueens - m_PlacedQueens.size());
-                    m_XStartPosition = removed.getX() + 1; //for loop will auto-roll to next row if end of row
-                    m_YStartPosition = removed.getY();
+                    m_UndoCount += m_PlacedCount - m_LastRootQueenRemovedIndex;
+                    m_PlacedCount = m_LastRootQueenRemovedIndex;
 
-                    if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE)
-                    {
-                        System.out.println("X No solution found. Reverted back to placing Queen " + (m_LastRootQueenRemovedIndex + 1) + ", previously at (" + removed.getX() + "," + removed.getY() + "). Resuming at (" + m_XStartPosition + "," + m_YStartPosition + "), " + m_RemainingQueens + " remain.");
-                    }
+                    m_RemainingQueens = (m_TargetQueens - m_PlacedCount);
+                    m_XStartPosition = removedX + 1; //for loop will auto-roll to next row if end of row
+                    m_YStartPosition = removedY;
                 }
             }
             else
@@ -233,6 +244,11 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
             }
         }
 
+        publishMetrics(m_SquaresTested, m_PlacedCount);
+        m_NodeCount += m_SquaresTested;
+        m_SquaresTested = 0;
+        finishSession(stopped);
+
         Results results = new Results();
         results.setAlgorithm(m_AlgorithmName);
         results.setAlgorithm_version(m_Version);
@@ -245,12 +261,12 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
         {
             if(m_LoggingLevel>=LOGGING_LEVEL_SUMMARY) System.out.println("!!! Solution found after "+m_IterationCount+" iterations.");
             //Solution Found, this is the new best run
-            results.setPlaced_queens(new ArrayList<Queen>(m_PlacedQueens));
+            results.setPlaced_queens(toQueens(m_QueenXs, m_QueenYs, m_PlacedCount));
             results.setRemaining_queens(m_RemainingQueens);
             results.setBest_iteration(m_IterationCount);
             results.setTotal_iterations(m_IterationCount);
             results.setSuccess(1);
-            results.setFirst_queen_x((m_PlacedQueens.size()>0 ? m_PlacedQueens.get(0).getX() : m_StartXOffset ));
+            results.setFirst_queen_x((m_PlacedCount>0 ? m_QueenXs[0] : m_StartXOffset ));
             results.setWas_best_run(1);
 
             return results;
@@ -262,44 +278,248 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
             if(!m_KeepBestRun)
             {
                 //We weren't told to track best run, so report final run
-                m_BestPlacedQueens = new ArrayList<Queen>(m_PlacedQueens);
+                copyPlacedToBest();
                 m_BestRemainingQueens = m_RemainingQueens;
                 m_BestIteration = m_IterationCount;
             }
-            results.setPlaced_queens(new ArrayList<Queen>(m_BestPlacedQueens));
+            results.setPlaced_queens(toQueens(m_BestXs, m_BestYs, m_BestCount));
             results.setRemaining_queens(m_BestRemainingQueens);
             results.setBest_iteration(m_BestIteration);
             results.setTotal_iterations(m_IterationCount);
             results.setSuccess(0);
-            results.setFirst_queen_x((m_PlacedQueens.size()>0 ? m_PlacedQueens.get(0).getX() : m_StartXOffset ));
+            results.setFirst_queen_x((m_PlacedCount>0 ? m_QueenXs[0] : m_StartXOffset ));
             results.setWas_best_run((m_KeepBestRun ? 1: 0));
 
             return results;
         }
     }
 
-    private boolean isSolutionPossibleIfQueenLast(Queen last)
+    @Override
+    public boolean supportsCheckpoints()
+    {
+        return true;
+    }
+
+    /**
+     * Starts the timer for this session of the run, schedules the first checkpoint, and restores the placed queens,
+     * counters and best run of the checkpoint being resumed, if there is one
+     */
+    private void startSession()
+    {
+        m_SessionStartTime = System.currentTimeMillis();
+        m_EarlierSessionsMillis = 0;
+        m_NextCheckpointTime = (m_CheckpointFile != null ? m_SessionStartTime + m_CheckpointIntervalMillis : Long.MAX_VALUE);
+
+        SearchCheckpoint resume = m_ResumeCheckpoint;
+        m_ResumeCheckpoint = null;
+        if (resume == null)
+        {
+            return;
+        }
+        if (!resume.isCheckpointOf(this, false))
+        {
+            throw new IllegalArgumentException("Checkpoint was written by a different algorithm, problem set or mode.");
+        }
+
+        //Each queen is checked against the queens above it, as the search placed it
+        for (int row = 0; row < resume.m_Row; row++)
+        {
+            int x = resume.m_RowColumns[row];
+            if (x == BaseRowScannerAlgorithm.ROW_SKIPPED)
+            {
+                continue;
+            }
+            if (m_PlacedCount >= m_TargetQueens || m_BlockedXPositions[x] || (m_PlacedCount > 0 && !isCandidateSafe(x, row)))
+            {
+                throw new IllegalArgumentException("Checkpoint frontier is not a legal placement.");
+            }
+            placeQueen(x, row);
+        }
+        m_RemainingQueens = m_TargetQueens - m_PlacedCount;
+        m_XStartPosition = resume.m_FromX;
+        m_YStartPosition = resume.m_Row;
+
+        m_EarlierSessionsMillis = resume.m_ElapsedMillis;
+        m_IterationCount = resume.m_IterationCount;
+        m_NodeCount = resume.m_NodeCount;
+        m_BestCount = resume.m_BestXs.length;
+        System.arraycopy(resume.m_BestXs, 0, m_BestXs, 0, m_BestCount);
+        System.arraycopy(resume.m_BestYs, 0, m_BestYs, 0, m_BestCount);
+        m_BestRemainingQueens = resume.m_BestRemainingQueens;
+        m_BestIteration = resume.m_BestIteration;
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Resuming from checkpoint in iteration " + m_IterationCount + " with " + m_PlacedCount + " queens placed, after " + m_NodeCount + " squares tested and " + m_EarlierSessionsMillis + "ms.");
+    }
+
+    /**
+     * Writes the placed queens and the square the next pass starts from to the checkpoint file. Must be called between
+     * two passes of the search. While no queen is placed there is no frontier to save, and the checkpoint is taken at
+     * the next pass instead
+     */
+    private void writeCheckpoint()
+    {
+        if (m_PlacedCount == 0)
+        {
+            return;
+        }
+        SearchCheckpoint checkpoint = SearchCheckpoint.of(this, false);
+        checkpoint.m_ElapsedMillis = m_EarlierSessionsMillis + System.currentTimeMillis() - m_SessionStartTime;
+        checkpoint.m_IterationCount = m_IterationCount;
+        checkpoint.m_NodeCount = m_NodeCount + m_SquaresTested;
+        checkpoint.m_ColumnCounts = new long[m_BoardWidth];
+
+        //Placed queens are all on rows above the start square, one per row, and the rows between them were passed over
+        checkpoint.m_FirstQueenX = m_QueenXs[0];
+        checkpoint.m_Row = m_YStartPosition;
+        checkpoint.m_FromX = m_XStartPosition;
+        checkpoint.m_RowColumns = new int[m_YStartPosition];
+        Arrays.fill(checkpoint.m_RowColumns, BaseRowScannerAlgorithm.ROW_SKIPPED);
+        for (int i = 0; i < m_PlacedCount; i++)
+        {
+            checkpoint.m_RowColumns[m_QueenYs[i]] = m_QueenXs[i];
+        }
+
+        checkpoint.m_BestXs = Arrays.copyOf(m_BestXs, m_BestCount);
+        checkpoint.m_BestYs = Arrays.copyOf(m_BestYs, m_BestCount);
+        checkpoint.m_BestRemainingQueens = m_BestRemainingQueens;
+        checkpoint.m_BestIteration = m_BestIteration;
+
+        try
+        {
+            checkpoint.write(m_CheckpointFile);
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("Checkpoint written to " + m_CheckpointFile.getName() + " in iteration " + m_IterationCount + ".");
+        }
+        catch (IOException e)
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Error writing checkpoint file " + m_CheckpointFile.getName() + ": " + e.getMessage());
+        }
+        m_NextCheckpointTime = System.currentTimeMillis() + m_CheckpointIntervalMillis;
+    }
+
+    /**
+     * Stops checkpoints for the session, removing the checkpoint file if the run was completed rather than stopped
+     */
+    private void finishSession(boolean stopped)
+    {
+        m_NextCheckpointTime = Long.MAX_VALUE;
+        if (m_CheckpointFile != null && !stopped && m_CheckpointFile.delete())
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("Run completed, checkpoint file " + m_CheckpointFile.getName() + " removed.");
+        }
+    }
+
+    /**
+     * Checks a square against every placed queen
+     * @return True if no placed queen threatens the square, and no two placed queens form a line with it
+     */
+    boolean isCandidateSafe(int x, int y)
+    {
+        if (m_LineTable == null)
+        {
+            return isCandidateSafeByAngle(x, y);
+        }
+
+        for (int j = 0; j < m_PlacedCount; j++)
+        {
+            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
+                m_EventLog.angle(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], Queen.findAngle(m_QueenXs[j], m_QueenYs[j], x, y));
+            if (DirectionChecker.isAttack(x - m_QueenXs[j], y - m_QueenYs[j]))
+            {
+                //Threatened
+                if (m_LoggingLevel>=LOGGING_LEVEL_VERBOSE)
+                    m_EventLog.rejectedByAttack(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j]);
+                m_AttackRejectionCount++;
+                return false;
+            }
+        }
+
+        int square = y * m_BoardWidth + x;
+        for (int i = m_LineTable.getLinesThroughCount(square) - 1; i >= 0; i--)
+        {
+            int line = m_LineTable.getLineThrough(square, i);
+            if (m_LineCounts[line] >= 2)
+            {
+                //3 Queens in one line, two placed queens already share a line with the potential new queen
+                int first = m_LineQueens[2 * line];
+                int second = m_LineQueens[2 * line + 1];
+                if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.rejectedByLine(m_PlacedCount+1, x, y, first + 1, m_QueenXs[first], m_QueenYs[first], second + 1, m_QueenXs[second], m_QueenYs[second]);
+                m_LineRejectionCount++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks a square against every placed queen by angle, storing the angle to each queen passed so far. Used on
+     * boards too large for a line table
+     * @return True if no placed queen threatens the square, and no two placed queens form a line with it
+     */
+    private boolean isCandidateSafeByAngle(int x, int y)
     {
-        return (m_BoardHeight-last.getY()>=m_RemainingQueens && last.getX() < (m_BoardWidth-1));
+        m_AngleCount = 0;
+
+        boolean successfulPlace = true;
+
+        //Check potential new queen against all already placed queens
+        for (int j = 0; j < m_PlacedCount; j++) {
+            double angle = Queen.findAngle(m_QueenXs[j], m_QueenYs[j], x, y);
+            if (m_LoggingLevel>=LOGGING_LEVEL_DEBUG)
+                m_EventLog.angle(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], angle);
+
+            if (Math.round(angle) % 45 == 0) {
+                //Threatened
+                if (m_LoggingLevel>=LOGGING_LEVEL_VERBOSE)
+                    m_EventLog.rejectedByAttack(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j]);
+                m_AttackRejectionCount++;
+                successfulPlace = false;
+                break;
+            } else {
+                //Search for queens found on same line
+                double oppositeAngle = (angle >= 0d ? angle - 180d : angle + 180d);
+                if (oppositeAngle < 0d) {
+                    oppositeAngle += 360d;
+                }
+                if (angle < 0d) {
+                    angle += 360d;
+                }
+                //Angles are stored in queen order, so the index of a matching angle is the index of its queen
+                int conflictIndex = indexOfAngle(angle);
+                if (conflictIndex < 0) {
+                    conflictIndex = indexOfAngle(oppositeAngle);
+                }
+                if (conflictIndex >= 0) {
+                    //3 Queens in one line, a stored angle means at least one other queen at same or
+                    //opposite angle to queen currently being checked and potential new queen
+                    if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.rejectedByLine(m_PlacedCount+1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], conflictIndex + 1, m_QueenXs[conflictIndex], m_QueenYs[conflictIndex]);
+                    m_LineRejectionCount++;
+                    successfulPlace = false;
+                    break;
+                } else {
+                    //No conflicts found yet, store angle for future queen checks
+                    m_Angles[m_AngleCount++] = angle;
+                }
+            }
+        }
+        return successfulPlace;
     }
 
     private boolean isSolutionPossibleIfQueenLast(int index)
     {
-        if(index < 0 || index > m_PlacedQueens.size())
+        if(index < 0 || index >= m_PlacedCount)
         {
             return false;
         }
-        Queen last = m_PlacedQueens.get(index);
-        return (m_BoardHeight-last.getY()>m_RemainingQueens);
+        return (m_BoardHeight-m_QueenYs[index]>m_RemainingQueens);
     }
 
     private void resetFirstQueen()
     {
         m_YStartPosition = 0;
-        Queen q = m_PlacedQueens.get(0);
-        m_XStartPosition = q.getX()+1;
+        int firstX = m_QueenXs[0];
+        int firstY = m_QueenYs[0];
+        m_XStartPosition = firstX+1;
         m_IterationTimerDuration = System.currentTimeMillis() - m_IterationTimerStart;
-        if(m_LoggingLevel>=LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration "+(m_IterationCount)+" completed in "+ m_IterationTimerDuration +"ms. No solution found at Queen 1 start position ("+q.getX()+","+q.getY()+"). XXX");
+        if(m_LoggingLevel>=LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration "+(m_IterationCount)+" completed in "+ m_IterationTimerDuration +"ms. No solution found at Queen 1 start position ("+firstX+","+firstY+"). XXX");
         checkBestRun();
 
         if(m_XStartPosition>=m_BoardWidth)
@@ -308,11 +528,13 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
         }
         else
         {
-            m_PlacedQueens.clear();
+            if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) m_EventLog.iterationEnded(m_IterationCount, m_PlacedCount, m_TargetQueens, m_XStartPosition);
+            m_UndoCount += m_PlacedCount;
+            m_PlacedCount = 0;
             m_RemainingQueens = m_TargetQueens;
             m_IterationCount++;
-            m_BlockedXPositions.clear();
-            if(m_LoggingLevel>=LOGGING_LEVEL_VERBOSE) System.out.println("XXX Retrying with Queen 1 X start position "+m_XStartPosition+". XXX\n\n");
+            Arrays.fill(m_BlockedXPositions, false);
+            Arrays.fill(m_LineCounts, 0);
         }
     }
 
@@ -320,13 +542,135 @@ public class AngleCheckScannerUndo extends BaseN3QueensAlgorithm
     {
         if(m_KeepBestRun)
         {
-            if(m_PlacedQueens.size()>m_BestPlacedQueens.size())
+            if(m_PlacedCount>m_BestCount)
             {
                 //Remember new Best
-                m_BestPlacedQueens = new ArrayList<Queen>(m_PlacedQueens);
+                copyPlacedToBest();
                 m_BestRemainingQueens = m_RemainingQueens;
                 m_BestIteration = (m_XStartPosition+1);
             }
         }
     }
+
+    /**
+     * Sizes the queen, column, angle and best run buffers for the board, keeping any best run from an earlier run, and
+     * loads the line table with every line empty
+     */
+    private void allocateBuffers()
+    {
+        int capacity = Math.max(1, m_TargetQueens);
+        if (m_QueenXs.length < capacity)
+        {
+            m_QueenXs = new int[capacity];
+            m_QueenYs = new int[capacity];
+            m_Angles = new double[capacity];
+            m_BestXs = Arrays.copyOf(m_BestXs, capacity);
+            m_BestYs = Arrays.copyOf(m_BestYs, capacity);
+        }
+        if (m_BlockedXPositions.length < m_BoardWidth)
+        {
+            m_BlockedXPositions = Arrays.copyOf(m_BlockedXPositions, m_BoardWidth);
+        }
+        if (!m_LineTableLoaded)
+        {
+            m_LineTable = LineTable.load(m_BoardWidth, m_BoardHeight);
+            m_LineTableLoaded = true;
+            if (m_LineTable != null)
+            {
+                m_LineCounts = new int[m_LineTable.getLineCount()];
+                m_LineQueens = new int[2 * m_LineTable.getLineCount()];
+            }
+        }
+        Arrays.fill(m_LineCounts, 0);
+    }
+
+    /**
+     * Replaces the placed queens with a fixed placement, so candidate checks can be measured outside of a run. Exists
+     * only for AngleCheckCandidateBenchmark, and is never called by a run
+     * @param queens Queens to place, in the order they would have been placed
+     */
+    void setPlacedQueens(ArrayList<Queen> queens)
+    {
+        allocateBuffers();
+        Arrays.fill(m_BlockedXPositions, false);
+        m_PlacedCount = 0;
+        for (Queen queen : queens)
+        {
+            placeQueen(queen.getX(), queen.getY());
+        }
+        m_RemainingQueens = m_TargetQueens - m_PlacedCount;
+    }
+
+    private void placeQueen(int x, int y)
+    {
+        m_QueenXs[m_PlacedCount] = x;
+        m_QueenYs[m_PlacedCount] = y;
+        m_PlacedCount++;
+        m_BlockedXPositions[x] = true;
+        if (m_LineTable != null)
+        {
+            int square = y * m_BoardWidth + x;
+            for (int i = m_LineTable.getLinesThroughCount(square) - 1; i >= 0; i--)
+            {
+                int line = m_LineTable.getLineThrough(square, i);
+                int count = m_LineCounts[line]++;
+                if (count < 2)
+                {
+                    m_LineQueens[2 * line + count] = m_PlacedCount - 1;
+                }
+            }
+        }
+        m_PlacementCount++;
+        if (m_PlacedCount > m_DeepestDepth)
+        {
+            m_DeepestDepth = m_PlacedCount;
+        }
+    }
+
+    /**
+     * Takes the most recently placed queen on a square off the count of each line through it
+     */
+    private void removeFromLines(int x, int y)
+    {
+        if (m_LineTable != null)
+        {
+            int square = y * m_BoardWidth + x;
+            for (int i = m_LineTable.getLinesThroughCount(square) - 1; i >= 0; i--)
+            {
+                m_LineCounts[m_LineTable.getLineThrough(square, i)]--;
+            }
+        }
+    }
+
+    /**
+     * @return Index of the first stored angle equal to angle, or -1 if there is none
+     */
+    private int indexOfAngle(double angle)
+    {
+        for (int i = 0; i < m_AngleCount; i++)
+        {
+            if (m_Angles[i] == angle)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void copyPlacedToBest()
+    {
+        System.arraycopy(m_QueenXs, 0, m_BestXs, 0, m_PlacedCount);
+        System.arraycopy(m_QueenYs, 0, m_BestYs, 0, m_PlacedCount);
+        m_BestCount = m_PlacedCount;
+    }
+
+    private static ArrayList<Queen> toQueens(int[] xs, int[] ys, int count)
+    {
+        ArrayList<Queen> queens = new ArrayList<Queen>(count);
+        for (int i = 0; i < count; i++)
+        {
+            queens.add(new Queen(xs[i], ys[i]));
+        }
+        return queens;
+    }
 }
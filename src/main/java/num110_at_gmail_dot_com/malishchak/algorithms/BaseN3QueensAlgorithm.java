@@ -1,9 +1,12 @@
 package num110_at_gmail_dot_com.malishchak.algorithms;
 
+import num110_at_gmail_dot_com.malishchak.CountResults;
 import num110_at_gmail_dot_com.malishchak.Queen;
 import num110_at_gmail_dot_com.malishchak.Results;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Abstract base class for any algorithm to be run by the N3Queens utility.
@@ -40,7 +43,43 @@ public abstract class BaseN3QueensAlgorithm {
     protected int m_BoardWidth = -1;
     protected int m_StartXOffset = 0;
     protected boolean m_KeepBestRun = true;
+    protected boolean m_SymmetryBreaking = false;
+    protected long m_RandomSeed = System.nanoTime();
 
+    /**
+     * Default time between checkpoints of a long search
+     */
+    public final static long DEFAULT_CHECKPOINT_INTERVAL_MS = 60 * 1000;
+
+    protected File m_CheckpointFile = null;
+    protected long m_CheckpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MS;
+    protected SearchCheckpoint m_ResumeCheckpoint = null;
+
+    /**
+     * Wall-clock time, as from System.currentTimeMillis, at which the search gives up and reports its best run so
+     * far, or 0 for no deadline
+     */
+    protected volatile long m_Deadline = 0;
+    protected volatile boolean m_TimedOut = false;
+    private volatile boolean m_StopRequested = false;
+
+
+    /**
+     * Live counters published over JMX, or null if the run is not being monitored
+     */
+    protected SearchMetrics m_Metrics = null;
+
+    //Counts gathered by the searching thread since they were last published to m_Metrics
+    protected long m_PlacementCount = 0;
+    protected long m_UndoCount = 0;
+    protected long m_AttackRejectionCount = 0;
+    protected long m_LineRejectionCount = 0;
+    protected int m_DeepestDepth = 0;
+
+    /**
+     * Log the search records its VERBOSE and DEBUG events to. Never null while the logging level is VERBOSE or higher
+     */
+    protected SearchEventLog m_EventLog = null;
 
     protected int m_BestRemainingQueens = 0;
     protected int m_BestIteration = 0;
@@ -104,6 +143,128 @@ public abstract class BaseN3QueensAlgorithm {
         this.m_KeepBestRun = m_KeepBestRun;
     }
 
+    /**
+     * @param m_SymmetryBreaking True if the algorithm should skip placements that are rotations or reflections of
+     *                           placements it will search anyway. Only applies to square boards where every row holds
+     *                           a queen. Algorithms that do not support symmetry breaking ignore this setting
+     */
+    public void setSymmetryBreaking(boolean m_SymmetryBreaking)
+    {
+        this.m_SymmetryBreaking = m_SymmetryBreaking;
+    }
+
+    /**
+     * @param m_RandomSeed Seed for any random choices the algorithm makes, so a run can be replayed exactly. Defaults
+     *                     to a seed taken from the clock. Algorithms that make no random choices ignore this setting
+     */
+    public void setRandomSeed(long m_RandomSeed)
+    {
+        this.m_RandomSeed = m_RandomSeed;
+    }
+
+    /**
+     * @return True if the algorithm can write checkpoints of its search and resume from them
+     */
+    public boolean supportsCheckpoints()
+    {
+        return false;
+    }
+
+    /**
+     * @param checkpointFile File the search frontier is periodically written to, so the run can be resumed if it is
+     *                       interrupted, or null for no checkpoints. Removed once the run completes. Algorithms that do
+     *                       not support checkpoints ignore this setting
+     * @param intervalMillis Time between checkpoints
+     */
+    public void setCheckpointFile(File checkpointFile, long intervalMillis)
+    {
+        this.m_CheckpointFile = checkpointFile;
+        this.m_CheckpointIntervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param resumeCheckpoint Checkpoint the next run or count continues from instead of starting afresh. It must have
+     *                         been written by this algorithm for the same problem set and settings. Algorithms that do
+     *                         not support checkpoints ignore this setting
+     */
+    public void setResumeCheckpoint(SearchCheckpoint resumeCheckpoint)
+    {
+        this.m_ResumeCheckpoint = resumeCheckpoint;
+    }
+
+    /**
+     * @param deadlineMillis Wall-clock time, as from System.currentTimeMillis, at which the next run or count stops and
+     *                       reports its best run so far, or 0 for no deadline
+     */
+    public void setDeadline(long deadlineMillis)
+    {
+        this.m_Deadline = deadlineMillis;
+        this.m_TimedOut = false;
+    }
+
+    /**
+     * Asks a run or count in progress on another thread to stop at its next check and report its best run so far.
+     * The request also stops any later run or count of this instance
+     */
+    public void cancel()
+    {
+        m_StopRequested = true;
+    }
+
+    /**
+     * @return True if the last run or count stopped because its deadline passed, before it could finish
+     */
+    public boolean wasTimedOut()
+    {
+        return m_TimedOut;
+    }
+
+    /**
+     * Checked periodically by the search. Cheap enough to call every few thousand nodes
+     * @return True if the search should stop, either because cancel was called or the deadline has passed
+     */
+    protected boolean isStopRequested()
+    {
+        if (m_StopRequested)
+        {
+            return true;
+        }
+        if (m_Deadline != 0 && System.currentTimeMillis() >= m_Deadline)
+        {
+            m_TimedOut = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param metrics Live counters the search publishes to every few thousand nodes, or null for none. Parallel
+     *                algorithms share them with every worker
+     */
+    public void setMetrics(SearchMetrics metrics)
+    {
+        this.m_Metrics = metrics;
+    }
+
+    /**
+     * Adds the counts gathered since the last call to the metrics, then clears them. Called by the searching thread
+     * every few thousand nodes and when the search ends
+     * @param nodes Nodes expanded since the last call
+     * @param depth Queens on the board now, or -1 if the algorithm has no meaningful depth
+     */
+    protected void publishMetrics(long nodes, int depth)
+    {
+        if (m_Metrics == null)
+        {
+            return;
+        }
+        m_Metrics.record(nodes, m_PlacementCount, m_UndoCount, m_AttackRejectionCount, m_LineRejectionCount, depth, m_DeepestDepth);
+        m_PlacementCount = 0;
+        m_UndoCount = 0;
+        m_AttackRejectionCount = 0;
+        m_LineRejectionCount = 0;
+    }
+
     /**
      * @param m_LoggingLevel Set the logging level for any log statements set inside the algorithm.
      *                       Higher logging levels are useful for debugging but may reduce overall
@@ -112,6 +273,33 @@ public abstract class BaseN3QueensAlgorithm {
     public void setLoggingLevel(int m_LoggingLevel)
     {
         this.m_LoggingLevel = m_LoggingLevel;
+        if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE && m_EventLog == null)
+        {
+            m_EventLog = new SearchEventLog(System.out);
+        }
+    }
+
+    /**
+     * Sets the log the search records its VERBOSE and DEBUG events to, in place of the log writing to standard output
+     * that is created when the logging level is raised. Any log already set is closed
+     * @param eventLog Log to record events to
+     */
+    public void setEventLog(SearchEventLog eventLog)
+    {
+        closeEventLog();
+        m_EventLog = eventLog;
+    }
+
+    /**
+     * Writes every event the search has recorded, then closes its event log. Called once the run or count has returned,
+     * as events recorded after the log is closed are not written
+     */
+    public void closeEventLog()
+    {
+        if (m_EventLog != null)
+        {
+            m_EventLog.close();
+        }
     }
 
     /**
@@ -129,11 +317,63 @@ public abstract class BaseN3QueensAlgorithm {
         this.m_StartXOffset=startXoffset;
     }
 
+    /**
+     * Chooses whether a board is better searched with its rows and columns exchanged. Every rule of the problem holds
+     * on the transposed board, so a solution found there maps straight back. Algorithms place at most one queen per row
+     * and prune a branch as soon as too few rows remain for the queens still to place, so rows running along the
+     * shorter side leave no row free to skip and the search tree is smallest, even though each row has more squares
+     * @param targetQueens Number of queens to place
+     * @param boardWidth Width of the chess board
+     * @param boardHeight Height of the chess board
+     * @return True if the board should be searched transposed
+     */
+    public static boolean prefersTransposedBoard(int targetQueens, int boardWidth, int boardHeight)
+    {
+        return boardHeight > boardWidth && targetQueens <= boardWidth;
+    }
+
     /**
      * Executes the algorithm to find a solution to the N3Queens problem
      * @return The results from the run. Overall time is tracked by the main program
      */
     public abstract Results run();
+
+    /**
+     * Enumerates every solution instead of stopping at the first. Algorithms that support counting override this
+     * @return Solution counts for the problem set, or null if the algorithm cannot count solutions. Overall time is
+     * tracked by the main program
+     */
+    public CountResults count()
+    {
+        return null;
+    }
+
+    /**
+     * Builds the CountResults for a counting run
+     * @param totalSolutions Solutions counted
+     * @param columnCounts Solutions counted for each column of the first queen
+     * @param nodeCount Nodes expanded while counting
+     * @param threads Number of worker threads that counted
+     * @param symmetryApplied True if solutions were enumerated once per group of rotations and reflections
+     * @return Counts of the run, with the time left for the main program to fill in
+     */
+    protected CountResults buildCountResults(long totalSolutions, long[] columnCounts, long nodeCount, int threads, boolean symmetryApplied)
+    {
+        CountResults counts = new CountResults();
+        counts.setAlgorithm(m_AlgorithmName);
+        counts.setAlgorithm_version(m_Version);
+        counts.setTarget_queens(m_TargetQueens);
+        counts.setBoard_height(m_BoardHeight);
+        counts.setBoard_width(m_BoardWidth);
+        counts.setStart_x(m_StartXOffset);
+        counts.setSymmetry_breaking((symmetryApplied ? 1 : 0));
+        counts.setThreads(threads);
+        counts.setDate(System.currentTimeMillis());
+        counts.setTotal_solutions(totalSolutions);
+        counts.setColumn_counts(Arrays.copyOf(columnCounts, m_BoardWidth));
+        counts.setNodes(nodeCount);
+        return counts;
+    }
     
     
 }
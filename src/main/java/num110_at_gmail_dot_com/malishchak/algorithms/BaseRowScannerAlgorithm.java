@@ -0,0 +1,917 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.CountResults;
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Abstract base class for algorithms that place queens row-by-row and undo recently placed queens when a branch
+ * fails, in the same manner as AngleCheckScannerUndo. Placed queens are held in primitive coordinate arrays and the
+ * search keeps an explicit per-row cursor instead of recursing, so subclasses only decide which squares of a row are
+ * legal and keep any constraint state in step through the onQueenPlaced and onQueenRemoved hooks.
+ *
+ * The first queen is always placed on the first row, starting with the startXOffset column. Each column used for the
+ * first queen is treated as an iteration. Rows after the first may be left empty while enough rows remain for the
+ * queens still to be placed.
+ *
+ * When symmetry breaking is enabled on a square board holding one queen per row, the first queen is limited to the
+ * left half of the first row, and each placement must remain the lexicographic leader of its rotations and
+ * reflections as far as the placed rows and columns determine them. Every solution has exactly one leader among its
+ * up to 8 images, so no distinct solution is lost.
+ *
+ * In counting mode the search records each complete placement and carries on instead of stopping. With symmetry
+ * breaking active, each leader is counted once for every distinct image it has.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public abstract class BaseRowScannerAlgorithm extends BaseN3QueensAlgorithm
+{
+    /**
+     * Row cursor value for a row that does not currently hold a queen
+     */
+    protected final static int ROW_EMPTY = -1;
+
+    /**
+     * Row cursor value for a row that was deliberately left empty
+     */
+    protected final static int ROW_SKIPPED = -2;
+
+    protected int[] m_QueenXs;
+    protected int[] m_QueenYs;
+    protected int m_PlacedCount = 0;
+
+    /**
+     * Column of the queen on each row, ROW_EMPTY or ROW_SKIPPED
+     */
+    protected int[] m_RowColumns;
+
+    /**
+     * Row of the queen on each column, or ROW_EMPTY
+     */
+    protected int[] m_ColumnRows;
+
+    /**
+     * True if symmetry breaking was requested and the board shape allows it
+     */
+    protected boolean m_SymmetryActive = false;
+
+    /**
+     * True for rows whose remaining squares were handed to another worker, so backing up into them skips straight
+     * past the row
+     */
+    protected boolean[] m_RowDonated;
+
+    protected int m_IterationCount = 0;
+    protected int m_FirstQueenX = 0;
+    protected long m_NodeCount = 0;
+
+    /**
+     * Exclusive upper bound on the column of the first queen. Defaults to the board width
+     */
+    protected int m_FirstQueenXLimit = -1;
+
+    /**
+     * Nodes between checks of the cancellation flag. Must be a power of two
+     */
+    protected final static int CANCELLATION_CHECK_INTERVAL = 4096;
+
+    protected AtomicBoolean m_CancellationFlag = null;
+    protected boolean m_Cancelled = false;
+
+    /**
+     * True if complete placements should be counted and searched past instead of ending the search
+     */
+    protected boolean m_CountingSolutions = false;
+    protected long m_SolutionCount = 0;
+
+    /**
+     * Solutions counted for each column of the first queen
+     */
+    protected long[] m_ColumnCounts;
+
+    /**
+     * Scratch space holding the 8 images of a solution while its distinct images are counted
+     */
+    protected int[][] m_SymmetryImages;
+
+    /**
+     * Time this session of the run started, and time spent in earlier sessions of a run resumed from a checkpoint
+     */
+    protected long m_SessionStartTime = 0;
+    protected long m_EarlierSessionsMillis = 0;
+
+    /**
+     * Time the next checkpoint is due, or Long.MAX_VALUE if this run writes none
+     */
+    private long m_NextCheckpointTime = Long.MAX_VALUE;
+
+    /**
+     * Value of m_NodeCount when the counters were last published to the metrics
+     */
+    private long m_PublishedNodeCount = 0;
+
+    public BaseRowScannerAlgorithm(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+    }
+
+    /**
+     * @param firstQueenXLimit Exclusive upper bound on the column of the first queen, allowing a run to be restricted
+     *                         to a range of first row start positions. A restricted run is one slice of a larger
+     *                         search, so its start position does not rule out symmetry breaking; the caller only
+     *                         enables symmetry breaking when the search as a whole starts from the first column
+     */
+    public void setFirstQueenXLimit(int firstQueenXLimit)
+    {
+        m_FirstQueenXLimit = firstQueenXLimit;
+    }
+
+    /**
+     * @param cancellationFlag Flag shared with other threads. Once set, the run stops at its next check and reports
+     *                         the best run found so far
+     */
+    public void setCancellationFlag(AtomicBoolean cancellationFlag)
+    {
+        m_CancellationFlag = cancellationFlag;
+    }
+
+    /**
+     * @return True if the last run stopped because the cancellation flag was set
+     */
+    public boolean wasCancelled()
+    {
+        return m_Cancelled;
+    }
+
+    /**
+     * @return Number of nodes expanded by the last run
+     */
+    public long getNodeCount()
+    {
+        return m_NodeCount;
+    }
+
+    /**
+     * @param countingSolutions True if searches should count every complete placement and continue past it, as
+     *                          count does, instead of stopping at the first
+     */
+    public void setCountingSolutions(boolean countingSolutions)
+    {
+        m_CountingSolutions = countingSolutions;
+    }
+
+    /**
+     * @return Number of solutions counted by the last search in counting mode
+     */
+    public long getSolutionCount()
+    {
+        return m_SolutionCount;
+    }
+
+    /**
+     * @return Solutions counted by the last search in counting mode, indexed by the column of the first queen
+     */
+    public long[] getColumnCounts()
+    {
+        return m_ColumnCounts;
+    }
+
+    /**
+     * Checks whether a queen may be placed on a square given the queens already placed
+     * @param x X-coordinate of the candidate square
+     * @param y Y-coordinate of the candidate square
+     * @return True if the queen would not be threatened and would not form a line with two placed queens
+     */
+    protected abstract boolean canPlace(int x, int y);
+
+    /**
+     * Finds the next legal square on a row. Subclasses with faster ways of enumerating legal squares may override this
+     * @param y Row to search
+     * @param fromX First column to consider
+     * @return Column of the next legal square at or after fromX, or -1 if none remain
+     */
+    protected int nextCandidate(int y, int fromX)
+    {
+        for (int x = fromX; x < m_BoardWidth; x++)
+        {
+            if (canPlace(x, y))
+            {
+                return x;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Allocates or clears any constraint state before a run begins
+     */
+    protected void onRunStarted()
+    {
+    }
+
+    /**
+     * Called after a queen has been appended to the placed queen arrays
+     * @param x X-coordinate of the new queen
+     * @param y Y-coordinate of the new queen
+     */
+    protected void onQueenPlaced(int x, int y)
+    {
+    }
+
+    /**
+     * Called before the most recently placed queen is removed from the placed queen arrays
+     * @param x X-coordinate of the queen being removed
+     * @param y Y-coordinate of the queen being removed
+     */
+    protected void onQueenRemoved(int x, int y)
+    {
+    }
+
+    /**
+     * Called after a queen is placed, before the search moves below its row. Parallel algorithms may override this to
+     * hand the rest of the row to another worker
+     * @param y Row the queen was placed on
+     * @return True if the remaining squares of row y, and the option of leaving it empty, should be given away with
+     * donateSiblings instead of being searched by this run
+     */
+    protected boolean shouldDonateSiblings(int y)
+    {
+        return false;
+    }
+
+    /**
+     * Hands the unexplored part of a row to another worker. The placed queens above row y form the prefix to resume
+     * from, and are available in the placed queen arrays excluding the most recent queen, which is on row y
+     * @param y Row whose remaining squares are given away
+     * @param fromX First column of row y not yet explored
+     */
+    protected void donateSiblings(int y, int fromX)
+    {
+    }
+
+    /**
+     * Allocates the placed queen arrays and resets counters ready for a new search
+     */
+    protected void prepareSearch()
+    {
+        publishSearchMetrics(-1);
+        m_QueenXs = new int[Math.max(1, m_TargetQueens)];
+        m_QueenYs = new int[Math.max(1, m_TargetQueens)];
+        m_RowColumns = new int[Math.max(1, m_BoardHeight)];
+        m_RowDonated = new boolean[Math.max(1, m_BoardHeight)];
+        m_ColumnRows = new int[Math.max(1, m_BoardWidth)];
+        Arrays.fill(m_RowColumns, ROW_EMPTY);
+        Arrays.fill(m_ColumnRows, ROW_EMPTY);
+        //Images of a placement can start left of startX, outside the search, so symmetry needs the whole first row
+        m_SymmetryActive = m_SymmetryBreaking && m_BoardWidth == m_BoardHeight && m_TargetQueens == m_BoardWidth
+                && (m_StartXOffset == 0 || m_FirstQueenXLimit >= 0);
+        m_SymmetryImages = (m_SymmetryActive && m_CountingSolutions ? new int[8][m_BoardWidth] : null);
+        m_ColumnCounts = new long[Math.max(1, m_BoardWidth)];
+        m_SolutionCount = 0;
+        m_PlacedCount = 0;
+        m_IterationCount = 0;
+        m_NodeCount = 0;
+        m_PublishedNodeCount = 0;
+        m_Cancelled = false;
+        m_FirstQueenX = m_StartXOffset;
+        onRunStarted();
+    }
+
+    @Override
+    public boolean supportsCheckpoints()
+    {
+        return true;
+    }
+
+    @Override
+    public Results run() {
+        prepareSearch();
+        SearchCheckpoint resume = startSession();
+
+        int firstQueenXLimit = getFirstQueenXLimit();
+        boolean solved = false;
+        if (m_TargetQueens <= m_BoardHeight && m_TargetQueens <= m_BoardWidth)
+        {
+            int startX = (resume != null ? resume.m_FirstQueenX : m_StartXOffset);
+            for (int x = startX; x < firstQueenXLimit && !solved && !m_Cancelled; x++)
+            {
+                long iterationTimerStart = System.currentTimeMillis();
+                if (resume != null)
+                {
+                    solved = resumeSearch(resume);
+                    resume = null;
+                }
+                else
+                {
+                    m_IterationCount++;
+                    m_FirstQueenX = x;
+
+                    placeQueen(x, 0);
+                    m_RowColumns[0] = x;
+                    if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.placed(1, x, 0);
+                    solved = search(1);
+                }
+
+                long iterationTimerDuration = System.currentTimeMillis() - iterationTimerStart;
+                if (solved)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Success! Iteration " + m_IterationCount + " completed in " + iterationTimerDuration + "ms.");
+                }
+                else if (m_Cancelled)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration " + m_IterationCount + " " + (wasTimedOut() ? "timed out" : "cancelled") + " after " + iterationTimerDuration + "ms. XXX");
+                }
+                else
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration " + m_IterationCount + " completed in " + iterationTimerDuration + "ms. No solution found at Queen 1 start position (" + x + ",0). XXX");
+                    removeLastQueen();
+                    m_RowColumns[0] = ROW_EMPTY;
+                }
+            }
+        }
+        finishSession();
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println((solved ? "!!! Solution found after " : "XXX Algorithm failed after ") + m_IterationCount + " iterations. " + m_NodeCount + " nodes expanded.");
+        }
+        return buildResults(solved);
+    }
+
+    @Override
+    public CountResults count()
+    {
+        m_CountingSolutions = true;
+        prepareSearch();
+        SearchCheckpoint resume = startSession();
+
+        int firstQueenXLimit = getFirstQueenXLimit();
+        if (m_TargetQueens <= m_BoardHeight && m_TargetQueens <= m_BoardWidth)
+        {
+            int startX = (resume != null ? resume.m_FirstQueenX : m_StartXOffset);
+            for (int x = startX; x < firstQueenXLimit && !m_Cancelled; x++)
+            {
+                long iterationTimerStart = System.currentTimeMillis();
+                long solutionsBefore = m_SolutionCount;
+                if (resume != null)
+                {
+                    resumeSearch(resume);
+                    resume = null;
+                }
+                else
+                {
+                    m_IterationCount++;
+                    m_FirstQueenX = x;
+
+                    placeQueen(x, 0);
+                    m_RowColumns[0] = x;
+                    search(1);
+                }
+                if (m_Cancelled)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Iteration " + m_IterationCount + " " + (wasTimedOut() ? "timed out" : "cancelled") + " after " + (System.currentTimeMillis() - iterationTimerStart) + "ms. Counts are partial. XXX");
+                    break;
+                }
+                removeLastQueen();
+                m_RowColumns[0] = ROW_EMPTY;
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Iteration " + m_IterationCount + " completed in " + (System.currentTimeMillis() - iterationTimerStart) + "ms. " + (m_SolutionCount - solutionsBefore) + " solutions counted from Queen 1 start position (" + x + ",0).");
+            }
+        }
+        m_CountingSolutions = false;
+        finishSession();
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Counted " + m_SolutionCount + " solutions over " + m_IterationCount + " iterations. " + m_NodeCount + " nodes expanded.");
+        return buildCountResults(m_SolutionCount, m_ColumnCounts, m_NodeCount, 1, m_SymmetryActive);
+    }
+
+    /**
+     * @return Exclusive upper bound on the column of the first queen for this run, taking symmetry breaking into account
+     */
+    protected int getFirstQueenXLimit()
+    {
+        int firstQueenXLimit = (m_FirstQueenXLimit < 0 ? m_BoardWidth : Math.min(m_FirstQueenXLimit, m_BoardWidth));
+        if (m_SymmetryActive)
+        {
+            //Reflections of placements with the first queen on the right half are searched from the left half
+            firstQueenXLimit = Math.min(firstQueenXLimit, (m_BoardWidth + 1) / 2);
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Symmetry breaking enabled, first queen limited to columns below " + firstQueenXLimit + ".");
+        }
+        else if (m_SymmetryBreaking && m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println("Symmetry breaking requires a square board with one queen per row and a startX of 0, searching without it.");
+        }
+        return firstQueenXLimit;
+    }
+
+    /**
+     * Depth-first search over the rows from rootRow downwards, keeping the queens already placed above rootRow
+     * @param rootRow First row the search may place queens on
+     * @return True if all target queens were placed, in which case they remain in the placed queen arrays. False if the
+     * subtree was exhausted, in which case the placed queens are restored to their state on entry, or if the run was
+     * cancelled, in which case m_Cancelled is set and the placed queens are left where the search stopped. In counting
+     * mode complete placements are recorded and searched past, so the result is always false
+     */
+    protected boolean search(int rootRow)
+    {
+        return search(rootRow, 0);
+    }
+
+    /**
+     * Depth-first search over the rows from rootRow downwards, resuming part way through the root row
+     * @param rootRow First row the search may place queens on
+     * @param rootFromX First column of rootRow to consider
+     * @return As search(rootRow)
+     */
+    protected boolean search(int rootRow, int rootFromX)
+    {
+        return searchFrom(rootRow, rootRow, rootFromX);
+    }
+
+    /**
+     * Depth-first search over the rows from rootRow downwards, continuing from a node below the root
+     * @param rootRow First row the search may place queens on
+     * @param startRow Row of the node to continue from. Rows from rootRow to above startRow hold a queen or are skipped
+     * @param startFromX First column of startRow to consider
+     * @return As search(rootRow)
+     */
+    private boolean searchFrom(int rootRow, int startRow, int startFromX)
+    {
+        int y = startRow;
+        int fromX = startFromX;
+        while (true)
+        {
+            m_NodeCount++;
+            boolean complete = (m_PlacedCount == m_TargetQueens);
+            if (complete && !m_CountingSolutions)
+            {
+                return true;
+            }
+            if ((m_NodeCount & (CANCELLATION_CHECK_INTERVAL - 1)) == 0)
+            {
+                if (isCancellationRequested())
+                {
+                    m_Cancelled = true;
+                    checkBestRun();
+                    if (m_NextCheckpointTime != Long.MAX_VALUE)
+                    {
+                        //Save the exact node the run stopped on, so a timed out run loses no work
+                        writeCheckpoint(y, fromX);
+                    }
+                    return false;
+                }
+                if (m_NextCheckpointTime != Long.MAX_VALUE && System.currentTimeMillis() >= m_NextCheckpointTime)
+                {
+                    writeCheckpoint(y, fromX);
+                }
+            }
+
+            int needed = m_TargetQueens - m_PlacedCount;
+            if (complete)
+            {
+                recordSolution();
+            }
+            else if (y < m_BoardHeight && m_BoardHeight - y >= needed)
+            {
+                int x = (fromX < m_BoardWidth ? nextCandidate(y, fromX) : -1);
+                if (x >= 0)
+                {
+                    placeQueen(x, y);
+                    m_RowColumns[y] = x;
+                    if (m_SymmetryActive && !isSymmetryLeader())
+                    {
+                        //A rotation or reflection of this placement is searched elsewhere
+                        removeLastQueen();
+                        m_RowColumns[y] = ROW_EMPTY;
+                        fromX = x + 1;
+                        continue;
+                    }
+                    if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
+                    if (shouldDonateSiblings(y))
+                    {
+                        donateSiblings(y, x + 1);
+                        m_RowDonated[y] = true;
+                    }
+                    y++;
+                    fromX = 0;
+                    continue;
+                }
+                if (m_BoardHeight - y - 1 >= needed)
+                {
+                    //Row exhausted but enough rows remain, leave it empty
+                    m_RowColumns[y] = ROW_SKIPPED;
+                    y++;
+                    fromX = 0;
+                    continue;
+                }
+            }
+
+            //Dead end, back up to the most recent row holding a queen that still has squares to explore
+            checkBestRun();
+            while (true)
+            {
+                y--;
+                while (y >= rootRow && m_RowColumns[y] == ROW_SKIPPED)
+                {
+                    m_RowColumns[y] = ROW_EMPTY;
+                    y--;
+                }
+                if (y < rootRow)
+                {
+                    return false;
+                }
+                int removedX = m_RowColumns[y];
+                m_RowColumns[y] = ROW_EMPTY;
+                removeLastQueen();
+                if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.removed(m_PlacedCount + 1, removedX, y);
+                fromX = removedX + 1;
+                if (!m_RowDonated[y])
+                {
+                    break;
+                }
+                //Rest of this row belongs to another worker
+                m_RowDonated[y] = false;
+            }
+        }
+    }
+
+    /**
+     * Starts the timer for this session of a run or count, schedules the first checkpoint, and restores the counters and
+     * best run of the checkpoint being resumed, if there is one
+     * @return The checkpoint to resume the search from, or null to start afresh
+     */
+    protected SearchCheckpoint startSession()
+    {
+        m_SessionStartTime = System.currentTimeMillis();
+        m_EarlierSessionsMillis = 0;
+        boolean checkpoints = supportsCheckpoints();
+        m_NextCheckpointTime = (checkpoints && m_CheckpointFile != null ? m_SessionStartTime + m_CheckpointIntervalMillis : Long.MAX_VALUE);
+
+        SearchCheckpoint resume = m_ResumeCheckpoint;
+        m_ResumeCheckpoint = null;
+        if (resume == null || !checkpoints)
+        {
+            return null;
+        }
+        if (!resume.isCheckpointOf(this, m_CountingSolutions))
+        {
+            throw new IllegalArgumentException("Checkpoint was written by a different algorithm, problem set or mode.");
+        }
+
+        m_EarlierSessionsMillis = resume.m_ElapsedMillis;
+        m_IterationCount = resume.m_IterationCount;
+        m_NodeCount = resume.m_NodeCount;
+        m_PublishedNodeCount = m_NodeCount;
+        m_SolutionCount = resume.m_SolutionCount;
+        m_ColumnCounts = Arrays.copyOf(resume.m_ColumnCounts, Math.max(1, m_BoardWidth));
+        m_BestPlacedQueens = new ArrayList<Queen>(resume.m_BestXs.length);
+        for (int i = 0; i < resume.m_BestXs.length; i++)
+        {
+            m_BestPlacedQueens.add(new Queen(resume.m_BestXs[i], resume.m_BestYs[i]));
+        }
+        m_BestRemainingQueens = resume.m_BestRemainingQueens;
+        m_BestIteration = resume.m_BestIteration;
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Resuming from checkpoint in iteration " + m_IterationCount + " after " + m_NodeCount + " nodes and " + m_EarlierSessionsMillis + "ms.");
+        return resume;
+    }
+
+    /**
+     * Places the queens of a checkpoint's frontier and continues its search from the node it was taken at. Each queen
+     * is found through nextCandidate, as the search found it, so any per-row state a subclass keeps is rebuilt
+     * @param resume Checkpoint restored by startSession
+     * @return As search(rootRow)
+     */
+    private boolean resumeSearch(SearchCheckpoint resume)
+    {
+        m_FirstQueenX = resume.m_FirstQueenX;
+        for (int row = 0; row < resume.m_Row; row++)
+        {
+            int x = resume.m_RowColumns[row];
+            if (x == ROW_SKIPPED)
+            {
+                m_RowColumns[row] = ROW_SKIPPED;
+                continue;
+            }
+            if (m_PlacedCount >= m_TargetQueens || nextCandidate(row, x) != x)
+            {
+                throw new IllegalArgumentException("Checkpoint frontier is not a legal placement.");
+            }
+            placeQueen(x, row);
+            m_RowColumns[row] = x;
+        }
+        if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("(SUCCESS) Restored " + m_PlacedCount + " queens from checkpoint, resuming at (" + resume.m_FromX + "," + resume.m_Row + ").");
+        return searchFrom(1, resume.m_Row, resume.m_FromX);
+    }
+
+    /**
+     * Writes the search frontier to the checkpoint file. Must be called from the search loop between two nodes
+     * @param y Row the search is about to fill
+     * @param fromX First column of row y still to try
+     */
+    private void writeCheckpoint(int y, int fromX)
+    {
+        SearchCheckpoint checkpoint = SearchCheckpoint.of(this, m_CountingSolutions);
+
+        checkpoint.m_ElapsedMillis = getElapsedMillis();
+        checkpoint.m_IterationCount = m_IterationCount;
+        //The current node is expanded again when the search resumes
+        checkpoint.m_NodeCount = m_NodeCount - 1;
+        checkpoint.m_SolutionCount = m_SolutionCount;
+        checkpoint.m_ColumnCounts = m_ColumnCounts;
+
+        checkpoint.m_FirstQueenX = m_FirstQueenX;
+        checkpoint.m_Row = y;
+        checkpoint.m_FromX = fromX;
+        checkpoint.m_RowColumns = m_RowColumns;
+
+        checkpoint.m_BestXs = new int[m_BestPlacedQueens.size()];
+        checkpoint.m_BestYs = new int[m_BestPlacedQueens.size()];
+        for (int i = 0; i < m_BestPlacedQueens.size(); i++)
+        {
+            checkpoint.m_BestXs[i] = m_BestPlacedQueens.get(i).getX();
+            checkpoint.m_BestYs[i] = m_BestPlacedQueens.get(i).getY();
+        }
+        checkpoint.m_BestRemainingQueens = m_BestRemainingQueens;
+        checkpoint.m_BestIteration = m_BestIteration;
+
+        try
+        {
+            checkpoint.write(m_CheckpointFile);
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("Checkpoint written to " + m_CheckpointFile.getName() + " after " + m_NodeCount + " nodes.");
+        }
+        catch (IOException e)
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Error writing checkpoint file " + m_CheckpointFile.getName() + ": " + e.getMessage());
+        }
+        m_NextCheckpointTime = System.currentTimeMillis() + m_CheckpointIntervalMillis;
+    }
+
+    /**
+     * Stops checkpoints for the session, removing the checkpoint file if the run was completed rather than cancelled
+     */
+    protected void finishSession()
+    {
+        publishSearchMetrics(m_PlacedCount);
+        m_NextCheckpointTime = Long.MAX_VALUE;
+        if (m_CheckpointFile != null && supportsCheckpoints() && !m_Cancelled && m_CheckpointFile.delete())
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("Run completed, checkpoint file " + m_CheckpointFile.getName() + " removed.");
+        }
+    }
+
+    /**
+     * @return Time spent in this run, including earlier sessions of a run resumed from a checkpoint
+     */
+    public long getElapsedMillis()
+    {
+        return m_EarlierSessionsMillis + System.currentTimeMillis() - m_SessionStartTime;
+    }
+
+    /**
+     * Starts a fresh search from a partial placement, such as a unit of work handed over by another worker
+     * @param prefixXs X-coordinates of the queens already placed, in row order
+     * @param prefixYs Y-coordinates of the queens already placed, all above row
+     * @param prefixCount Number of queens in the prefix. Must be at least one, as the first queen defines the iteration
+     * @param row Row to resume the search on
+     * @param fromX First column of row to consider
+     * @return As search(rootRow)
+     */
+    protected boolean searchFromPrefix(int[] prefixXs, int[] prefixYs, int prefixCount, int row, int fromX)
+    {
+        prepareSearch();
+        for (int i = 0; i < prefixCount; i++)
+        {
+            placeQueen(prefixXs[i], prefixYs[i]);
+            m_RowColumns[prefixYs[i]] = prefixXs[i];
+        }
+        m_FirstQueenX = prefixXs[0];
+        m_IterationCount = 1;
+        boolean solved = search(row, fromX);
+        publishSearchMetrics(m_PlacedCount);
+        return solved;
+    }
+
+    /**
+     * Records the complete placement in the placed queen arrays as a solution. With symmetry breaking active the
+     * placement is the leader of its rotations and reflections, and each distinct image is counted against the column
+     * of its own first queen
+     */
+    protected void recordSolution()
+    {
+        if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.solutionCounted(m_SolutionCount + 1, m_QueenXs[0], m_QueenYs[0]);
+        if (m_SymmetryImages == null)
+        {
+            m_SolutionCount++;
+            m_ColumnCounts[m_QueenXs[0]]++;
+            return;
+        }
+
+        int n = m_BoardWidth;
+        for (int symmetry = 0; symmetry < 8; symmetry++)
+        {
+            int[] image = m_SymmetryImages[symmetry];
+            for (int i = 0; i < n; i++)
+            {
+                image[i] = getSymmetryImage(symmetry, i);
+            }
+            boolean distinct = true;
+            for (int earlier = 0; earlier < symmetry && distinct; earlier++)
+            {
+                distinct = !Arrays.equals(image, m_SymmetryImages[earlier]);
+            }
+            if (distinct)
+            {
+                m_SolutionCount++;
+                m_ColumnCounts[image[0]]++;
+            }
+        }
+    }
+
+    /**
+     * Maps the placed rows through one of the 8 rotations and reflections of a square board, where rows are filled in
+     * order. Symmetry 0 is the identity
+     * @param symmetry Index of the rotation or reflection
+     * @param i Row of the image
+     * @return Column of the queen on row i of the image, or ROW_EMPTY if the placed queens do not determine it yet
+     */
+    protected int getSymmetryImage(int symmetry, int i)
+    {
+        int n = m_BoardWidth;
+        int k = m_PlacedCount;
+        switch (symmetry)
+        {
+            case 0: return (i < k ? m_RowColumns[i] : ROW_EMPTY); //Identity
+            case 1: return (i < k ? n - 1 - m_RowColumns[i] : ROW_EMPTY); //Horizontal reflection
+            case 2: return (n - 1 - i < k ? m_RowColumns[n - 1 - i] : ROW_EMPTY); //Vertical reflection
+            case 3: return (n - 1 - i < k ? n - 1 - m_RowColumns[n - 1 - i] : ROW_EMPTY); //Rotate 180
+            case 4: return m_ColumnRows[i]; //Transpose
+            case 5: return (m_ColumnRows[n - 1 - i] < 0 ? ROW_EMPTY : n - 1 - m_ColumnRows[n - 1 - i]); //Anti-transpose
+            case 6: return (m_ColumnRows[i] < 0 ? ROW_EMPTY : n - 1 - m_ColumnRows[i]); //Rotate 90
+            default: return m_ColumnRows[n - 1 - i]; //Rotate 270
+        }
+    }
+
+    /**
+     * Compares the placed rows against each of the 7 non-trivial rotations and reflections of the board, as far as the
+     * placed queens determine the image. Only valid while symmetry is active, where rows are filled in order
+     * @return False if some image is known to be lexicographically smaller, by column of each row, than the placement
+     */
+    protected boolean isSymmetryLeader()
+    {
+        int k = m_PlacedCount;
+        for (int symmetry = 1; symmetry < 8; symmetry++)
+        {
+            for (int i = 0; i < k; i++)
+            {
+                int image = getSymmetryImage(symmetry, i);
+                if (image < 0 || image > m_RowColumns[i])
+                {
+                    //Image not yet determined, or already known to be larger
+                    break;
+                }
+                if (image < m_RowColumns[i])
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called every CANCELLATION_CHECK_INTERVAL nodes, so the counters are published to the metrics here as well
+     * @return True if another thread has asked this run to stop, or its deadline has passed
+     */
+    protected boolean isCancellationRequested()
+    {
+        publishSearchMetrics(m_PlacedCount);
+        return (m_CancellationFlag != null && m_CancellationFlag.get()) || isStopRequested();
+    }
+
+    /**
+     * Appends a queen to the placed queen arrays and notifies the subclass
+     * @param x X-coordinate of the new queen
+     * @param y Y-coordinate of the new queen
+     */
+    protected void placeQueen(int x, int y)
+    {
+        m_QueenXs[m_PlacedCount] = x;
+        m_QueenYs[m_PlacedCount] = y;
+        m_PlacedCount++;
+        m_ColumnRows[x] = y;
+        m_PlacementCount++;
+        if (m_PlacedCount > m_DeepestDepth)
+        {
+            m_DeepestDepth = m_PlacedCount;
+        }
+        onQueenPlaced(x, y);
+    }
+
+    /**
+     * Notifies the subclass and removes the most recently placed queen
+     */
+    protected void removeLastQueen()
+    {
+        int last = m_PlacedCount - 1;
+        onQueenRemoved(m_QueenXs[last], m_QueenYs[last]);
+        m_ColumnRows[m_QueenXs[last]] = ROW_EMPTY;
+        m_PlacedCount = last;
+        m_UndoCount++;
+    }
+
+    /**
+     * Publishes the nodes expanded since the last call, and the other counters, to the metrics
+     * @param depth Queens on the board now, or -1 if the placed queen arrays are not in use
+     */
+    protected void publishSearchMetrics(int depth)
+    {
+        publishMetrics(m_NodeCount - m_PublishedNodeCount, depth);
+        m_PublishedNodeCount = m_NodeCount;
+    }
+
+    /**
+     * Remembers the current placement if it is the best seen so far
+     */
+    protected void checkBestRun()
+    {
+        if (m_KeepBestRun && m_PlacedCount > m_BestPlacedQueens.size())
+        {
+            m_BestPlacedQueens = copyPlacedQueens();
+            m_BestRemainingQueens = m_TargetQueens - m_PlacedCount;
+            m_BestIteration = m_FirstQueenX + 1;
+        }
+    }
+
+    /**
+     * @return A new list containing the currently placed queens
+     */
+    protected ArrayList<Queen> copyPlacedQueens()
+    {
+        ArrayList<Queen> queens = new ArrayList<Queen>(m_PlacedCount);
+        for (int i = 0; i < m_PlacedCount; i++)
+        {
+            queens.add(new Queen(m_QueenXs[i], m_QueenYs[i]));
+        }
+        return queens;
+    }
+
+    /**
+     * Builds the Results for the run in the same shape as AngleCheckScannerUndo
+     * @param solved True if the placed queen arrays hold a complete solution
+     * @return Results of the run
+     */
+    protected Results buildResults(boolean solved)
+    {
+        Results results = new Results();
+        results.setAlgorithm(m_AlgorithmName);
+        results.setAlgorithm_version(m_Version);
+        results.setTarget_queens(m_TargetQueens);
+        results.setBoard_height(m_BoardHeight);
+        results.setBoard_width(m_BoardWidth);
+        results.setDate(System.currentTimeMillis());
+        results.setTotal_iterations(m_IterationCount);
+        results.setFirst_queen_x(m_FirstQueenX);
+
+        if (solved)
+        {
+            results.setPlaced_queens(copyPlacedQueens());
+            results.setRemaining_queens(0);
+            results.setBest_iteration(m_IterationCount);
+            results.setSuccess(1);
+            results.setWas_best_run(1);
+        }
+        else
+        {
+            if (!m_KeepBestRun)
+            {
+                //We weren't told to track best run, so report final run
+                m_BestPlacedQueens = copyPlacedQueens();
+                m_BestRemainingQueens = m_TargetQueens - m_PlacedCount;
+                m_BestIteration = m_IterationCount;
+            }
+            results.setPlaced_queens(new ArrayList<Queen>(m_BestPlacedQueens));
+            results.setRemaining_queens(m_BestRemainingQueens);
+            results.setBest_iteration(m_BestIteration);
+            results.setSuccess(0);
+            results.setWas_best_run((m_KeepBestRun ? 1 : 0));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,205 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+/**
+ * Row-by-row undo search that keeps column, diagonal and anti-diagonal occupancy as multi-word long[] bitboards. The
+ * legal squares of a row are built with a few word ANDs when the row is first entered after the queens above it
+ * change, and candidates are taken from the row mask with Long.numberOfTrailingZeros. Only squares that survive the
+ * attack filter are passed to the DirectionChecker for the three-in-a-line test. Boards of any width are supported,
+ * with one long per 64 columns.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class BitboardScanner extends BaseRowScannerAlgorithm
+{
+    private DirectionChecker m_Checker;
+
+    /**
+     * Number of longs needed to hold one bit per column
+     */
+    private int m_RowWords;
+
+    private long[] m_Columns;
+
+    /**
+     * Occupied diagonals, indexed by x - y + boardHeight - 1
+     */
+    private long[] m_Diagonals;
+
+    /**
+     * Occupied anti-diagonals, indexed by x + y
+     */
+    private long[] m_AntiDiagonals;
+
+    /**
+     * Squares of each row not attacked by the queens above it, computed when the search enters the row
+     */
+    private long[][] m_RowMasks;
+
+    /**
+     * Rows above this index have masks that are still valid for the queens currently placed
+     */
+    private int m_ValidRowMasks = 0;
+
+    public BitboardScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "BitboardScanner";
+        m_AlgorithmDescription = "Iterates row-by-row through the chess board placing queens.\n" +
+                "Columns, diagonals and anti-diagonals occupied by placed queens are tracked as\n" +
+                "multi-word bitboards. When a row is entered, the squares not attacked by any\n" +
+                "placed queen are found with a few word ANDs, and candidates are taken from that\n" +
+                "mask lowest column first. Only unattacked squares are checked for forming a line\n" +
+                "with two placed queens, using exact reduced integer directions. Failed branches\n" +
+                "are undone in the same manner as AngleCheckScannerUndo, and each first row start\n" +
+                "position is treated as a new iteration.";
+    }
+
+    @Override
+    protected void onRunStarted()
+    {
+        m_Checker = new DirectionChecker(m_BoardWidth, m_BoardHeight, m_TargetQueens);
+        m_RowWords = (m_BoardWidth + 63) >>> 6;
+        int diagonalWords = (m_BoardWidth + m_BoardHeight + 63) >>> 6;
+        m_Columns = new long[m_RowWords];
+        m_Diagonals = new long[diagonalWords];
+        m_AntiDiagonals = new long[diagonalWords];
+        m_RowMasks = new long[Math.max(1, m_BoardHeight)][m_RowWords];
+        m_ValidRowMasks = 0;
+    }
+
+    @Override
+    protected boolean canPlace(int x, int y)
+    {
+        if (isSet(m_Columns, x) || isSet(m_Diagonals, x - y + m_BoardHeight - 1) || isSet(m_AntiDiagonals, x + y))
+        {
+            return false;
+        }
+        return m_Checker.check(m_QueenXs, m_QueenYs, m_PlacedCount, x, y) == DirectionChecker.CONFLICT_NONE;
+    }
+
+    @Override
+    protected int nextCandidate(int y, int fromX)
+    {
+        long[] rowMask = m_RowMasks[y];
+        if (y >= m_ValidRowMasks)
+        {
+            //First visit to this row since the queens above it changed
+            buildRowMask(y, rowMask);
+            m_ValidRowMasks = y + 1;
+        }
+
+        for (int w = fromX >>> 6; w < m_RowWords; w++)
+        {
+            long bits = rowMask[w];
+            if (w == (fromX >>> 6))
+            {
+                bits &= (-1L << (fromX & 63));
+            }
+            while (bits != 0)
+            {
+                int x = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int conflict = m_Checker.check(m_QueenXs, m_QueenYs, m_PlacedCount, x, y);
+                if (conflict == DirectionChecker.CONFLICT_NONE)
+                {
+                    return x;
+                }
+                m_LineRejectionCount++;
+                if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE)
+                {
+                    int j = m_Checker.getConflictIndex();
+                    int k = m_Checker.getSecondConflictIndex();
+                    m_EventLog.rejectedByLine(m_PlacedCount + 1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], k + 1, m_QueenXs[k], m_QueenYs[k]);
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected void onQueenPlaced(int x, int y)
+    {
+        m_ValidRowMasks = Math.min(m_ValidRowMasks, y + 1);
+        toggle(m_Columns, x);
+        toggle(m_Diagonals, x - y + m_BoardHeight - 1);
+        toggle(m_AntiDiagonals, x + y);
+    }
+
+    @Override
+    protected void onQueenRemoved(int x, int y)
+    {
+        m_ValidRowMasks = Math.min(m_ValidRowMasks, y + 1);
+        toggle(m_Columns, x);
+        toggle(m_Diagonals, x - y + m_BoardHeight - 1);
+        toggle(m_AntiDiagonals, x + y);
+    }
+
+    /**
+     * Fills rowMask with the columns of row y that are not attacked by any placed queen
+     * @param y Row to build the mask for
+     * @param rowMask Destination, one bit per column
+     */
+    private void buildRowMask(int y, long[] rowMask)
+    {
+        //Bit x of the row maps to diagonal x + (boardHeight - 1 - y) and anti-diagonal x + y
+        int diagonalOffset = m_BoardHeight - 1 - y;
+        for (int w = 0; w < m_RowWords; w++)
+        {
+            rowMask[w] = ~(m_Columns[w]
+                    | wordAt(m_Diagonals, diagonalOffset + (w << 6))
+                    | wordAt(m_AntiDiagonals, y + (w << 6)));
+        }
+        int tailBits = m_BoardWidth & 63;
+        if (tailBits != 0)
+        {
+            rowMask[m_RowWords - 1] &= (1L << tailBits) - 1;
+        }
+        int unattacked = 0;
+        for (int w = 0; w < m_RowWords; w++)
+        {
+            unattacked += Long.bitCount(rowMask[w]);
+        }
+        m_AttackRejectionCount += m_BoardWidth - unattacked;
+    }
+
+    /**
+     * @param bits Multi-word bitset
+     * @param offset Index of the first bit to return
+     * @return The 64 bits of the bitset starting at offset, with bits past the end of the bitset as zero
+     */
+    private static long wordAt(long[] bits, int offset)
+    {
+        int word = offset >>> 6;
+        int shift = offset & 63;
+        long low = (word < bits.length ? bits[word] >>> shift : 0L);
+        if (shift != 0 && word + 1 < bits.length)
+        {
+            low |= bits[word + 1] << (64 - shift);
+        }
+        return low;
+    }
+
+    private static boolean isSet(long[] bits, int index)
+    {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void toggle(long[] bits, int index)
+    {
+        bits[index >>> 6] ^= (1L << index);
+    }
+}
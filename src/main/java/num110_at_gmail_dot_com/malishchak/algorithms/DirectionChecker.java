@@ -0,0 +1,277 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Exact integer replacement for the atan2 angle comparison used by the AngleCheckScanner algorithms. Every pair of
+ * squares is classified by its reduced direction (dx/g, dy/g) where g is the greatest common divisor of the offsets,
+ * normalized so that a direction and its opposite share a key. Two queens threaten one another when the direction is
+ * horizontal, vertical or diagonal, and three queens form a line when two placed queens share a direction key with a
+ * candidate square. Direction keys for every possible offset on the board are precomputed, and the keys seen while
+ * checking a candidate are held in a primitive open-addressing hash set that is reset in O(1), so a check against k
+ * placed queens costs O(k) integer operations with no floating point rounding.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class DirectionChecker {
+
+    public final static int CONFLICT_NONE = 0;
+    public final static int CONFLICT_ATTACK = 1;
+    public final static int CONFLICT_LINE = 2;
+
+    /**
+     * Direction key stored for offsets along which queens threaten each other
+     */
+    public final static int KEY_ATTACK = -1;
+
+    private final int m_BoardWidth;
+    private final int m_BoardHeight;
+
+    /**
+     * Precomputed direction keys indexed by (dy + boardHeight - 1) * (2 * boardWidth - 1) + (dx + boardWidth - 1)
+     */
+    private final int[] m_DirectionKeys;
+
+    //Open-addressing hash set of direction keys, using stamps so clearing is a single increment
+    private final int[] m_SetKeys;
+    private final int[] m_SetValues;
+    private final int[] m_SetStamps;
+    private final int m_SetMask;
+    private final int m_SetShift;
+    private int m_Stamp = 0;
+
+    private int m_ConflictIndex = -1;
+    private int m_SecondConflictIndex = -1;
+
+    /**
+     * Creates a checker for a board of the given size
+     * @param boardWidth Width of the chess board
+     * @param boardHeight Height of the chess board
+     * @param maxQueens Largest number of placed queens a candidate will be checked against
+     */
+    public DirectionChecker(int boardWidth, int boardHeight, int maxQueens)
+    {
+        m_BoardWidth = boardWidth;
+        m_BoardHeight = boardHeight;
+
+        int spanX = 2 * boardWidth - 1;
+        int spanY = 2 * boardHeight - 1;
+        m_DirectionKeys = new int[spanX * spanY];
+        for (int dy = -(boardHeight - 1); dy < boardHeight; dy++)
+        {
+            for (int dx = -(boardWidth - 1); dx < boardWidth; dx++)
+            {
+                m_DirectionKeys[(dy + boardHeight - 1) * spanX + (dx + boardWidth - 1)] = directionKey(dx, dy);
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(4, maxQueens * 2) - 1) << 1;
+        m_SetKeys = new int[capacity];
+        m_SetValues = new int[capacity];
+        m_SetStamps = new int[capacity];
+        m_SetMask = capacity - 1;
+        m_SetShift = 32 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * @param a First non-negative value
+     * @param b Second non-negative value
+     * @return Greatest common divisor of a and b
+     */
+    public static int gcd(int a, int b)
+    {
+        while (b != 0)
+        {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * @param dx Horizontal offset between two squares
+     * @param dy Vertical offset between two squares
+     * @return True if queens separated by (dx,dy) threaten one another
+     */
+    public static boolean isAttack(int dx, int dy)
+    {
+        return dx == 0 || dy == 0 || dx == dy || dx == -dy;
+    }
+
+    /**
+     * Reduces an offset to a key shared by every offset along the same line, in either direction
+     * @param dx Horizontal offset between two squares
+     * @param dy Vertical offset between two squares
+     * @return KEY_ATTACK if the offset is an attacking direction, otherwise a non-negative key unique to the line
+     * direction for boards narrower and shorter than 32768 squares
+     */
+    public static int directionKey(int dx, int dy)
+    {
+        if (isAttack(dx, dy))
+        {
+            return KEY_ATTACK;
+        }
+        int g = gcd(Math.abs(dx), Math.abs(dy));
+        dx /= g;
+        dy /= g;
+        if (dy < 0)
+        {
+            dx = -dx;
+            dy = -dy;
+        }
+        return (dy << 16) | (dx & 0xFFFF);
+    }
+
+    /**
+     * @param dx Horizontal offset between two squares on this checker's board
+     * @param dy Vertical offset between two squares on this checker's board
+     * @return Precomputed directionKey(dx, dy)
+     */
+    public int getDirectionKey(int dx, int dy)
+    {
+        return m_DirectionKeys[(dy + m_BoardHeight - 1) * (2 * m_BoardWidth - 1) + (dx + m_BoardWidth - 1)];
+    }
+
+    /**
+     * Checks a candidate square against placed queens stored as primitive coordinate arrays
+     * @param xs X-coordinates of placed queens
+     * @param ys Y-coordinates of placed queens
+     * @param count Number of placed queens stored in xs and ys
+     * @param x X-coordinate of the candidate square
+     * @param y Y-coordinate of the candidate square
+     * @return CONFLICT_NONE, CONFLICT_ATTACK or CONFLICT_LINE. Indices of the conflicting queens are available from
+     * getConflictIndex and getSecondConflictIndex
+     */
+    public int check(int[] xs, int[] ys, int count, int x, int y)
+    {
+        nextStamp();
+        int spanX = 2 * m_BoardWidth - 1;
+        int base = (y + m_BoardHeight - 1) * spanX + (x + m_BoardWidth - 1);
+        for (int j = 0; j < count; j++)
+        {
+            int key = m_DirectionKeys[base - ys[j] * spanX - xs[j]];
+            int result = addKey(key, j);
+            if (result != CONFLICT_NONE)
+            {
+                return result;
+            }
+        }
+        return CONFLICT_NONE;
+    }
+
+    /**
+     * Checks a candidate square against a list of placed queens
+     * @param queens Placed queens
+     * @param x X-coordinate of the candidate square
+     * @param y Y-coordinate of the candidate square
+     * @return CONFLICT_NONE, CONFLICT_ATTACK or CONFLICT_LINE. Indices of the conflicting queens are available from
+     * getConflictIndex and getSecondConflictIndex
+     */
+    public int check(List<Queen> queens, int x, int y)
+    {
+        nextStamp();
+        for (int j = 0; j < queens.size(); j++)
+        {
+            Queen q = queens.get(j);
+            int result = addKey(getDirectionKey(x - q.getX(), y - q.getY()), j);
+            if (result != CONFLICT_NONE)
+            {
+                return result;
+            }
+        }
+        return CONFLICT_NONE;
+    }
+
+    /**
+     * Checks a complete placement by testing each queen against the queens before it. Every line of three queens has
+     * a last member, so this covers every triple
+     * @param xs X-coordinates of placed queens
+     * @param ys Y-coordinates of placed queens
+     * @param count Number of placed queens stored in xs and ys
+     * @return CONFLICT_NONE if no queens threaten each other and no three share a line, otherwise the first conflict
+     */
+    public int checkAll(int[] xs, int[] ys, int count)
+    {
+        for (int i = 1; i < count; i++)
+        {
+            int result = check(xs, ys, i, xs[i], ys[i]);
+            if (result != CONFLICT_NONE)
+            {
+                return result;
+            }
+        }
+        return CONFLICT_NONE;
+    }
+
+    /**
+     * @return Index of the queen that caused the last reported conflict
+     */
+    public int getConflictIndex()
+    {
+        return m_ConflictIndex;
+    }
+
+    /**
+     * @return Index of the earlier queen sharing a line with the candidate and getConflictIndex for the last
+     * CONFLICT_LINE, or -1 for other results
+     */
+    public int getSecondConflictIndex()
+    {
+        return m_SecondConflictIndex;
+    }
+
+    private int addKey(int key, int index)
+    {
+        if (key == KEY_ATTACK)
+        {
+            m_ConflictIndex = index;
+            m_SecondConflictIndex = -1;
+            return CONFLICT_ATTACK;
+        }
+        int slot = (key * 0x9E3779B9) >>> m_SetShift;
+        while (m_SetStamps[slot] == m_Stamp)
+        {
+            if (m_SetKeys[slot] == key)
+            {
+                m_ConflictIndex = index;
+                m_SecondConflictIndex = m_SetValues[slot];
+                return CONFLICT_LINE;
+            }
+            slot = (slot + 1) & m_SetMask;
+        }
+        m_SetStamps[slot] = m_Stamp;
+        m_SetKeys[slot] = key;
+        m_SetValues[slot] = index;
+        return CONFLICT_NONE;
+    }
+
+    private void nextStamp()
+    {
+        m_Stamp++;
+        if (m_Stamp == 0)
+        {
+            //Stamp wrapped, stale entries could now look current
+            Arrays.fill(m_SetStamps, 0);
+            m_Stamp = 1;
+        }
+        m_ConflictIndex = -1;
+        m_SecondConflictIndex = -1;
+    }
+}
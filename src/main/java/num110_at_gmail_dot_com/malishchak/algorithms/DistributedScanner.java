@@ -0,0 +1,630 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.CountResults;
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Coordinator that splits one problem set across worker processes, on the same machine or others, over plain TCP. The
+ * search space is cut into work units, each a prefix of the first queen on row 0 and either the second queen on row 1
+ * or row 1 left empty, and DistributedWorker processes take units one at a time and search every placement extending
+ * them. Each unit handed out is leased to its worker, and the lease is renewed by every heartbeat or result the worker
+ * sends. If the connection drops, or the lease runs out, the unit goes back to the front of the queue for the next
+ * worker to ask for work.
+ *
+ * Workers report the nodes they expanded, their best partial run, and any solution, which the coordinator checks
+ * exactly before accepting it. Once a solution is accepted, workers still searching are told to cancel at their next
+ * heartbeat. In counting mode every unit is searched to completion and the workers' counts are summed.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class DistributedScanner extends BaseN3QueensAlgorithm
+{
+    final static int MAGIC = 0x4E33444E;
+    final static int PROTOCOL_VERSION = 1;
+
+    //Coordinator to worker messages
+    final static byte MESSAGE_PROBLEM = 1;
+    final static byte MESSAGE_UNIT = 2;
+    final static byte MESSAGE_DONE = 3;
+    final static byte MESSAGE_CONTINUE = 4;
+    final static byte MESSAGE_CANCEL = 5;
+
+    //Worker to coordinator messages
+    final static byte MESSAGE_HEARTBEAT = 6;
+    final static byte MESSAGE_RESULT = 7;
+
+    /**
+     * Time a worker may go without sending a heartbeat or result before its unit is handed to another worker
+     */
+    public final static int LEASE_MILLIS = 30 * 1000;
+
+    /**
+     * Time between heartbeats from a worker searching a unit
+     */
+    final static int HEARTBEAT_INTERVAL_MILLIS = LEASE_MILLIS / 3;
+
+    private final int m_Port;
+    private boolean m_CountingSolutions = false;
+
+    //Shared state, guarded by this
+    private final ArrayDeque<WorkUnit> m_PendingUnits = new ArrayDeque<WorkUnit>();
+    private int m_TotalUnits = 0;
+    private int m_CompletedUnits = 0;
+    private int m_ReassignedUnits = 0;
+    private int m_WorkerCount = 0;
+    private int m_ActiveConnections = 0;
+    private boolean m_Stopped = false;
+    private boolean[] m_StartedColumns = new boolean[0];
+    private int m_IterationCount = 0;
+    private long m_NodeCount = 0;
+    private long m_SolutionCount = 0;
+    private long[] m_ColumnCounts = new long[0];
+    private ArrayList<Queen> m_Solution = null;
+    private ArrayList<Queen> m_BestRun = new ArrayList<Queen>();
+
+    public DistributedScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset, int port)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Port = port;
+        m_Version = 1;
+        m_AlgorithmName = "DistributedScanner";
+        m_AlgorithmDescription = "Coordinates a search split across worker processes over TCP.\n" +
+                "The board is cut into work units, one for each legal pair of first and second\n" +
+                "row queens, plus one per first row queen with the second row left empty when\n" +
+                "there are spare rows. Workers lease units one at a time and search them with a\n" +
+                "ForbiddenMaskScanner, renewing the lease with heartbeats. Units of workers that\n" +
+                "disconnect or miss their lease are handed to the next worker. The first solution\n" +
+                "that passes an exact integer check cancels all remaining work.";
+    }
+
+    @Override
+    public Results run() {
+        m_CountingSolutions = false;
+        coordinate();
+
+        Results results = new Results();
+        results.setAlgorithm(m_AlgorithmName);
+        results.setAlgorithm_version(m_Version);
+        results.setTarget_queens(m_TargetQueens);
+        results.setBoard_height(m_BoardHeight);
+        results.setBoard_width(m_BoardWidth);
+        results.setDate(System.currentTimeMillis());
+        results.setTotal_iterations(m_IterationCount);
+
+        if (m_Solution != null)
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Solution found with first queen at column " + m_Solution.get(0).getX() + ".");
+            results.setPlaced_queens(m_Solution);
+            results.setRemaining_queens(0);
+            results.setBest_iteration(m_Solution.get(0).getX() + 1);
+            results.setSuccess(1);
+            results.setFirst_queen_x(m_Solution.get(0).getX());
+            results.setWas_best_run(1);
+            return results;
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Algorithm failed after " + m_IterationCount + " iterations.");
+        m_BestPlacedQueens = m_BestRun;
+        m_BestRemainingQueens = m_TargetQueens - m_BestPlacedQueens.size();
+        m_BestIteration = (m_BestPlacedQueens.isEmpty() ? 0 : m_BestPlacedQueens.get(0).getX() + 1);
+        results.setPlaced_queens(new ArrayList<Queen>(m_BestPlacedQueens));
+        results.setRemaining_queens(m_BestRemainingQueens);
+        results.setBest_iteration(m_BestIteration);
+        results.setSuccess(0);
+        results.setFirst_queen_x((m_BestPlacedQueens.isEmpty() ? m_StartXOffset : m_BestPlacedQueens.get(0).getX()));
+        results.setWas_best_run(1);
+        return results;
+    }
+
+    @Override
+    public CountResults count()
+    {
+        m_CountingSolutions = true;
+        coordinate();
+        m_CountingSolutions = false;
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Counted " + m_SolutionCount + " solutions.");
+        return buildCountResults(m_SolutionCount, m_ColumnCounts, m_NodeCount, m_WorkerCount, isSymmetryActive());
+    }
+
+    /**
+     * @return True if symmetry breaking was requested and the board shape and start column allow it
+     */
+    private boolean isSymmetryActive()
+    {
+        return m_SymmetryBreaking && m_BoardWidth == m_BoardHeight && m_TargetQueens == m_BoardWidth && m_StartXOffset == 0;
+    }
+
+    /**
+     * Cuts the problem set into work units, then serves them to workers until a solution is accepted or every unit is
+     * complete
+     */
+    private void coordinate()
+    {
+        synchronized (this)
+        {
+            m_PendingUnits.clear();
+            m_CompletedUnits = 0;
+            m_ReassignedUnits = 0;
+            m_WorkerCount = 0;
+            m_StartedColumns = new boolean[Math.max(1, m_BoardWidth)];
+            m_IterationCount = 0;
+            m_NodeCount = 0;
+            m_SolutionCount = 0;
+            m_ColumnCounts = new long[Math.max(1, m_BoardWidth)];
+            m_Solution = null;
+            m_BestRun = new ArrayList<Queen>();
+            m_Stopped = false;
+            createUnits();
+            m_TotalUnits = m_PendingUnits.size();
+        }
+
+        ServerSocket server;
+        try
+        {
+            server = new ServerSocket(m_Port);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Could not listen for workers on port " + m_Port + ": " + e.getMessage(), e);
+        }
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Coordinator listening on port " + server.getLocalPort() + " with " + m_TotalUnits + " work units.");
+        if (m_SymmetryBreaking && !isSymmetryActive() && m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Symmetry breaking requires a square board with one queen per row and a startX of 0, searching without it.");
+
+        Thread acceptor = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acceptWorkers(server);
+            }
+        }, "N3Queens-Coordinator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try
+        {
+            synchronized (this)
+            {
+                while (!isFinished())
+                {
+                    if (isStopRequested())
+                    {
+                        //Workers are told at their next heartbeat, and report the best runs of their units
+                        m_Stopped = true;
+                        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX " + (wasTimedOut() ? "Timed out" : "Cancelled") + " with " + m_CompletedUnits + " of " + m_TotalUnits + " units complete. XXX");
+                        notifyAll();
+                        break;
+                    }
+                    wait(m_Deadline == 0 ? 0 : Math.max(1, m_Deadline - System.currentTimeMillis()));
+                }
+
+                //Give workers still connected the chance to report their cancelled units and be told the run is done
+                long deadline = System.currentTimeMillis() + LEASE_MILLIS;
+                long remaining;
+                while (m_ActiveConnections > 0 && (remaining = deadline - System.currentTimeMillis()) > 0)
+                {
+                    wait(remaining);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            try
+            {
+                server.close();
+            }
+            catch (IOException e)
+            {
+                //Nothing left to serve
+            }
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println(m_WorkerCount + " workers completed " + m_CompletedUnits + " of " + m_TotalUnits + " units, expanding " + m_NodeCount + " nodes. " + m_ReassignedUnits + " units were reassigned.");
+        }
+    }
+
+    /**
+     * Adds a work unit for every legal placement of the first two rows. When there are more rows than queens, a unit
+     * with row 1 left empty follows the units for each first queen
+     */
+    private void createUnits()
+    {
+        if (m_TargetQueens > m_BoardHeight || m_TargetQueens > m_BoardWidth)
+        {
+            return;
+        }
+        //With symmetry breaking, reflections of the right half of the first row are searched from the left half
+        int firstQueenXLimit = (isSymmetryActive() ? (m_BoardWidth + 1) / 2 : m_BoardWidth);
+        boolean split = (m_TargetQueens >= 2 && m_BoardHeight >= 2);
+        for (int x = m_StartXOffset; x < firstQueenXLimit; x++)
+        {
+            if (!split)
+            {
+                m_PendingUnits.addLast(new WorkUnit(m_PendingUnits.size(), new int[]{x}, new int[]{0}, 1));
+                continue;
+            }
+            for (int secondX = 0; secondX < m_BoardWidth; secondX++)
+            {
+                if (!DirectionChecker.isAttack(secondX - x, 1))
+                {
+                    m_PendingUnits.addLast(new WorkUnit(m_PendingUnits.size(), new int[]{x, secondX}, new int[]{0, 1}, 2));
+                }
+            }
+            if (m_BoardHeight - 2 >= m_TargetQueens - 1)
+            {
+                m_PendingUnits.addLast(new WorkUnit(m_PendingUnits.size(), new int[]{x}, new int[]{0}, 2));
+            }
+        }
+    }
+
+    /**
+     * Accepts worker connections until the server socket is closed, serving each on its own thread
+     */
+    private void acceptWorkers(ServerSocket server)
+    {
+        while (!server.isClosed())
+        {
+            try
+            {
+                Socket socket = server.accept();
+                synchronized (this)
+                {
+                    m_ActiveConnections++;
+                }
+                Thread thread = new Thread(new WorkerConnection(socket), "N3Queens-Worker-" + socket.getRemoteSocketAddress());
+                thread.setDaemon(true);
+                thread.start();
+            }
+            catch (IOException e)
+            {
+                //Server socket closed, or a connection failed before it was accepted
+            }
+        }
+    }
+
+    /**
+     * Also wakes the coordinator so it stops serving units at once
+     */
+    @Override
+    public void cancel()
+    {
+        super.cancel();
+        synchronized (this)
+        {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return True once a solution has been accepted, every unit is complete, or the run was stopped. Caller must hold
+     * the lock
+     */
+    private boolean isFinished()
+    {
+        return m_Solution != null || m_CompletedUnits == m_TotalUnits || m_Stopped;
+    }
+
+    /**
+     * Waits for a unit to lease, as units leased to other workers may yet be returned to the queue
+     * @return The next unit, or null once the run is finished
+     */
+    private synchronized WorkUnit takeUnit() throws InterruptedException
+    {
+        while (!isFinished() && m_PendingUnits.isEmpty())
+        {
+            wait();
+        }
+        if (isFinished())
+        {
+            return null;
+        }
+        WorkUnit unit = m_PendingUnits.pollFirst();
+        if (!m_StartedColumns[unit.m_PrefixXs[0]])
+        {
+            m_StartedColumns[unit.m_PrefixXs[0]] = true;
+            m_IterationCount++;
+        }
+        return unit;
+    }
+
+    /**
+     * Returns a leased unit to the front of the queue, unless it no longer needs searching
+     */
+    private synchronized void releaseUnit(WorkUnit unit)
+    {
+        if (!unit.m_Completed && !isFinished())
+        {
+            m_PendingUnits.addFirst(unit);
+            m_ReassignedUnits++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Merges a worker's report for a completed unit
+     * @param placed The solution if solved, otherwise the worker's best partial run
+     */
+    private synchronized void completeUnit(WorkUnit unit, boolean solved, long nodes, long solutions, long[] columnCounts, ArrayList<Queen> placed)
+    {
+        if (unit.m_Completed)
+        {
+            return;
+        }
+        unit.m_Completed = true;
+        m_CompletedUnits++;
+        m_NodeCount += nodes;
+        if (m_Metrics != null)
+        {
+            //Workers report only whole units, so only nodes and the deepest placement reach the coordinator
+            m_Metrics.record(nodes, 0, 0, 0, 0, -1, placed.size());
+        }
+        m_SolutionCount += solutions;
+        for (int x = 0; x < m_ColumnCounts.length && x < columnCounts.length; x++)
+        {
+            m_ColumnCounts[x] += columnCounts[x];
+        }
+        if (solved && m_Solution == null && isVerified(placed))
+        {
+            m_Solution = placed;
+        }
+        else
+        {
+            offerBestRun(placed);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Keeps a worker's partial run if it placed more queens than the best so far, including runs of cancelled units
+     */
+    private synchronized void offerBestRun(ArrayList<Queen> placed)
+    {
+        if (placed.size() > m_BestRun.size() && placed.size() < m_TargetQueens)
+        {
+            m_BestRun = placed;
+        }
+    }
+
+    /**
+     * @return True if the queens are all on the board and pass an exact integer conflict check
+     */
+    private boolean isVerified(List<Queen> queens)
+    {
+        if (queens.size() != m_TargetQueens)
+        {
+            return false;
+        }
+        int[] xs = new int[queens.size()];
+        int[] ys = new int[queens.size()];
+        for (int i = 0; i < queens.size(); i++)
+        {
+            xs[i] = queens.get(i).getX();
+            ys[i] = queens.get(i).getY();
+            if (xs[i] < 0 || xs[i] >= m_BoardWidth || ys[i] < 0 || ys[i] >= m_BoardHeight)
+            {
+                return false;
+            }
+        }
+        DirectionChecker checker = new DirectionChecker(m_BoardWidth, m_BoardHeight, m_TargetQueens);
+        return checker.checkAll(xs, ys, xs.length) == DirectionChecker.CONFLICT_NONE;
+    }
+
+    /**
+     * Placement of the queens above a row, from which a worker searches every extension
+     */
+    private static class WorkUnit
+    {
+        final int m_Id;
+        final int[] m_PrefixXs;
+        final int[] m_PrefixYs;
+        final int m_Row;
+        boolean m_Completed = false;
+
+        WorkUnit(int id, int[] prefixXs, int[] prefixYs, int row)
+        {
+            m_Id = id;
+            m_PrefixXs = prefixXs;
+            m_PrefixYs = prefixYs;
+            m_Row = row;
+        }
+    }
+
+    /**
+     * Serves one worker, leasing it a unit at a time until the run is finished or the worker is lost
+     */
+    private class WorkerConnection implements Runnable
+    {
+        private final Socket m_Socket;
+        private WorkUnit m_Unit = null;
+
+        WorkerConnection(Socket socket)
+        {
+            m_Socket = socket;
+        }
+
+        @Override
+        public void run()
+        {
+            String name = String.valueOf(m_Socket.getRemoteSocketAddress());
+            try (Socket socket = m_Socket)
+            {
+                //Every read must arrive within the lease, heartbeats included
+                socket.setSoTimeout(LEASE_MILLIS);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readInt() != MAGIC || in.readInt() != PROTOCOL_VERSION)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Rejected connection from " + name + ", not a worker of this version.");
+                    return;
+                }
+                synchronized (DistributedScanner.this)
+                {
+                    m_WorkerCount++;
+                }
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Worker " + name + " connected.");
+
+                out.writeByte(MESSAGE_PROBLEM);
+                out.writeInt(m_TargetQueens);
+                out.writeInt(m_BoardWidth);
+                out.writeInt(m_BoardHeight);
+                out.writeBoolean(isSymmetryActive());
+                out.writeBoolean(m_CountingSolutions);
+                sendNextUnit(out, name);
+
+                while (m_Unit != null)
+                {
+                    byte message = in.readByte();
+                    if (message == MESSAGE_HEARTBEAT)
+                    {
+                        in.readInt();
+                        boolean finished;
+                        synchronized (DistributedScanner.this)
+                        {
+                            finished = isFinished();
+                        }
+                        out.writeByte(finished ? MESSAGE_CANCEL : MESSAGE_CONTINUE);
+                        out.flush();
+                    }
+                    else if (message == MESSAGE_RESULT)
+                    {
+                        readResult(in, name);
+                        sendNextUnit(out, name);
+                    }
+                    else
+                    {
+                        throw new IOException("Unexpected message " + message + ".");
+                    }
+                }
+            }
+            catch (SocketTimeoutException e)
+            {
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Worker " + name + " missed its lease.");
+            }
+            catch (EOFException e)
+            {
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Worker " + name + " disconnected.");
+            }
+            catch (IOException e)
+            {
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Worker " + name + " lost: " + e.getMessage());
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            finally
+            {
+                if (m_Unit != null)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Unit " + m_Unit.m_Id + " returned to the queue.");
+                    releaseUnit(m_Unit);
+                }
+                synchronized (DistributedScanner.this)
+                {
+                    m_ActiveConnections--;
+                    DistributedScanner.this.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Leases the worker its next unit, or tells it the run is done
+         */
+        private void sendNextUnit(DataOutputStream out, String name) throws IOException, InterruptedException
+        {
+            m_Unit = takeUnit();
+            if (m_Unit == null)
+            {
+                out.writeByte(MESSAGE_DONE);
+                out.flush();
+                return;
+            }
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("Unit " + m_Unit.m_Id + " leased to worker " + name + ".");
+            out.writeByte(MESSAGE_UNIT);
+            out.writeInt(m_Unit.m_Id);
+            out.writeInt(m_Unit.m_PrefixXs.length);
+            for (int i = 0; i < m_Unit.m_PrefixXs.length; i++)
+            {
+                out.writeInt(m_Unit.m_PrefixXs[i]);
+                out.writeInt(m_Unit.m_PrefixYs[i]);
+            }
+            out.writeInt(m_Unit.m_Row);
+            out.flush();
+        }
+
+        /**
+         * Reads the worker's report on its leased unit and merges it, or returns the unit to the queue if the worker
+         * was cancelled part way through it
+         */
+        private void readResult(DataInputStream in, String name) throws IOException
+        {
+            int id = in.readInt();
+            boolean cancelled = in.readBoolean();
+            boolean solved = in.readBoolean();
+            long nodes = in.readLong();
+            long solutions = in.readLong();
+            long[] columnCounts = new long[in.readInt()];
+            for (int x = 0; x < columnCounts.length; x++)
+            {
+                columnCounts[x] = in.readLong();
+            }
+            int placedCount = in.readInt();
+            ArrayList<Queen> placed = new ArrayList<Queen>(placedCount);
+            for (int i = 0; i < placedCount; i++)
+            {
+                placed.add(new Queen(in.readInt(), in.readInt()));
+            }
+            if (id != m_Unit.m_Id)
+            {
+                throw new IOException("Result for unit " + id + " does not match leased unit " + m_Unit.m_Id + ".");
+            }
+
+            WorkUnit unit = m_Unit;
+            m_Unit = null;
+            if (cancelled)
+            {
+                offerBestRun(placed);
+                releaseUnit(unit);
+                return;
+            }
+            completeUnit(unit, solved, nodes, solutions, columnCounts, placed);
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE)
+            {
+                System.out.println("Unit " + id + " completed by worker " + name + " after " + nodes + " nodes" + (solved ? ", solution found." : "."));
+            }
+        }
+    }
+}
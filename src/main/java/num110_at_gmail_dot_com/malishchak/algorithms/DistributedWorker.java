@@ -0,0 +1,323 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Worker process for a DistributedScanner coordinator. Connects to the coordinator, receives the problem set, then
+ * searches one leased work unit at a time with a ForbiddenMaskScanner until the coordinator reports the run is done.
+ * While a unit is being searched a heartbeat thread renews its lease, and cancels the search if the coordinator has
+ * already finished. The heartbeat thread and the search thread share the connection under a lock, so each request and
+ * its reply are never interleaved with another.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class DistributedWorker
+{
+    /**
+     * Connection attempts made while the coordinator is not yet listening, one second apart
+     */
+    private final static int CONNECT_ATTEMPTS = 30;
+    private final static long CONNECT_RETRY_MILLIS = 1000;
+
+    private final String m_Host;
+    private final int m_Port;
+    private int m_LoggingLevel = BaseN3QueensAlgorithm.LOGGING_LEVEL_SUMMARY;
+
+    private DataInputStream m_In;
+    private DataOutputStream m_Out;
+
+    //Problem set sent by the coordinator
+    private int m_TargetQueens;
+    private int m_BoardWidth;
+    private int m_BoardHeight;
+    private boolean m_SymmetryBreaking;
+    private boolean m_CountingSolutions;
+
+    private int m_CompletedUnits = 0;
+    private long m_NodeCount = 0;
+
+    public DistributedWorker(String host, int port)
+    {
+        m_Host = host;
+        m_Port = port;
+    }
+
+    /**
+     * @param loggingLevel Logging level for the worker's own progress. Searches of each unit are not logged
+     */
+    public void setLoggingLevel(int loggingLevel)
+    {
+        m_LoggingLevel = loggingLevel;
+    }
+
+    /**
+     * Serves the coordinator until it reports the run is done
+     * @return Number of units this worker searched to completion
+     * @throws IOException If the coordinator could not be reached, or the connection was lost
+     */
+    public int run() throws IOException
+    {
+        try (Socket socket = connect())
+        {
+            m_In = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            m_Out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            m_Out.writeInt(DistributedScanner.MAGIC);
+            m_Out.writeInt(DistributedScanner.PROTOCOL_VERSION);
+            m_Out.flush();
+
+            if (m_In.readByte() != DistributedScanner.MESSAGE_PROBLEM)
+            {
+                throw new IOException("Coordinator did not send a problem set.");
+            }
+            m_TargetQueens = m_In.readInt();
+            m_BoardWidth = m_In.readInt();
+            m_BoardHeight = m_In.readInt();
+            m_SymmetryBreaking = m_In.readBoolean();
+            m_CountingSolutions = m_In.readBoolean();
+            if (m_LoggingLevel >= BaseN3QueensAlgorithm.LOGGING_LEVEL_SUMMARY)
+            {
+                System.out.println("Connected to coordinator. " + (m_CountingSolutions ? "Counting" : "Placing") + " " + m_TargetQueens + " queens on a " + m_BoardHeight + "x" + m_BoardWidth + " board.");
+            }
+
+            while (true)
+            {
+                byte message = m_In.readByte();
+                if (message == DistributedScanner.MESSAGE_DONE)
+                {
+                    break;
+                }
+                if (message != DistributedScanner.MESSAGE_UNIT)
+                {
+                    throw new IOException("Unexpected message " + message + ".");
+                }
+                searchUnit();
+            }
+        }
+        if (m_LoggingLevel >= BaseN3QueensAlgorithm.LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println("Coordinator finished. Searched " + m_CompletedUnits + " units, expanding " + m_NodeCount + " nodes.");
+        }
+        return m_CompletedUnits;
+    }
+
+    /**
+     * @return A socket connected to the coordinator, retrying while it is not yet listening
+     */
+    private Socket connect() throws IOException
+    {
+        for (int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                return new Socket(m_Host, m_Port);
+            }
+            catch (ConnectException e)
+            {
+                if (attempt >= CONNECT_ATTEMPTS)
+                {
+                    throw e;
+                }
+                if (m_LoggingLevel >= BaseN3QueensAlgorithm.LOGGING_LEVEL_VERBOSE) System.out.println("Coordinator at " + m_Host + ":" + m_Port + " not reachable, retrying.");
+                try
+                {
+                    Thread.sleep(CONNECT_RETRY_MILLIS);
+                }
+                catch (InterruptedException interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the unit the coordinator leased, searches it while a heartbeat thread renews the lease, then reports the
+     * result
+     */
+    private void searchUnit() throws IOException
+    {
+        int id = m_In.readInt();
+        int prefixCount = m_In.readInt();
+        int[] prefixXs = new int[prefixCount];
+        int[] prefixYs = new int[prefixCount];
+        for (int i = 0; i < prefixCount; i++)
+        {
+            prefixXs[i] = m_In.readInt();
+            prefixYs[i] = m_In.readInt();
+        }
+        int row = m_In.readInt();
+
+        long timerStart = System.currentTimeMillis();
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        UnitScanner scanner = new UnitScanner(m_TargetQueens, m_BoardWidth, m_BoardHeight);
+        scanner.setCancellationFlag(cancelled);
+        scanner.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        scanner.setSymmetryBreaking(m_SymmetryBreaking);
+        scanner.setCountingSolutions(m_CountingSolutions);
+
+        Heartbeat heartbeat = new Heartbeat(id, cancelled);
+        Thread heartbeatThread = new Thread(heartbeat, "N3Queens-Heartbeat");
+        heartbeatThread.setDaemon(true);
+        heartbeatThread.start();
+        boolean solved;
+        try
+        {
+            solved = scanner.searchFromPrefix(prefixXs, prefixYs, prefixCount, row, 0);
+        }
+        finally
+        {
+            heartbeat.stop(heartbeatThread);
+        }
+        if (heartbeat.m_Failure != null)
+        {
+            throw heartbeat.m_Failure;
+        }
+
+        ArrayList<Queen> placed = (solved ? scanner.copyPlacedQueens() : scanner.getBestPlacedQueens());
+        long[] columnCounts = scanner.getColumnCounts();
+        synchronized (this)
+        {
+            m_Out.writeByte(DistributedScanner.MESSAGE_RESULT);
+            m_Out.writeInt(id);
+            m_Out.writeBoolean(scanner.wasCancelled());
+            m_Out.writeBoolean(solved);
+            m_Out.writeLong(scanner.getNodeCount());
+            m_Out.writeLong(scanner.getSolutionCount());
+            m_Out.writeInt(columnCounts.length);
+            for (int x = 0; x < columnCounts.length; x++)
+            {
+                m_Out.writeLong(columnCounts[x]);
+            }
+            m_Out.writeInt(placed.size());
+            for (Queen queen : placed)
+            {
+                m_Out.writeInt(queen.getX());
+                m_Out.writeInt(queen.getY());
+            }
+            m_Out.flush();
+        }
+
+        if (!scanner.wasCancelled())
+        {
+            m_CompletedUnits++;
+            m_NodeCount += scanner.getNodeCount();
+        }
+        if (m_LoggingLevel >= BaseN3QueensAlgorithm.LOGGING_LEVEL_VERBOSE)
+        {
+            System.out.println("Unit " + id + " " + (scanner.wasCancelled() ? "cancelled" : (solved ? "solved" : "exhausted")) + " after " + (System.currentTimeMillis() - timerStart) + "ms and " + scanner.getNodeCount() + " nodes.");
+        }
+    }
+
+    /**
+     * Renews the lease on a unit while it is searched, cancelling the search if the coordinator has finished or can
+     * no longer be reached
+     */
+    private class Heartbeat implements Runnable
+    {
+        private final int m_UnitId;
+        private final AtomicBoolean m_Cancelled;
+        private volatile boolean m_Stopped = false;
+        private volatile IOException m_Failure = null;
+
+        Heartbeat(int unitId, AtomicBoolean cancelled)
+        {
+            m_UnitId = unitId;
+            m_Cancelled = cancelled;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (true)
+                {
+                    Thread.sleep(DistributedScanner.HEARTBEAT_INTERVAL_MILLIS);
+                    synchronized (DistributedWorker.this)
+                    {
+                        if (m_Stopped)
+                        {
+                            return;
+                        }
+                        m_Out.writeByte(DistributedScanner.MESSAGE_HEARTBEAT);
+                        m_Out.writeInt(m_UnitId);
+                        m_Out.flush();
+                        if (m_In.readByte() == DistributedScanner.MESSAGE_CANCEL)
+                        {
+                            m_Cancelled.set(true);
+                        }
+                    }
+                }
+            }
+            catch (InterruptedException e)
+            {
+                //Unit finished
+            }
+            catch (IOException e)
+            {
+                m_Failure = e;
+                m_Cancelled.set(true);
+            }
+        }
+
+        /**
+         * Stops the heartbeat and waits for any exchange in progress to finish
+         */
+        void stop(Thread thread)
+        {
+            synchronized (DistributedWorker.this)
+            {
+                m_Stopped = true;
+            }
+            thread.interrupt();
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * ForbiddenMaskScanner exposing the best run of a unit search
+     */
+    private static class UnitScanner extends ForbiddenMaskScanner
+    {
+        UnitScanner(int targetQueens, int boardWidth, int boardHeight)
+        {
+            super(targetQueens, boardWidth, boardHeight, 0);
+        }
+
+        ArrayList<Queen> getBestPlacedQueens()
+        {
+            return m_BestPlacedQueens;
+        }
+    }
+}
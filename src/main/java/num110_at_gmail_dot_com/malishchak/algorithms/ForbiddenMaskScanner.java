@@ -0,0 +1,246 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Row-by-row undo search that moves the conflict work from candidate squares to placements. Whenever a queen is
+ * placed, every square below it on its column and diagonals, and every square below it on the line through it and
+ * each earlier queen, has a per-square counter incremented. A square is forbidden while its counter is non-zero, and
+ * a per-row bitset mirrors the non-zero counters so legal squares can be taken with Long.numberOfTrailingZeros.
+ * Removing a queen decrements exactly the same squares, so each undo leaves the board as it was before the placement.
+ * Testing a candidate is a single lookup, and the O(k * N) marking cost is only paid by the far rarer placements.
+ * Per-row free square counts are kept alongside the counters, so a branch is abandoned as soon as too few rows below
+ * it still have a legal square.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class ForbiddenMaskScanner extends BaseRowScannerAlgorithm
+{
+    /**
+     * Number of placed-queen lines covering each square, indexed by y * boardWidth + x
+     */
+    private int[] m_ForbiddenCounts;
+
+    /**
+     * Squares with a non-zero forbidden count, one bitset of m_RowWords longs per row
+     */
+    private long[][] m_ForbiddenRows;
+
+    private int m_RowWords;
+
+    /**
+     * Number of squares in each row that are not forbidden
+     */
+    protected int[] m_RowFreeCounts;
+
+    /**
+     * Reduced step along the line between two squares, indexed by (dy + boardHeight - 1) * (2 * boardWidth - 1) +
+     * (dx + boardWidth - 1), with dy normalized to be positive
+     */
+    private int[] m_StepXs;
+    private int[] m_StepYs;
+
+    public ForbiddenMaskScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "ForbiddenMaskScanner";
+        m_AlgorithmDescription = "Iterates row-by-row through the chess board placing queens.\n" +
+                "When a queen is placed, every square below it that it attacks, and every square\n" +
+                "below it on the line through it and any earlier queen, is marked as forbidden by\n" +
+                "incrementing a per-square counter. A square may hold a new queen only when its\n" +
+                "counter is zero, so each candidate costs a single lookup. When queens are removed\n" +
+                "the same squares are decremented, exactly reversing the placement. Failed\n" +
+                "branches are undone in the same manner as AngleCheckScannerUndo, and each first\n" +
+                "row start position is treated as a new iteration.";
+    }
+
+    @Override
+    protected void onRunStarted()
+    {
+        m_RowWords = (m_BoardWidth + 63) >>> 6;
+        m_ForbiddenCounts = new int[m_BoardWidth * m_BoardHeight];
+        m_ForbiddenRows = new long[Math.max(1, m_BoardHeight)][m_RowWords];
+        m_RowFreeCounts = new int[Math.max(1, m_BoardHeight)];
+        Arrays.fill(m_RowFreeCounts, m_BoardWidth);
+
+        int spanX = 2 * m_BoardWidth - 1;
+        m_StepXs = new int[spanX * (2 * m_BoardHeight - 1)];
+        m_StepYs = new int[m_StepXs.length];
+        for (int dy = -(m_BoardHeight - 1); dy < m_BoardHeight; dy++)
+        {
+            for (int dx = -(m_BoardWidth - 1); dx < m_BoardWidth; dx++)
+            {
+                int g = Math.max(1, DirectionChecker.gcd(Math.abs(dx), Math.abs(dy)));
+                int sign = (dy < 0 ? -1 : 1);
+                int index = (dy + m_BoardHeight - 1) * spanX + (dx + m_BoardWidth - 1);
+                m_StepXs[index] = sign * dx / g;
+                m_StepYs[index] = sign * dy / g;
+            }
+        }
+    }
+
+    @Override
+    protected boolean canPlace(int x, int y)
+    {
+        return m_ForbiddenCounts[y * m_BoardWidth + x] == 0;
+    }
+
+    @Override
+    protected int nextCandidate(int y, int fromX)
+    {
+        if (!enoughOpenRows(y))
+        {
+            return -1;
+        }
+        return nextFreeSquare(y, fromX);
+    }
+
+    /**
+     * @param y Row to search
+     * @param fromX First column to consider
+     * @return Column of the next square at or after fromX that is not forbidden, or -1 if none remain
+     */
+    protected int nextFreeSquare(int y, int fromX)
+    {
+        long[] forbidden = m_ForbiddenRows[y];
+        for (int w = fromX >>> 6; w < m_RowWords; w++)
+        {
+            long free = ~forbidden[w];
+            if (w == (fromX >>> 6))
+            {
+                free &= (-1L << (fromX & 63));
+            }
+            if (free != 0)
+            {
+                int x = (w << 6) + Long.numberOfTrailingZeros(free);
+                return (x < m_BoardWidth ? x : -1);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected void onQueenPlaced(int x, int y)
+    {
+        markLines(x, y, 1);
+    }
+
+    @Override
+    protected void onQueenRemoved(int x, int y)
+    {
+        markLines(x, y, -1);
+    }
+
+    /**
+     * Adds delta to every square below the given queen that it attacks or that lies on a line through it and an
+     * earlier queen. The queen must be the most recently placed, and therefore the lowest, queen on the board
+     * @param x X-coordinate of the queen
+     * @param y Y-coordinate of the queen
+     * @param delta 1 when placing the queen, -1 when removing it
+     */
+    private void markLines(int x, int y, int delta)
+    {
+        //Attacks along the column and both diagonals
+        markRay(x, y, 0, 1, delta, -1);
+        markRay(x, y, 1, 1, delta, -1);
+        markRay(x, y, -1, 1, delta, -1);
+
+        //Lines through each earlier queen. The last entry in the placed arrays is this queen
+        int spanX = 2 * m_BoardWidth - 1;
+        int base = (y + m_BoardHeight - 1) * spanX + (x + m_BoardWidth - 1);
+        for (int j = 0; j < m_PlacedCount - 1; j++)
+        {
+            int dx = x - m_QueenXs[j];
+            int dy = y - m_QueenYs[j];
+            if (DirectionChecker.isAttack(dx, dy))
+            {
+                continue;
+            }
+            int index = base - m_QueenYs[j] * spanX - m_QueenXs[j];
+            markRay(x, y, m_StepXs[index], m_StepYs[index], delta, m_QueenYs[j]);
+        }
+    }
+
+    /**
+     * @param y Row the search is about to fill
+     * @return False if fewer rows from y downwards have a legal square than there are queens left to place
+     */
+    private boolean enoughOpenRows(int y)
+    {
+        int needed = m_TargetQueens - m_PlacedCount;
+        int unavailable = (m_BoardHeight - y) - needed;
+        for (int r = y; r < m_BoardHeight; r++)
+        {
+            if (m_RowFreeCounts[r] == 0 && --unavailable < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Called when a square goes from legal to forbidden. Squares are unmarked in the reverse order they were marked,
+     * so the queens reported here stay on the board for as long as the square remains forbidden
+     * @param index Square that became forbidden, as y * boardWidth + x
+     * @param queenY Row of the queen being placed
+     * @param partnerY Row of the earlier queen whose line with the new queen covers the square, or -1 if the new queen
+     *                 attacks the square
+     */
+    protected void onSquareForbidden(int index, int queenY, int partnerY)
+    {
+    }
+
+    /**
+     * Adds delta to the squares (x + i*stepX, y + i*stepY) for i >= 1 that are on the board
+     * @param partnerY Row of the earlier queen the ray runs in line with, or -1 for an attack
+     */
+    private void markRay(int x, int y, int stepX, int stepY, int delta, int partnerY)
+    {
+        int queenY = y;
+        x += stepX;
+        y += stepY;
+        while (y < m_BoardHeight && x >= 0 && x < m_BoardWidth)
+        {
+            int index = y * m_BoardWidth + x;
+            int before = m_ForbiddenCounts[index];
+            int after = before + delta;
+            m_ForbiddenCounts[index] = after;
+            if (before == 0)
+            {
+                m_ForbiddenRows[y][x >>> 6] |= (1L << x);
+                m_RowFreeCounts[y]--;
+                if (partnerY < 0)
+                {
+                    m_AttackRejectionCount++;
+                }
+                else
+                {
+                    m_LineRejectionCount++;
+                }
+                onSquareForbidden(index, queenY, partnerY);
+            }
+            else if (after == 0)
+            {
+                m_ForbiddenRows[y][x >>> 6] &= ~(1L << x);
+                m_RowFreeCounts[y]++;
+            }
+            x += stepX;
+            y += stepY;
+        }
+    }
+}
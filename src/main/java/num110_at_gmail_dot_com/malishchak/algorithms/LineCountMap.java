@@ -0,0 +1,168 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Primitive open-addressing hash map from a line on the board to an int count. A line is identified by the reduced
+ * direction key from DirectionChecker together with the intercept that is constant along the line, packed into a
+ * single long, so lines can be counted without boxing or allocating. Slots use stamps so the whole map is cleared in
+ * O(1), and removed entries are back-filled so probe chains never need tombstones.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class LineCountMap {
+
+    private final long[] m_Keys;
+    private final int[] m_Values;
+    private final int[] m_Stamps;
+    private final int m_Mask;
+    private final int m_Shift;
+    private int m_Stamp = 1;
+    private int m_Size = 0;
+
+    /**
+     * @param maxEntries Largest number of lines the map will hold at once
+     */
+    public LineCountMap(int maxEntries)
+    {
+        int capacity = Integer.highestOneBit(Math.max(4, maxEntries * 2) - 1) << 1;
+        m_Keys = new long[capacity];
+        m_Values = new int[capacity];
+        m_Stamps = new int[capacity];
+        m_Mask = capacity - 1;
+        m_Shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    /**
+     * @param directionKey Key of a non-attacking direction, from DirectionChecker.directionKey
+     * @param x X-coordinate of any square on the line
+     * @param y Y-coordinate of any square on the line
+     * @return Key shared by every square on the line through (x,y) with the given direction
+     */
+    public static long lineKey(int directionKey, int x, int y)
+    {
+        //Direction keys hold the reduced (dx,dy) as (dy << 16) | (dx & 0xFFFF), and dy*x - dx*y is constant along the line
+        int stepY = directionKey >>> 16;
+        int stepX = (short) (directionKey & 0xFFFF);
+        int intercept = stepY * x - stepX * y;
+        return ((long) directionKey << 32) | (intercept & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return Count stored for the line, or 0 if the line is not in the map
+     */
+    public int get(long key)
+    {
+        int slot = home(key);
+        while (m_Stamps[slot] == m_Stamp)
+        {
+            if (m_Keys[slot] == key)
+            {
+                return m_Values[slot];
+            }
+            slot = (slot + 1) & m_Mask;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a count for the line, removing the line from the map if the count is 0
+     * @param key Line key from lineKey
+     * @param value New count for the line
+     */
+    public void put(long key, int value)
+    {
+        int slot = home(key);
+        while (m_Stamps[slot] == m_Stamp)
+        {
+            if (m_Keys[slot] == key)
+            {
+                if (value == 0)
+                {
+                    removeSlot(slot);
+                }
+                else
+                {
+                    m_Values[slot] = value;
+                }
+                return;
+            }
+            slot = (slot + 1) & m_Mask;
+        }
+        if (value != 0)
+        {
+            m_Stamps[slot] = m_Stamp;
+            m_Keys[slot] = key;
+            m_Values[slot] = value;
+            m_Size++;
+        }
+    }
+
+    /**
+     * @return Number of lines in the map
+     */
+    public int size()
+    {
+        return m_Size;
+    }
+
+    /**
+     * Removes every line from the map
+     */
+    public void clear()
+    {
+        m_Stamp++;
+        m_Size = 0;
+        if (m_Stamp == 0)
+        {
+            //Stamp wrapped, stale entries could now look current
+            Arrays.fill(m_Stamps, 0);
+            m_Stamp = 1;
+        }
+    }
+
+    private int home(long key)
+    {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> m_Shift);
+    }
+
+    /**
+     * Empties a slot, moving later entries of the probe chain back so every remaining entry stays reachable
+     */
+    private void removeSlot(int slot)
+    {
+        m_Size--;
+        int next = slot;
+        while (true)
+        {
+            next = (next + 1) & m_Mask;
+            if (m_Stamps[next] != m_Stamp)
+            {
+                break;
+            }
+            int nextHome = home(m_Keys[next]);
+            //Entry at next may fill the gap if its home slot is not cyclically between the gap and next
+            boolean reachable = (slot <= next ? (nextHome > slot && nextHome <= next) : (nextHome > slot || nextHome <= next));
+            if (!reachable)
+            {
+                m_Keys[slot] = m_Keys[next];
+                m_Values[slot] = m_Values[next];
+                slot = next;
+            }
+        }
+        m_Stamps[slot] = m_Stamp - 1;
+    }
+}
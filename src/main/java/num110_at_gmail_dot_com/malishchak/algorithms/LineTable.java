@@ -0,0 +1,413 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.databases.N3QueensDataContract;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Every line on a board of a given size that passes through three or more square centers, including rows, columns and
+ * diagonals. The geometry depends only on the board size, so it is computed once and saved to a binary cache file
+ * beside the database. Later runs on the same board size map the file into memory and read it in place, with no
+ * parsing. Squares are numbered y * boardWidth + x. Each line's squares are listed in index order, and each square's
+ * lines in line order, so the lines through a square are found in O(1).
+ *
+ * The cache file holds a header of six ints (magic number, format version, board width, board height, line count,
+ * square count over all lines) followed by the int sections line starts, line direction keys, line squares, square
+ * starts and square lines. A cache file that is missing or does not match is rebuilt.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class LineTable {
+
+    /**
+     * Largest board, in squares, a table is built for. The number of lines grows with the fourth power of the board
+     * side, and a 64x64 board already has a cache file of around 27MB
+     */
+    public final static int MAX_BOARD_SQUARES = 64 * 64;
+
+    private final static int MAGIC = 0x4E334C54;
+    private final static int FORMAT_VERSION = 1;
+    private final static int HEADER_INTS = 6;
+
+    private final int m_BoardWidth;
+    private final int m_BoardHeight;
+    private final int m_LineCount;
+
+    /**
+     * Offset of each line's first square in m_LineSquares, with a final entry holding the total
+     */
+    private final IntBuffer m_LineStarts;
+
+    /**
+     * Reduced direction of each line in the DirectionChecker key format (dy << 16) | (dx & 0xFFFF)
+     */
+    private final IntBuffer m_LineKeys;
+    private final IntBuffer m_LineSquares;
+
+    /**
+     * Offset of each square's first line in m_SquareLines, with a final entry holding the total
+     */
+    private final IntBuffer m_SquareStarts;
+    private final IntBuffer m_SquareLines;
+
+    private LineTable(int boardWidth, int boardHeight, IntBuffer data)
+    {
+        m_BoardWidth = boardWidth;
+        m_BoardHeight = boardHeight;
+        m_LineCount = data.get(4);
+        int incidences = data.get(5);
+        int squares = boardWidth * boardHeight;
+
+        int offset = HEADER_INTS;
+        m_LineStarts = section(data, offset, m_LineCount + 1);
+        offset += m_LineCount + 1;
+        m_LineKeys = section(data, offset, m_LineCount);
+        offset += m_LineCount;
+        m_LineSquares = section(data, offset, incidences);
+        offset += incidences;
+        m_SquareStarts = section(data, offset, squares + 1);
+        offset += squares + 1;
+        m_SquareLines = section(data, offset, incidences);
+    }
+
+    /**
+     * Loads the line table for a board size from its cache file, building and saving it first if needed. If the cache
+     * file cannot be read or written the table is built in memory instead
+     * @param boardWidth Width of the chess board
+     * @param boardHeight Height of the chess board
+     * @return Line table for the board, or null if the board is empty or larger than MAX_BOARD_SQUARES
+     */
+    public static LineTable load(int boardWidth, int boardHeight)
+    {
+        if (boardWidth < 1 || boardHeight < 1 || (long) boardWidth * boardHeight > MAX_BOARD_SQUARES)
+        {
+            return null;
+        }
+
+        File cacheFile = getCacheFile(boardWidth, boardHeight);
+        IntBuffer data = mapCacheFile(cacheFile, boardWidth, boardHeight);
+        if (data == null)
+        {
+            int[] built = build(boardWidth, boardHeight);
+            if (writeCacheFile(cacheFile, built))
+            {
+                data = mapCacheFile(cacheFile, boardWidth, boardHeight);
+            }
+            if (data == null)
+            {
+                data = IntBuffer.wrap(built);
+            }
+        }
+        return new LineTable(boardWidth, boardHeight, data);
+    }
+
+    /**
+     * @return Cache file for a board size, in the same directory as the database
+     */
+    public static File getCacheFile(int boardWidth, int boardHeight)
+    {
+        File directory = new File(N3QueensDataContract.DATABASE_NAME).getAbsoluteFile().getParentFile();
+        return new File(directory, String.format(N3QueensDataContract.LINE_TABLE_CACHE_NAME, boardWidth, boardHeight));
+    }
+
+    public int getBoardWidth()
+    {
+        return m_BoardWidth;
+    }
+
+    public int getBoardHeight()
+    {
+        return m_BoardHeight;
+    }
+
+    /**
+     * @return Number of lines through three or more squares
+     */
+    public int getLineCount()
+    {
+        return m_LineCount;
+    }
+
+    /**
+     * @return Number of squares on the line
+     */
+    public int getLineSize(int line)
+    {
+        return m_LineStarts.get(line + 1) - m_LineStarts.get(line);
+    }
+
+    /**
+     * @return The i-th square of the line, in index order, as y * boardWidth + x
+     */
+    public int getLineSquare(int line, int i)
+    {
+        return m_LineSquares.get(m_LineStarts.get(line) + i);
+    }
+
+    /**
+     * @return Reduced direction of the line as a DirectionChecker key, (dy << 16) | (dx & 0xFFFF) with dy >= 0
+     */
+    public int getLineDirectionKey(int line)
+    {
+        return m_LineKeys.get(line);
+    }
+
+    /**
+     * @return True if queens on the line attack each other: a row, column or diagonal
+     */
+    public boolean isAttackLine(int line)
+    {
+        int key = m_LineKeys.get(line);
+        int stepX = (short) (key & 0xFFFF);
+        int stepY = key >>> 16;
+        return stepY == 0 || stepX == 0 || (stepY == 1 && (stepX == 1 || stepX == -1));
+    }
+
+    /**
+     * @param square Square as y * boardWidth + x
+     * @return Number of lines through three or more squares that pass through the square
+     */
+    public int getLinesThroughCount(int square)
+    {
+        return m_SquareStarts.get(square + 1) - m_SquareStarts.get(square);
+    }
+
+    /**
+     * @param square Square as y * boardWidth + x
+     * @return The i-th line through the square, in line order
+     */
+    public int getLineThrough(int square, int i)
+    {
+        return m_SquareLines.get(m_SquareStarts.get(square) + i);
+    }
+
+    /**
+     * Finds every line through three or more squares, walking each reduced direction from the squares where a line
+     * enters the board
+     * @return Table in the cache file layout
+     */
+    private static int[] build(int boardWidth, int boardHeight)
+    {
+        int squares = boardWidth * boardHeight;
+        int[] lineStarts = new int[16];
+        int[] lineKeys = new int[16];
+        int[] lineSquares = new int[64];
+        int lineCount = 0;
+        int incidences = 0;
+
+        //A line through three squares spans at least two steps in each axis
+        for (int stepY = 0; 2 * stepY < boardHeight; stepY++)
+        {
+            for (int stepX = -(boardWidth - 1) / 2; 2 * stepX < boardWidth; stepX++)
+            {
+                if ((stepY == 0 && stepX <= 0) || DirectionChecker.gcd(Math.abs(stepX), stepY) != 1)
+                {
+                    continue;
+                }
+                for (int startY = 0; startY < boardHeight; startY++)
+                {
+                    for (int startX = 0; startX < boardWidth; startX++)
+                    {
+                        int previousX = startX - stepX;
+                        int previousY = startY - stepY;
+                        if (previousX >= 0 && previousX < boardWidth && previousY >= 0 && previousY < boardHeight)
+                        {
+                            continue;
+                        }
+                        int length = lineLength(startX, startY, stepX, stepY, boardWidth, boardHeight);
+                        if (length < 3)
+                        {
+                            continue;
+                        }
+                        if (lineCount + 1 >= lineStarts.length)
+                        {
+                            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                            lineKeys = Arrays.copyOf(lineKeys, lineKeys.length * 2);
+                        }
+                        while (incidences + length > lineSquares.length)
+                        {
+                            lineSquares = Arrays.copyOf(lineSquares, lineSquares.length * 2);
+                        }
+                        lineStarts[lineCount] = incidences;
+                        lineKeys[lineCount] = (stepY << 16) | (stepX & 0xFFFF);
+                        for (int i = 0; i < length; i++)
+                        {
+                            lineSquares[incidences++] = (startY + i * stepY) * boardWidth + startX + i * stepX;
+                        }
+                        lineCount++;
+                    }
+                }
+            }
+        }
+        lineStarts[lineCount] = incidences;
+
+        //Invert into the lines through each square, keeping line order within each square
+        int[] squareStarts = new int[squares + 1];
+        for (int i = 0; i < incidences; i++)
+        {
+            squareStarts[lineSquares[i] + 1]++;
+        }
+        for (int s = 0; s < squares; s++)
+        {
+            squareStarts[s + 1] += squareStarts[s];
+        }
+        int[] squareLines = new int[incidences];
+        int[] fill = Arrays.copyOf(squareStarts, squares);
+        for (int line = 0; line < lineCount; line++)
+        {
+            for (int i = lineStarts[line]; i < lineStarts[line + 1]; i++)
+            {
+                squareLines[fill[lineSquares[i]]++] = line;
+            }
+        }
+
+        int[] data = new int[expectedInts(boardWidth, boardHeight, lineCount, incidences)];
+        data[0] = MAGIC;
+        data[1] = FORMAT_VERSION;
+        data[2] = boardWidth;
+        data[3] = boardHeight;
+        data[4] = lineCount;
+        data[5] = incidences;
+        int offset = HEADER_INTS;
+        System.arraycopy(lineStarts, 0, data, offset, lineCount + 1);
+        offset += lineCount + 1;
+        System.arraycopy(lineKeys, 0, data, offset, lineCount);
+        offset += lineCount;
+        System.arraycopy(lineSquares, 0, data, offset, incidences);
+        offset += incidences;
+        System.arraycopy(squareStarts, 0, data, offset, squares + 1);
+        offset += squares + 1;
+        System.arraycopy(squareLines, 0, data, offset, incidences);
+        return data;
+    }
+
+    /**
+     * @return Number of squares from (x,y) onwards along (stepX,stepY) that are on the board
+     */
+    private static int lineLength(int x, int y, int stepX, int stepY, int boardWidth, int boardHeight)
+    {
+        int steps = Integer.MAX_VALUE;
+        if (stepX > 0)
+        {
+            steps = (boardWidth - 1 - x) / stepX;
+        }
+        else if (stepX < 0)
+        {
+            steps = x / -stepX;
+        }
+        if (stepY > 0)
+        {
+            steps = Math.min(steps, (boardHeight - 1 - y) / stepY);
+        }
+        return steps + 1;
+    }
+
+    private static int expectedInts(int boardWidth, int boardHeight, int lineCount, int incidences)
+    {
+        return HEADER_INTS + (lineCount + 1) + lineCount + incidences + (boardWidth * boardHeight + 1) + incidences;
+    }
+
+    /**
+     * @return The cache file mapped read-only, or null if it is missing, unreadable or for a different board
+     */
+    private static IntBuffer mapCacheFile(File cacheFile, int boardWidth, int boardHeight)
+    {
+        if (!cacheFile.isFile())
+        {
+            return null;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "r"); FileChannel channel = file.getChannel())
+        {
+            long size = channel.size();
+            if (size < HEADER_INTS * 4L || size > Integer.MAX_VALUE)
+            {
+                return null;
+            }
+            //The mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            IntBuffer data = mapped.asIntBuffer();
+            if (data.get(0) != MAGIC || data.get(1) != FORMAT_VERSION || data.get(2) != boardWidth || data.get(3) != boardHeight
+                    || data.get(4) < 0 || data.get(5) < 0
+                    || size != 4L * expectedInts(boardWidth, boardHeight, data.get(4), data.get(5)))
+            {
+                return null;
+            }
+            return data;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the table to a temporary file and moves it over the cache file, so a reader never sees a partial table
+     * @return True if the cache file was written
+     */
+    private static boolean writeCacheFile(File cacheFile, int[] data)
+    {
+        File temporary = null;
+        try
+        {
+            temporary = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+            try (RandomAccessFile file = new RandomAccessFile(temporary, "rw"); FileChannel channel = file.getChannel())
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(data.length * 4);
+                buffer.asIntBuffer().put(data);
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+            try
+            {
+                Files.move(temporary.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        }
+        catch (IOException | SecurityException e)
+        {
+            System.out.println("Error writing line table cache file " + cacheFile.getName() + ".");
+            if (temporary != null)
+            {
+                temporary.delete();
+            }
+            return false;
+        }
+    }
+
+    private static IntBuffer section(IntBuffer data, int offset, int length)
+    {
+        IntBuffer view = data.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+}
@@ -0,0 +1,192 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Results;
+
+import java.util.Random;
+
+/**
+ * Randomized restarts of MostConstrainedRowScanner. Backtracking searches on this problem have heavy-tailed run
+ * times, where a few orderings take far longer than the rest, so a single fixed ordering is a lottery decided by the
+ * start position. Each attempt here picks the first queen's column, the order squares are tried in within every row,
+ * and the choice between equally constrained rows from a seeded random source, and is abandoned once it has expanded
+ * its node budget. Budgets follow the Luby sequence (1, 1, 2, 1, 1, 2, 4, 1, ...) in units of LUBY_UNIT_NODES, which is
+ * within a logarithmic factor of the best fixed budget without knowing the run time distribution in advance.
+ *
+ * An attempt that exhausts its subtree within budget proves there is no solution with the first queen on that
+ * column, and the column is not tried again, so the search still ends when no solution exists. The seed and the
+ * number of attempts are recorded in the Results, and running again with the same seed replays the same attempts.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class LubyRestartScanner extends MostConstrainedRowScanner
+{
+    /**
+     * Nodes in one unit of the Luby sequence. Must be a multiple of CANCELLATION_CHECK_INTERVAL, as budgets are only
+     * checked that often
+     */
+    private final static long LUBY_UNIT_NODES = 4L * CANCELLATION_CHECK_INTERVAL;
+
+    /**
+     * Nodes the current attempt may expand before it is abandoned
+     */
+    private long m_AttemptNodeLimit = Long.MAX_VALUE;
+
+    public LubyRestartScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "LubyRestartScanner";
+        m_AlgorithmDescription = "Runs MostConstrainedRowScanner as a series of short randomized attempts. Each\n" +
+                "attempt picks the first queen's column, the order squares are tried within\n" +
+                "every row, and ties between equally constrained rows from a seeded random\n" +
+                "source, and is abandoned after a node budget. Budgets follow the Luby sequence\n" +
+                "1, 1, 2, 1, 1, 2, 4, 1, ... so unlucky orderings are cut short while every\n" +
+                "budget keeps growing. A first column whose subtree is exhausted within budget\n" +
+                "is not tried again. Each attempt is treated as a new iteration, and the seed\n" +
+                "can be given to replay a run.";
+    }
+
+    /**
+     * @param i Index into the Luby sequence, starting at 1
+     * @return The i-th term of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+     */
+    public static long luby(long i)
+    {
+        while (true)
+        {
+            //Smallest k with 2^k - 1 >= i
+            int k = 64 - Long.numberOfLeadingZeros(i);
+            if (i == (1L << k) - 1)
+            {
+                return 1L << (k - 1);
+            }
+            //i lies inside a repeat of the sequence before the next power of two
+            i -= (1L << (k - 1)) - 1;
+        }
+    }
+
+    @Override
+    public Results run() {
+        prepareSearch();
+        int firstQueenXLimit = getFirstQueenXLimit();
+        int openColumns = Math.max(0, firstQueenXLimit - m_StartXOffset);
+        boolean[] exhaustedColumns = new boolean[Math.max(1, m_BoardWidth)];
+        int[] columnOrder = new int[Math.max(1, m_BoardWidth)];
+        for (int x = 0; x < m_BoardWidth; x++)
+        {
+            columnOrder[x] = x;
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Random seed: " + m_RandomSeed + ".");
+        Random random = new Random(m_RandomSeed);
+        boolean solved = false;
+        boolean stopped = false;
+        int attempt = 0;
+        long totalNodes = 0;
+        if (m_TargetQueens > m_BoardHeight || m_TargetQueens > m_BoardWidth)
+        {
+            openColumns = 0;
+        }
+        while (!solved && !stopped && openColumns > 0)
+        {
+            long attemptTimerStart = System.currentTimeMillis();
+            attempt++;
+            long budget = luby(attempt) * LUBY_UNIT_NODES;
+
+            //First queen on a random column not yet proven to have no solution
+            int pick = random.nextInt(openColumns);
+            int firstX = m_StartXOffset;
+            for (int x = m_StartXOffset; x < firstQueenXLimit; x++)
+            {
+                if (!exhaustedColumns[x] && pick-- == 0)
+                {
+                    firstX = x;
+                    break;
+                }
+            }
+            for (int i = m_BoardWidth - 1; i > 0; i--)
+            {
+                int j = random.nextInt(i + 1);
+                int swap = columnOrder[i];
+                columnOrder[i] = columnOrder[j];
+                columnOrder[j] = swap;
+            }
+
+            prepareSearch();
+            m_ColumnOrder = columnOrder;
+            m_TieBreakRandom = random;
+            m_AttemptNodeLimit = budget;
+            m_IterationCount = attempt;
+            m_FirstQueenX = firstX;
+            placeQueen(firstX, 0);
+            m_RowColumns[0] = firstX;
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.placed(1, firstX, 0);
+            solved = search(1);
+            totalNodes += m_NodeCount;
+
+            long attemptTimerDuration = System.currentTimeMillis() - attemptTimerStart;
+            if (solved)
+            {
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Success! Attempt " + attempt + " completed in " + attemptTimerDuration + "ms with a budget of " + budget + " nodes.");
+            }
+            else if (m_Cancelled && super.isCancellationRequested())
+            {
+                stopped = true;
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Attempt " + attempt + " cancelled after " + attemptTimerDuration + "ms. XXX");
+            }
+            else if (m_Cancelled)
+            {
+                if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) System.out.println("XXX Attempt " + attempt + " from Queen 1 start position (" + firstX + ",0) used its budget of " + budget + " nodes in " + attemptTimerDuration + "ms. XXX");
+            }
+            else
+            {
+                exhaustedColumns[firstX] = true;
+                openColumns--;
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Attempt " + attempt + " completed in " + attemptTimerDuration + "ms. No solution exists with Queen 1 at start position (" + firstX + ",0). XXX");
+            }
+        }
+        m_ColumnOrder = null;
+        m_TieBreakRandom = null;
+        m_AttemptNodeLimit = Long.MAX_VALUE;
+        publishSearchMetrics(m_PlacedCount);
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println((solved ? "!!! Solution found after " : "XXX Algorithm failed after ") + attempt + " attempts. " + totalNodes + " nodes expanded.");
+        }
+        Results results = buildResults(solved);
+        results.setRandom_seed(m_RandomSeed);
+        results.setAttempts(attempt);
+        return results;
+    }
+
+    @Override
+    protected boolean isCancellationRequested()
+    {
+        return m_NodeCount >= m_AttemptNodeLimit || super.isCancellationRequested();
+    }
+
+    @Override
+    protected void checkBestRun()
+    {
+        int bestPlaced = m_BestPlacedQueens.size();
+        super.checkBestRun();
+        if (m_BestPlacedQueens.size() > bestPlaced)
+        {
+            m_BestIteration = m_IterationCount;
+        }
+    }
+}
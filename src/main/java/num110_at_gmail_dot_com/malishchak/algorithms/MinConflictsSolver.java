@@ -0,0 +1,577 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Local search that repairs a full placement instead of building one row at a time. Every row holds exactly one queen
+ * on its own column, so only diagonal attacks and lines of three can be violated. Each step picks a queen involved in
+ * a violation and swaps its column with the row whose swap leaves the two queens in the fewest violations, with a
+ * small chance of a random swap to escape plateaus. Diagonal occupancy is kept as per-diagonal counts, and the number
+ * of queens on every line through two or more queens is kept in a LineCountMap, so moving a queen updates the
+ * violation count of every other queen in O(N) instead of rescoring the board. A run that stops improving is
+ * restarted from a new greedy placement, and each restart is treated as an iteration.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class MinConflictsSolver extends BaseN3QueensAlgorithm
+{
+    /**
+     * Restarts attempted before the search gives up and reports its best placement
+     */
+    private final static int MAX_RESTARTS = 1000;
+
+    /**
+     * Steps without a new lowest violation count before a restart, per queen
+     */
+    private final static int STALL_STEPS_PER_QUEEN = 10;
+
+    /**
+     * Steps between checks of the deadline. Must be a power of two
+     */
+    private final static int STOP_CHECK_INTERVAL = 1024;
+
+    /**
+     * Chance, out of 1000, that a step swaps with a random row instead of the best one
+     */
+    private final static int RANDOM_SWAP_PER_MILLE = 10;
+
+    private Random m_Random;
+
+    /**
+     * Column of the queen on each row
+     */
+    private int[] m_Columns;
+
+    /**
+     * Queens on each diagonal, indexed by x - y + boardHeight - 1, and each anti-diagonal, indexed by x + y
+     */
+    private int[] m_DiagonalCounts;
+    private int[] m_AntiDiagonalCounts;
+
+    /**
+     * Number of queens on every line holding at least two queens, excluding attacking directions
+     */
+    private LineCountMap m_LineCounts;
+
+    /**
+     * Scratch map of the lines seen during a single O(N) pass over the queens
+     */
+    private LineCountMap m_PassLines;
+
+    /**
+     * Violations each queen is part of: queens attacking it, plus pairs of queens it forms a line of three with
+     */
+    private int[] m_Conflicts;
+
+    /**
+     * Attacking pairs plus lines of three across the whole board. Zero for a solution
+     */
+    private long m_TotalViolations;
+
+    private DirectionChecker m_Checker;
+    private long m_StepCount = 0;
+
+    public MinConflictsSolver(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "MinConflictsSolver";
+        m_AlgorithmDescription = "Starts with one queen on every row and column, placed greedily, and repairs\n" +
+                "the placement with min-conflicts moves. Each step picks a queen that is attacked\n" +
+                "or on a line with two others, and swaps its column with the row that leaves both\n" +
+                "queens in the fewest violations. Queens per diagonal and per line are counted as\n" +
+                "queens move, so each swap updates the violation counts of every queen without\n" +
+                "rescoring the board. When the number of violations stops falling the placement\n" +
+                "is rebuilt, and each rebuild is treated as a new iteration. Requires one queen\n" +
+                "per row of a board at least as wide as it is tall.";
+    }
+
+    @Override
+    public Results run() {
+        Results results = new Results();
+        results.setAlgorithm(m_AlgorithmName);
+        results.setAlgorithm_version(m_Version);
+        results.setTarget_queens(m_TargetQueens);
+        results.setBoard_height(m_BoardHeight);
+        results.setBoard_width(m_BoardWidth);
+        results.setFirst_queen_x(m_StartXOffset);
+        results.setRandom_seed(m_RandomSeed);
+
+        if (m_TargetQueens != m_BoardHeight || m_BoardWidth < m_BoardHeight || m_TargetQueens < 1)
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX MinConflictsSolver requires one queen per row on a board at least as wide as it is tall. XXX");
+            results.setDate(System.currentTimeMillis());
+            results.setPlaced_queens(new ArrayList<Queen>());
+            results.setRemaining_queens(m_TargetQueens);
+            results.setSuccess(0);
+            results.setWas_best_run(0);
+            return results;
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Random seed: " + m_RandomSeed + ".");
+        m_Random = new Random(m_RandomSeed);
+        int n = m_TargetQueens;
+        m_Columns = new int[n];
+        m_Conflicts = new int[n];
+        m_DiagonalCounts = new int[m_BoardWidth + m_BoardHeight - 1];
+        m_AntiDiagonalCounts = new int[m_BoardWidth + m_BoardHeight - 1];
+        m_LineCounts = new LineCountMap(n * (n - 1) / 2);
+        m_PassLines = new LineCountMap(n);
+        m_Checker = new DirectionChecker(m_BoardWidth, m_BoardHeight, n);
+        m_StepCount = 0;
+
+        int[] bestColumns = null;
+        long bestViolations = Long.MAX_VALUE;
+        int bestIteration = 0;
+        boolean solved = false;
+        boolean stopped = false;
+        long publishedSteps = 0;
+        int iteration = 0;
+        while (iteration < MAX_RESTARTS && !solved && !stopped)
+        {
+            long iterationTimerStart = System.currentTimeMillis();
+            iteration++;
+            buildGreedyPlacement();
+            long restartBest = m_TotalViolations;
+            long stallSteps = 0;
+            while (m_TotalViolations > 0 && stallSteps < (long) STALL_STEPS_PER_QUEEN * n && !stopped)
+            {
+                step();
+                if ((m_StepCount & (STOP_CHECK_INTERVAL - 1)) == 0)
+                {
+                    //Steps stand in for nodes, a local search has no depth
+                    publishMetrics(m_StepCount - publishedSteps, -1);
+                    publishedSteps = m_StepCount;
+                    stopped = isStopRequested();
+                }
+                if (m_TotalViolations < restartBest)
+                {
+                    restartBest = m_TotalViolations;
+                    stallSteps = 0;
+                }
+                else
+                {
+                    stallSteps++;
+                }
+            }
+            if (m_TotalViolations < bestViolations)
+            {
+                bestViolations = m_TotalViolations;
+                bestColumns = Arrays.copyOf(m_Columns, n);
+                bestIteration = iteration;
+            }
+
+            long iterationTimerDuration = System.currentTimeMillis() - iterationTimerStart;
+            if (m_TotalViolations == 0)
+            {
+                //Incremental counts say solved, confirm with an exact check of every queen
+                solved = m_Checker.checkAll(buildXs(m_Columns), buildYs(n), n) == DirectionChecker.CONFLICT_NONE;
+                if (solved)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Success! Iteration " + iteration + " completed in " + iterationTimerDuration + "ms.");
+                }
+                else
+                {
+                    System.err.println("Violation counts out of step with placement in iteration " + iteration + ".");
+                }
+            }
+            else if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+            {
+                System.out.println("XXX Iteration " + iteration + " " + (stopped ? (wasTimedOut() ? "timed out" : "was cancelled") : "stalled") + " after " + iterationTimerDuration + "ms with " + m_TotalViolations + " violations (lowest " + restartBest + "). XXX");
+            }
+        }
+        publishMetrics(m_StepCount - publishedSteps, -1);
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println((solved ? "!!! Solution found after " : "XXX Algorithm failed after ") + iteration + " iterations. " + m_StepCount + " steps taken.");
+        }
+
+        results.setDate(System.currentTimeMillis());
+        results.setTotal_iterations(iteration);
+        results.setAttempts(iteration);
+        if (solved)
+        {
+            results.setPlaced_queens(toQueens(m_Columns));
+            results.setRemaining_queens(0);
+            results.setBest_iteration(iteration);
+            results.setSuccess(1);
+            results.setWas_best_run(1);
+            results.setFirst_queen_x(m_Columns[0]);
+            return results;
+        }
+
+        //Report the placement with the fewest violations, with queens removed until the rest are conflict free
+        rebuild(bestColumns);
+        ArrayList<Queen> placed = pruneConflicts();
+        m_BestPlacedQueens = placed;
+        m_BestRemainingQueens = n - placed.size();
+        m_BestIteration = bestIteration;
+        results.setPlaced_queens(new ArrayList<Queen>(placed));
+        results.setRemaining_queens(m_BestRemainingQueens);
+        results.setBest_iteration(m_BestIteration);
+        results.setSuccess(0);
+        results.setWas_best_run(1);
+        return results;
+    }
+
+    /**
+     * Swaps the column of a random conflicted queen with the row whose swap leaves the fewest violations on the board.
+     * The change each swap would make is found exactly from the two new squares and the violation counts of the two
+     * queens, without moving any queen
+     */
+    private void step()
+    {
+        m_StepCount++;
+        int n = m_TargetQueens;
+
+        //Pick a conflicted row uniformly by reservoir sampling
+        int row = -1;
+        int seen = 0;
+        for (int r = 0; r < n; r++)
+        {
+            if (m_Conflicts[r] > 0 && m_Random.nextInt(++seen) == 0)
+            {
+                row = r;
+            }
+        }
+        if (row < 0)
+        {
+            return;
+        }
+
+        int bestOther;
+        if (m_Random.nextInt(1000) < RANDOM_SWAP_PER_MILLE)
+        {
+            bestOther = m_Random.nextInt(n - 1);
+            if (bestOther >= row) bestOther++;
+        }
+        else
+        {
+            bestOther = -1;
+            long bestCost = Long.MAX_VALUE;
+            int ties = 0;
+            int rowX = m_Columns[row];
+            for (int other = 0; other < n; other++)
+            {
+                if (other == row)
+                {
+                    continue;
+                }
+                //Change in violations is the cost of both new squares, plus violations shared by the two new
+                //squares, less the violations of both old queens, plus those they shared and would be counted twice
+                int otherX = m_Columns[other];
+                int pairKey = m_Checker.getDirectionKey(rowX - otherX, row - other);
+                long sharedBefore = (pairKey == DirectionChecker.KEY_ATTACK ? 1 : m_LineCounts.get(LineCountMap.lineKey(pairKey, rowX, row)) - 2);
+                long base = sharedBefore - m_Conflicts[other] - m_Conflicts[row];
+                long limit = (bestCost == Long.MAX_VALUE ? Long.MAX_VALUE : bestCost - base);
+                long cost = squareCost(otherX, row, row, other, limit);
+                if (cost <= limit)
+                {
+                    //Swapped squares lie on the mirrored direction, and attack each other exactly when the old ones did
+                    long sharedAfter = (pairKey == DirectionChecker.KEY_ATTACK ? 1 : m_PassLines.get(m_Checker.getDirectionKey(otherX - rowX, row - other)));
+                    cost += sharedAfter;
+                    if (cost <= limit)
+                    {
+                        cost += squareCost(rowX, other, row, other, limit - cost);
+                    }
+                }
+                cost += base;
+                if (cost < bestCost)
+                {
+                    bestCost = cost;
+                    bestOther = other;
+                    ties = 1;
+                }
+                else if (cost == bestCost && m_Random.nextInt(++ties) == 0)
+                {
+                    bestOther = other;
+                }
+            }
+            if (bestOther < 0)
+            {
+                return;
+            }
+        }
+
+        int rowX = m_Columns[row];
+        int otherX = m_Columns[bestOther];
+        removeQueen(row);
+        removeQueen(bestOther);
+        addQueen(row, otherX);
+        addQueen(bestOther, rowX);
+        if (m_LoggingLevel >= LOGGING_LEVEL_DEBUG) m_EventLog.swapped(m_StepCount, row, bestOther, m_TotalViolations);
+    }
+
+    /**
+     * Counts the violations a queen on (x,y) would be part of, ignoring two rows whose queens are about to move
+     * @param limit Counting stops once the count passes this value
+     * @return Queens attacking the square plus pairs of queens on a line with it, or a value above limit
+     */
+    private long squareCost(int x, int y, int ignoreRow1, int ignoreRow2, long limit)
+    {
+        long cost = m_DiagonalCounts[x - y + m_BoardHeight - 1] + m_AntiDiagonalCounts[x + y];
+        cost -= diagonalOverlap(x, y, ignoreRow1);
+        if (ignoreRow2 != ignoreRow1)
+        {
+            cost -= diagonalOverlap(x, y, ignoreRow2);
+        }
+
+        m_PassLines.clear();
+        for (int j = 0; j < m_TargetQueens; j++)
+        {
+            if (j == ignoreRow1 || j == ignoreRow2 || j == y || m_Columns[j] < 0)
+            {
+                continue;
+            }
+            int key = m_Checker.getDirectionKey(x - m_Columns[j], y - j);
+            if (key == DirectionChecker.KEY_ATTACK)
+            {
+                continue;
+            }
+            //Every line in this pass runs through (x,y), so the direction alone identifies it
+            int onLine = m_PassLines.get(key);
+            cost += onLine;
+            if (cost > limit)
+            {
+                return cost;
+            }
+            m_PassLines.put(key, onLine + 1);
+        }
+        return cost;
+    }
+
+    /**
+     * @return Number of the diagonals through (x,y) that the queen of a row is counted on, 0 if the row is empty
+     */
+    private int diagonalOverlap(int x, int y, int row)
+    {
+        int rowX = m_Columns[row];
+        if (rowX < 0)
+        {
+            return 0;
+        }
+        return (rowX - row == x - y ? 1 : 0) + (rowX + row == x + y ? 1 : 0);
+    }
+
+    /**
+     * Places the queen of a row, updating the diagonal, line and violation counts of every queen it affects
+     */
+    private void addQueen(int row, int x)
+    {
+        m_Columns[row] = x;
+        m_PassLines.clear();
+        int conflicts = 0;
+        for (int j = 0; j < m_TargetQueens; j++)
+        {
+            if (j == row || m_Columns[j] < 0)
+            {
+                continue;
+            }
+            int key = m_Checker.getDirectionKey(x - m_Columns[j], row - j);
+            if (key == DirectionChecker.KEY_ATTACK)
+            {
+                m_Conflicts[j]++;
+                conflicts++;
+                m_TotalViolations++;
+                continue;
+            }
+            long line = LineCountMap.lineKey(key, x, row);
+            int before = m_PassLines.get(line);
+            if (before == 0)
+            {
+                //First queen seen on this line in this pass, so the line gains the new queen once
+                int onLine = m_LineCounts.get(line);
+                before = (onLine == 0 ? 1 : onLine);
+                m_PassLines.put(line, before);
+                m_LineCounts.put(line, before + 1);
+                conflicts += before * (before - 1) / 2;
+                m_TotalViolations += before * (before - 1) / 2;
+            }
+            //Each other queen on the line now forms a line of three with the new queen and every queen beside it
+            m_Conflicts[j] += before - 1;
+        }
+        m_Conflicts[row] = conflicts;
+        m_DiagonalCounts[x - row + m_BoardHeight - 1]++;
+        m_AntiDiagonalCounts[x + row]++;
+    }
+
+    /**
+     * Lifts the queen of a row, reversing addQueen
+     */
+    private void removeQueen(int row)
+    {
+        int x = m_Columns[row];
+        m_PassLines.clear();
+        for (int j = 0; j < m_TargetQueens; j++)
+        {
+            if (j == row || m_Columns[j] < 0)
+            {
+                continue;
+            }
+            int key = m_Checker.getDirectionKey(x - m_Columns[j], row - j);
+            if (key == DirectionChecker.KEY_ATTACK)
+            {
+                m_Conflicts[j]--;
+                m_TotalViolations--;
+                continue;
+            }
+            long line = LineCountMap.lineKey(key, x, row);
+            int before = m_PassLines.get(line);
+            if (before == 0)
+            {
+                before = m_LineCounts.get(line);
+                m_PassLines.put(line, before);
+                m_LineCounts.put(line, (before > 2 ? before - 1 : 0));
+                m_TotalViolations -= (before - 1) * (before - 2) / 2;
+            }
+            m_Conflicts[j] -= before - 2;
+        }
+        m_Conflicts[row] = 0;
+        m_DiagonalCounts[x - row + m_BoardHeight - 1]--;
+        m_AntiDiagonalCounts[x + row]--;
+        m_Columns[row] = -1;
+    }
+
+    /**
+     * Clears the board and places queens row by row in a random order, each on the free column with the fewest
+     * violations against the queens already placed
+     */
+    private void buildGreedyPlacement()
+    {
+        int n = m_TargetQueens;
+        clearBoard();
+
+        int[] rows = shuffledRange(n);
+        boolean[] used = new boolean[m_BoardWidth];
+        for (int row : rows)
+        {
+            int bestX = -1;
+            long bestCost = Long.MAX_VALUE;
+            int ties = 0;
+            for (int x = 0; x < m_BoardWidth; x++)
+            {
+                if (used[x])
+                {
+                    continue;
+                }
+                long cost = squareCost(x, row, row, row, bestCost);
+                if (cost < bestCost)
+                {
+                    bestCost = cost;
+                    bestX = x;
+                    ties = 1;
+                }
+                else if (cost == bestCost && m_Random.nextInt(++ties) == 0)
+                {
+                    bestX = x;
+                }
+            }
+            used[bestX] = true;
+            addQueen(row, bestX);
+        }
+    }
+
+    /**
+     * Places queens on the given columns, one per row
+     */
+    private void rebuild(int[] columns)
+    {
+        clearBoard();
+        for (int row = 0; row < columns.length; row++)
+        {
+            addQueen(row, columns[row]);
+        }
+    }
+
+    private void clearBoard()
+    {
+        Arrays.fill(m_Columns, -1);
+        Arrays.fill(m_Conflicts, 0);
+        Arrays.fill(m_DiagonalCounts, 0);
+        Arrays.fill(m_AntiDiagonalCounts, 0);
+        m_LineCounts.clear();
+        m_TotalViolations = 0;
+    }
+
+    /**
+     * Removes the queen with the most violations until none remain
+     * @return The queens left on the board
+     */
+    private ArrayList<Queen> pruneConflicts()
+    {
+        while (m_TotalViolations > 0)
+        {
+            int worst = 0;
+            for (int r = 1; r < m_TargetQueens; r++)
+            {
+                if (m_Conflicts[r] > m_Conflicts[worst]) worst = r;
+            }
+            removeQueen(worst);
+        }
+        return toQueens(m_Columns);
+    }
+
+    private int[] shuffledRange(int n)
+    {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            values[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--)
+        {
+            int j = m_Random.nextInt(i + 1);
+            int t = values[i];
+            values[i] = values[j];
+            values[j] = t;
+        }
+        return values;
+    }
+
+    private static ArrayList<Queen> toQueens(int[] columns)
+    {
+        ArrayList<Queen> queens = new ArrayList<Queen>();
+        for (int row = 0; row < columns.length; row++)
+        {
+            if (columns[row] >= 0)
+            {
+                queens.add(new Queen(columns[row], row));
+            }
+        }
+        return queens;
+    }
+
+    private static int[] buildXs(int[] columns)
+    {
+        return Arrays.copyOf(columns, columns.length);
+    }
+
+    private static int[] buildYs(int n)
+    {
+        int[] ys = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            ys[i] = i;
+        }
+        return ys;
+    }
+}
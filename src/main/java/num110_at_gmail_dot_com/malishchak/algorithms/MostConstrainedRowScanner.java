@@ -0,0 +1,411 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Undo search that fills rows in order of how constrained they are instead of top to bottom. Every square of the board
+ * keeps a counter of the placed-queen lines covering it, in the same manner as ForbiddenMaskScanner, except that
+ * lines are marked across the whole board rather than only below the new queen, so the number of legal squares left
+ * on every open row is known after each placement. The next row filled is the open row with the fewest legal squares,
+ * so a row that has lost all of its squares ends the branch at once rather than deep in the tree, and rows with a
+ * single square left are filled without branching.
+ *
+ * The first queen is still placed on the first row, and each of its columns is treated as an iteration. On boards
+ * with more rows than queens a row may be closed without a queen while enough rows with legal squares remain. Rows
+ * are not filled in order, so with symmetry breaking active only the first queen is limited to the left half of the
+ * first row and complete placements that are not the lexicographic leader of their images are rejected.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class MostConstrainedRowScanner extends BaseRowScannerAlgorithm
+{
+    /**
+     * What each search level currently has applied to its row
+     */
+    private final static int ACTION_NONE = 0;
+    private final static int ACTION_PLACED = 1;
+    private final static int ACTION_CLOSED = 2;
+
+    /**
+     * Number of placed-queen lines covering each square, indexed by y * boardWidth + x
+     */
+    private int[] m_ForbiddenCounts;
+
+    /**
+     * Squares with a non-zero forbidden count, one bitset of m_RowWords longs per row
+     */
+    private long[][] m_ForbiddenRows;
+
+    private int m_RowWords;
+
+    /**
+     * Number of squares in each row that are not forbidden
+     */
+    private int[] m_RowFreeCounts;
+
+    /**
+     * Reduced step along the line between two squares, indexed by (dy + boardHeight - 1) * (2 * boardWidth - 1) +
+     * (dx + boardWidth - 1), with dy normalized to be positive
+     */
+    private int[] m_StepXs;
+    private int[] m_StepYs;
+
+    /**
+     * Row chosen by each level of the search, the first position of its square order not yet tried, the action applied
+     * to it, and how many open rows with legal squares were spare when it was chosen
+     */
+    private int[] m_LevelRows;
+    private int[] m_LevelCursors;
+    private int[] m_LevelActions;
+    private int[] m_LevelSpareRows;
+
+    /**
+     * Order in which the squares of every row are tried, or null to try them left to right
+     */
+    protected int[] m_ColumnOrder = null;
+
+    /**
+     * Source of random choices between equally constrained rows, or null to take the topmost
+     */
+    protected Random m_TieBreakRandom = null;
+
+    public MostConstrainedRowScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "MostConstrainedRowScanner";
+        m_AlgorithmDescription = "Places queens one row at a time, always filling next the open row with the\n" +
+                "fewest legal squares left. When a queen is placed, every square it attacks and\n" +
+                "every square on the line through it and any earlier queen is marked as forbidden\n" +
+                "by incrementing a per-square counter, and each row keeps a count of its squares\n" +
+                "that are still legal. A row with no legal squares left ends the branch at once,\n" +
+                "and rows with one legal square are filled without branching. When queens are\n" +
+                "removed the same squares are decremented, exactly reversing the placement. Each\n" +
+                "first row start position is treated as a new iteration.";
+    }
+
+    /**
+     * Rows are filled in a dynamic order, so the search frontier is not a row-by-row prefix that a checkpoint can hold
+     */
+    @Override
+    public boolean supportsCheckpoints()
+    {
+        return false;
+    }
+
+    @Override
+    protected void onRunStarted()
+    {
+        int rows = Math.max(1, m_BoardHeight);
+        m_RowWords = (m_BoardWidth + 63) >>> 6;
+        m_ForbiddenCounts = new int[m_BoardWidth * m_BoardHeight];
+        m_ForbiddenRows = new long[rows][m_RowWords];
+        m_RowFreeCounts = new int[rows];
+        Arrays.fill(m_RowFreeCounts, m_BoardWidth);
+        m_LevelRows = new int[rows];
+        m_LevelCursors = new int[rows];
+        m_LevelActions = new int[rows];
+        m_LevelSpareRows = new int[rows];
+
+        int spanX = 2 * m_BoardWidth - 1;
+        m_StepXs = new int[spanX * (2 * m_BoardHeight - 1)];
+        m_StepYs = new int[m_StepXs.length];
+        for (int dy = -(m_BoardHeight - 1); dy < m_BoardHeight; dy++)
+        {
+            for (int dx = -(m_BoardWidth - 1); dx < m_BoardWidth; dx++)
+            {
+                int g = Math.max(1, DirectionChecker.gcd(Math.abs(dx), Math.abs(dy)));
+                int sign = (dy < 0 ? -1 : 1);
+                int index = (dy + m_BoardHeight - 1) * spanX + (dx + m_BoardWidth - 1);
+                m_StepXs[index] = sign * dx / g;
+                m_StepYs[index] = sign * dy / g;
+            }
+        }
+    }
+
+    @Override
+    protected boolean canPlace(int x, int y)
+    {
+        return m_ForbiddenCounts[y * m_BoardWidth + x] == 0;
+    }
+
+    @Override
+    protected int nextCandidate(int y, int fromX)
+    {
+        long[] forbidden = m_ForbiddenRows[y];
+        for (int w = fromX >>> 6; w < m_RowWords; w++)
+        {
+            long free = ~forbidden[w];
+            if (w == (fromX >>> 6))
+            {
+                free &= (-1L << (fromX & 63));
+            }
+            if (free != 0)
+            {
+                int x = (w << 6) + Long.numberOfTrailingZeros(free);
+                return (x < m_BoardWidth ? x : -1);
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected void onQueenPlaced(int x, int y)
+    {
+        markLines(x, y, 1);
+    }
+
+    @Override
+    protected void onQueenRemoved(int x, int y)
+    {
+        markLines(x, y, -1);
+    }
+
+    /**
+     * Depth-first search that fills the open row with the fewest legal squares at each level. Rows are chosen
+     * dynamically, so rootRow is ignored and every row not holding a queen is open to the search. rootFromX is not
+     * supported, as no row is part way through when the search starts
+     * @param rootRow Ignored
+     * @param rootFromX Ignored
+     * @return As search(rootRow) in BaseRowScannerAlgorithm
+     */
+    @Override
+    protected boolean search(int rootRow, int rootFromX)
+    {
+        int depth = 0;
+        boolean expand = true;
+        while (true)
+        {
+            if (expand)
+            {
+                m_NodeCount++;
+                boolean complete = (m_PlacedCount == m_TargetQueens);
+                if (complete && !m_CountingSolutions && (!m_SymmetryActive || isSymmetryLeader()))
+                {
+                    return true;
+                }
+                if ((m_NodeCount & (CANCELLATION_CHECK_INTERVAL - 1)) == 0 && isCancellationRequested())
+                {
+                    m_Cancelled = true;
+                    checkBestRun();
+                    return false;
+                }
+
+                if (complete)
+                {
+                    //Rows were not filled in order, so only complete placements can be compared with their images
+                    if (!m_SymmetryActive || isSymmetryLeader())
+                    {
+                        recordSolution();
+                    }
+                }
+                else if (selectRow(depth))
+                {
+                    depth++;
+                }
+                else
+                {
+                    checkBestRun();
+                }
+            }
+
+            //Undo whatever the deepest level last tried on its row and move on to its next option
+            if (depth == 0)
+            {
+                return false;
+            }
+            int level = depth - 1;
+            int y = m_LevelRows[level];
+            if (m_LevelActions[level] == ACTION_PLACED)
+            {
+                if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.removed(m_PlacedCount, m_RowColumns[y], y);
+                removeLastQueen();
+            }
+            m_RowColumns[y] = ROW_EMPTY;
+            m_LevelActions[level] = ACTION_NONE;
+
+            int cursor = m_LevelCursors[level];
+            int position = (cursor < m_BoardWidth ? nextPosition(y, cursor) : -1);
+            if (position >= 0)
+            {
+                int x = (m_ColumnOrder == null ? position : m_ColumnOrder[position]);
+                placeQueen(x, y);
+                m_RowColumns[y] = x;
+                m_LevelCursors[level] = position + 1;
+                m_LevelActions[level] = ACTION_PLACED;
+                if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
+                expand = true;
+            }
+            else if (cursor <= m_BoardWidth && m_LevelSpareRows[level] > 0)
+            {
+                //Row exhausted but enough other rows have legal squares, close it without a queen
+                m_RowColumns[y] = ROW_SKIPPED;
+                m_LevelCursors[level] = m_BoardWidth + 1;
+                m_LevelActions[level] = ACTION_CLOSED;
+                expand = true;
+            }
+            else
+            {
+                depth--;
+                expand = false;
+            }
+        }
+    }
+
+    /**
+     * Picks the open row with the fewest legal squares and sets it up as the given level of the search
+     * @param level Level of the search to set up
+     * @return False if fewer open rows have a legal square than there are queens left to place
+     */
+    private boolean selectRow(int level)
+    {
+        int bestRow = -1;
+        int bestFree = Integer.MAX_VALUE;
+        int ties = 0;
+        int usableRows = 0;
+        for (int r = 0; r < m_BoardHeight; r++)
+        {
+            int free = m_RowFreeCounts[r];
+            if (m_RowColumns[r] != ROW_EMPTY || free == 0)
+            {
+                continue;
+            }
+            usableRows++;
+            if (free < bestFree)
+            {
+                bestFree = free;
+                bestRow = r;
+                ties = 1;
+            }
+            else if (free == bestFree && m_TieBreakRandom != null && m_TieBreakRandom.nextInt(++ties) == 0)
+            {
+                bestRow = r;
+            }
+        }
+        int spareRows = usableRows - (m_TargetQueens - m_PlacedCount);
+        if (spareRows < 0)
+        {
+            return false;
+        }
+        if (m_LoggingLevel >= LOGGING_LEVEL_DEBUG) m_EventLog.rowChosen(bestRow, bestFree);
+        m_LevelRows[level] = bestRow;
+        m_LevelCursors[level] = 0;
+        m_LevelActions[level] = ACTION_NONE;
+        m_LevelSpareRows[level] = spareRows;
+        return true;
+    }
+
+    /**
+     * Finds the next legal square of a row in the order squares are tried
+     * @param y Row to search
+     * @param from First position in the order to consider
+     * @return Position in the order of the next legal square, which is its column when no order is set, or -1 if none
+     * remain
+     */
+    private int nextPosition(int y, int from)
+    {
+        if (m_ColumnOrder == null)
+        {
+            return nextCandidate(y, from);
+        }
+        for (int position = from; position < m_BoardWidth; position++)
+        {
+            if (canPlace(m_ColumnOrder[position], y))
+            {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds delta to every square the given queen attacks along its column and diagonals, and every square on the line
+     * through it and each earlier queen. The queen must be the most recently placed queen
+     * @param x X-coordinate of the queen
+     * @param y Y-coordinate of the queen
+     * @param delta 1 when placing the queen, -1 when removing it
+     */
+    private void markLines(int x, int y, int delta)
+    {
+        //Attacks along the column and both diagonals, in both directions
+        markLine(x, y, 0, 1, delta, true);
+        markLine(x, y, 1, 1, delta, true);
+        markLine(x, y, -1, 1, delta, true);
+
+        //Lines through each earlier queen. The last entry in the placed arrays is this queen
+        int spanX = 2 * m_BoardWidth - 1;
+        int base = (y + m_BoardHeight - 1) * spanX + (x + m_BoardWidth - 1);
+        for (int j = 0; j < m_PlacedCount - 1; j++)
+        {
+            int dx = x - m_QueenXs[j];
+            int dy = y - m_QueenYs[j];
+            if (DirectionChecker.isAttack(dx, dy))
+            {
+                continue;
+            }
+            int index = base - m_QueenYs[j] * spanX - m_QueenXs[j];
+            markLine(x, y, m_StepXs[index], m_StepYs[index], delta, false);
+        }
+    }
+
+    /**
+     * Adds delta to the squares (x + i*stepX, y + i*stepY) for every i other than 0 that are on the board
+     * @param attack True if the queen attacks the squares, false if they are on a line through two queens
+     */
+    private void markLine(int x, int y, int stepX, int stepY, int delta, boolean attack)
+    {
+        markRay(x, y, stepX, stepY, delta, attack);
+        markRay(x, y, -stepX, -stepY, delta, attack);
+    }
+
+    /**
+     * Adds delta to the squares (x + i*stepX, y + i*stepY) for i >= 1 that are on the board
+     * @param attack True if the queen attacks the squares, false if they are on a line through two queens
+     */
+    private void markRay(int x, int y, int stepX, int stepY, int delta, boolean attack)
+    {
+        x += stepX;
+        y += stepY;
+        while (y >= 0 && y < m_BoardHeight && x >= 0 && x < m_BoardWidth)
+        {
+            int index = y * m_BoardWidth + x;
+            int before = m_ForbiddenCounts[index];
+            int after = before + delta;
+            m_ForbiddenCounts[index] = after;
+            if (before == 0)
+            {
+                m_ForbiddenRows[y][x >>> 6] |= (1L << x);
+                m_RowFreeCounts[y]--;
+                if (attack)
+                {
+                    m_AttackRejectionCount++;
+                }
+                else
+                {
+                    m_LineRejectionCount++;
+                }
+            }
+            else if (after == 0)
+            {
+                m_ForbiddenRows[y][x >>> 6] &= ~(1L << x);
+                m_RowFreeCounts[y]++;
+            }
+            x += stepX;
+            y += stepY;
+        }
+    }
+}
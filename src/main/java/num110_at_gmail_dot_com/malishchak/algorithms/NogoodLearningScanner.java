@@ -0,0 +1,370 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Results;
+
+/**
+ * ForbiddenMaskScanner that remembers why branches fail. Each row keeps a conflict set, the earlier rows whose queens
+ * are responsible for the squares of the row that were ruled out or whose subtrees failed. A forbidden square is blamed
+ * on the queen, or the pair of queens in line, that first forbade it, recorded as the square is marked. When a
+ * placement leaves a later row with no legal squares, or a row runs out of squares, the queens in the conflict set form
+ * a nogood: they cannot all be part of a solution, whatever is placed between them. Small nogoods are kept in a bounded
+ * NogoodStore and checked before each placement, so a combination of queens that once ruled out a row is rejected as
+ * soon as it is completed again. The search also jumps straight back to the latest queen in the conflict set, skipping
+ * rows whose choices played no part in the failure.
+ *
+ * Learning applies when every row must hold a queen, and is not used while counting or symmetry breaking, where
+ * branches are abandoned for reasons other than the rules of the puzzle. The search then runs as ForbiddenMaskScanner.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class NogoodLearningScanner extends ForbiddenMaskScanner
+{
+    /**
+     * Largest number of nogoods kept at once
+     */
+    private final static int NOGOOD_CAPACITY = 1 << 16;
+
+    /**
+     * Largest number of queens in a kept nogood. Larger nogoods are rarely completed again, and cost more to check than they prune
+     */
+    private final static int MAX_NOGOOD_SIZE = 8;
+
+    /**
+     * True if every row must hold a queen and branches only fail by the rules of the puzzle
+     */
+    private boolean m_Learning = false;
+
+    private NogoodStore m_Nogoods;
+
+    /**
+     * Rows of the queen, and of the earlier queen in line with it or -1, that first forbade each square. Only valid
+     * while the square is forbidden
+     */
+    private int[] m_BlameRows;
+    private int[] m_BlamePartnerRows;
+
+    /**
+     * Conflict set of each row as a bitset over rows, m_SetWords longs per row
+     */
+    private long[][] m_ConflictSets;
+    private long[] m_ScratchSet;
+    private int m_SetWords;
+
+    /**
+     * Scratch space for the squares of a nogood being stored
+     */
+    private int[] m_NogoodSquares;
+
+    private long m_NogoodPrunes = 0;
+    private long m_Backjumps = 0;
+
+    public NogoodLearningScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "NogoodLearningScanner";
+        m_AlgorithmDescription = "Iterates row-by-row through the chess board placing queens, marking forbidden\n" +
+                "squares in the same manner as ForbiddenMaskScanner. Each row records which\n" +
+                "earlier queens ruled out its squares or caused its branches to fail. When a row\n" +
+                "runs out of squares, or a placement leaves a later row with none, those queens\n" +
+                "are stored as a nogood, a combination that cannot appear in any solution, and\n" +
+                "the search jumps straight back to the latest of them. Squares that would\n" +
+                "complete a stored nogood are skipped without being placed. Each first row start\n" +
+                "position is treated as a new iteration.";
+    }
+
+    /**
+     * Learned nogoods and the blame for each forbidden square are not part of a checkpoint, so the search cannot be
+     * resumed from one
+     */
+    @Override
+    public boolean supportsCheckpoints()
+    {
+        return false;
+    }
+
+    @Override
+    protected void onRunStarted()
+    {
+        super.onRunStarted();
+        m_Learning = (m_TargetQueens == m_BoardHeight && !m_CountingSolutions && !m_SymmetryActive);
+        if (!m_Learning)
+        {
+            return;
+        }
+        m_BlameRows = new int[m_BoardWidth * m_BoardHeight];
+        m_BlamePartnerRows = new int[m_BoardWidth * m_BoardHeight];
+        m_Nogoods = new NogoodStore(m_BoardWidth, m_BoardHeight, NOGOOD_CAPACITY, MAX_NOGOOD_SIZE);
+        m_SetWords = (m_BoardHeight + 63) >>> 6;
+        m_ConflictSets = new long[Math.max(1, m_BoardHeight)][m_SetWords];
+        m_ScratchSet = new long[m_SetWords];
+        m_NogoodSquares = new int[MAX_NOGOOD_SIZE];
+        m_NogoodPrunes = 0;
+        m_Backjumps = 0;
+    }
+
+    @Override
+    public Results run() {
+        Results results = super.run();
+        if (m_Learning && m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println("Learned " + m_Nogoods.getAddedCount() + " nogoods (" + m_Nogoods.size() + " kept). " + m_NogoodPrunes + " placements pruned by nogoods, " + m_Backjumps + " rows skipped by backjumping.");
+        }
+        return results;
+    }
+
+    /**
+     * Depth-first search filling every row in order, learning a nogood from each failure and jumping back to the
+     * latest queen responsible for it
+     * @param rootRow First row the search may place queens on. Rows above it must each hold a queen
+     * @param rootFromX First column of rootRow to consider
+     * @return As search(rootRow) in BaseRowScannerAlgorithm
+     */
+    @Override
+    protected boolean search(int rootRow, int rootFromX)
+    {
+        if (!m_Learning)
+        {
+            return super.search(rootRow, rootFromX);
+        }
+
+        int y = rootRow;
+        int fromX = rootFromX;
+        clearSet(m_ConflictSets[y]);
+        while (true)
+        {
+            m_NodeCount++;
+            if (m_PlacedCount == m_TargetQueens)
+            {
+                return true;
+            }
+            if ((m_NodeCount & (CANCELLATION_CHECK_INTERVAL - 1)) == 0 && isCancellationRequested())
+            {
+                m_Cancelled = true;
+                checkBestRun();
+                return false;
+            }
+
+            long[] conflicts = m_ConflictSets[y];
+            int x = nextAllowedSquare(y, fromX, conflicts);
+            if (x >= 0)
+            {
+                placeQueen(x, y);
+                m_RowColumns[y] = x;
+                int wipedRow = findWipedRow(y + 1);
+                if (wipedRow < 0)
+                {
+                    if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.placed(m_PlacedCount, x, y);
+                    y++;
+                    fromX = 0;
+                    if (y < m_BoardHeight)
+                    {
+                        clearSet(m_ConflictSets[y]);
+                    }
+                    continue;
+                }
+
+                //Placement left a later row with no legal squares, blame the queens that ruled them out
+                clearSet(m_ScratchSet);
+                explainForbiddenSquares(wipedRow, m_ScratchSet);
+                learn(m_ScratchSet);
+                if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.rejectedByDeadRow(m_PlacedCount, x, y, wipedRow);
+                m_ScratchSet[y >>> 6] &= ~(1L << y);
+                orSet(conflicts, m_ScratchSet);
+                removeLastQueen();
+                m_RowColumns[y] = ROW_EMPTY;
+                fromX = x + 1;
+                continue;
+            }
+
+            //Row exhausted. Squares never tried were ruled out by the queens above, the rest already added their blame
+            explainForbiddenSquares(y, conflicts);
+            checkBestRun();
+            learn(conflicts);
+            int target = highestRow(conflicts);
+            if (target < rootRow)
+            {
+                //Failure does not depend on any queen this search placed
+                while (y > rootRow)
+                {
+                    y--;
+                    removeLastQueen();
+                    m_RowColumns[y] = ROW_EMPTY;
+                }
+                return false;
+            }
+
+            m_Backjumps += y - 1 - target;
+            while (y > target + 1)
+            {
+                y--;
+                removeLastQueen();
+                m_RowColumns[y] = ROW_EMPTY;
+            }
+            y = target;
+            int removedX = m_RowColumns[y];
+            removeLastQueen();
+            m_RowColumns[y] = ROW_EMPTY;
+            if (m_LoggingLevel >= LOGGING_LEVEL_VERBOSE) m_EventLog.removed(m_PlacedCount + 1, removedX, y);
+            conflicts[y >>> 6] &= ~(1L << y);
+            orSet(m_ConflictSets[y], conflicts);
+            fromX = removedX + 1;
+        }
+    }
+
+    /**
+     * Finds the next square of a row that is neither forbidden nor completes a stored nogood. Rows of the queens in
+     * each nogood skipped on the way are added to the conflict set of the row
+     * @param y Row to search
+     * @param fromX First column to consider
+     * @param conflicts Conflict set of row y
+     * @return Column of the next allowed square at or after fromX, or -1 if none remain
+     */
+    private int nextAllowedSquare(int y, int fromX, long[] conflicts)
+    {
+        int x = (fromX < m_BoardWidth ? nextFreeSquare(y, fromX) : -1);
+        while (x >= 0)
+        {
+            int slot = m_Nogoods.findViolated(x, y, m_RowColumns);
+            if (slot < 0)
+            {
+                return x;
+            }
+            m_NogoodPrunes++;
+            for (int i = 0; i < m_Nogoods.getSize(slot); i++)
+            {
+                int row = m_Nogoods.getRow(slot, i);
+                if (row != y)
+                {
+                    conflicts[row >>> 6] |= (1L << row);
+                }
+            }
+            x = (x + 1 < m_BoardWidth ? nextFreeSquare(y, x + 1) : -1);
+        }
+        return -1;
+    }
+
+    /**
+     * @param fromRow First row to check
+     * @return First row at or after fromRow with no square left that is not forbidden, or -1 if every row has one
+     */
+    private int findWipedRow(int fromRow)
+    {
+        for (int r = fromRow; r < m_BoardHeight; r++)
+        {
+            if (m_RowFreeCounts[r] == 0)
+            {
+                return r;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    protected void onSquareForbidden(int index, int queenY, int partnerY)
+    {
+        if (m_Learning)
+        {
+            m_BlameRows[index] = queenY;
+            m_BlamePartnerRows[index] = partnerY;
+        }
+    }
+
+    /**
+     * Adds to a set the rows of the queens responsible for every forbidden square of a row. Queens are placed in row
+     * order, so the queens that first forbade a square are the explanation with the lowest rows
+     * @param y Row whose forbidden squares are explained
+     * @param set Bitset over rows receiving the blamed queens
+     */
+    private void explainForbiddenSquares(int y, long[] set)
+    {
+        int index = y * m_BoardWidth;
+        for (int x = 0; x < m_BoardWidth; x++, index++)
+        {
+            if (canPlace(x, y))
+            {
+                continue;
+            }
+            int row = m_BlameRows[index];
+            set[row >>> 6] |= (1L << row);
+            int partner = m_BlamePartnerRows[index];
+            if (partner >= 0)
+            {
+                set[partner >>> 6] |= (1L << partner);
+            }
+        }
+    }
+
+    /**
+     * Stores the queens on the rows of a conflict set as a nogood, if it is small enough to keep
+     */
+    private void learn(long[] set)
+    {
+        int count = 0;
+        for (int w = 0; w < m_SetWords; w++)
+        {
+            count += Long.bitCount(set[w]);
+        }
+        if (count == 0 || count > MAX_NOGOOD_SIZE)
+        {
+            return;
+        }
+        int i = 0;
+        for (int w = 0; w < m_SetWords; w++)
+        {
+            long bits = set[w];
+            while (bits != 0)
+            {
+                int row = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                m_NogoodSquares[i++] = row * m_BoardWidth + m_RowColumns[row];
+            }
+        }
+        m_Nogoods.add(m_NogoodSquares, count);
+        if (m_LoggingLevel >= LOGGING_LEVEL_DEBUG) m_EventLog.nogoodLearned(count);
+    }
+
+    /**
+     * @return Greatest row in the set, or -1 if the set is empty
+     */
+    private int highestRow(long[] set)
+    {
+        for (int w = m_SetWords - 1; w >= 0; w--)
+        {
+            if (set[w] != 0)
+            {
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(set[w]);
+            }
+        }
+        return -1;
+    }
+
+    private void clearSet(long[] set)
+    {
+        for (int w = 0; w < m_SetWords; w++)
+        {
+            set[w] = 0;
+        }
+    }
+
+    private void orSet(long[] target, long[] source)
+    {
+        for (int w = 0; w < m_SetWords; w++)
+        {
+            target[w] |= source[w];
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Bounded store of nogoods, each a set of queen squares on distinct rows that cannot all be part of a solution. Every
+ * nogood is indexed under its lowest square, the one on the greatest row, so a search filling rows in order only has
+ * to look at the nogoods of the square it is about to fill, and finds each one with all of its other squares already
+ * decided. Nogoods are held in flat primitive arrays, and once the store is full the oldest nogood is overwritten.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class NogoodStore {
+
+    private final int m_BoardWidth;
+    private final int m_Capacity;
+    private final int m_MaxSize;
+
+    /**
+     * Squares of each nogood as y * boardWidth + x, m_MaxSize slots per nogood
+     */
+    private final int[] m_Squares;
+    private final int[] m_Sizes;
+
+    /**
+     * Square each nogood is indexed under, or -1 for an empty slot
+     */
+    private final int[] m_IndexSquares;
+
+    /**
+     * Doubly linked list of the nogoods indexed under each square
+     */
+    private final int[] m_Heads;
+    private final int[] m_Next;
+    private final int[] m_Previous;
+
+    private int m_NextSlot = 0;
+    private int m_Size = 0;
+    private long m_AddedCount = 0;
+
+    /**
+     * @param boardWidth Width of the chess board
+     * @param boardHeight Height of the chess board
+     * @param capacity Largest number of nogoods held at once
+     * @param maxSize Largest number of squares in a stored nogood
+     */
+    public NogoodStore(int boardWidth, int boardHeight, int capacity, int maxSize)
+    {
+        m_BoardWidth = boardWidth;
+        m_Capacity = capacity;
+        m_MaxSize = maxSize;
+        m_Squares = new int[capacity * maxSize];
+        m_Sizes = new int[capacity];
+        m_IndexSquares = new int[capacity];
+        m_Next = new int[capacity];
+        m_Previous = new int[capacity];
+        m_Heads = new int[Math.max(1, boardWidth * boardHeight)];
+        Arrays.fill(m_IndexSquares, -1);
+        Arrays.fill(m_Heads, -1);
+    }
+
+    /**
+     * @return Largest number of squares in a stored nogood
+     */
+    public int getMaxSize()
+    {
+        return m_MaxSize;
+    }
+
+    /**
+     * Stores a nogood, overwriting the oldest stored nogood if the store is full
+     * @param squares Squares of the nogood as y * boardWidth + x, each on a different row
+     * @param count Number of squares in the nogood. Nogoods that are empty or larger than getMaxSize are not stored
+     * @return True if the nogood was stored
+     */
+    public boolean add(int[] squares, int count)
+    {
+        if (count < 1 || count > m_MaxSize)
+        {
+            return false;
+        }
+        int slot = m_NextSlot;
+        m_NextSlot = (m_NextSlot + 1) % m_Capacity;
+        if (m_IndexSquares[slot] >= 0)
+        {
+            unlink(slot);
+        }
+        else
+        {
+            m_Size++;
+        }
+
+        int lowest = squares[0];
+        int offset = slot * m_MaxSize;
+        for (int i = 0; i < count; i++)
+        {
+            m_Squares[offset + i] = squares[i];
+            if (squares[i] > lowest)
+            {
+                lowest = squares[i];
+            }
+        }
+        m_Sizes[slot] = count;
+
+        //Squares on later rows always have larger indexes, so the largest index is on the greatest row
+        m_IndexSquares[slot] = lowest;
+        m_Previous[slot] = -1;
+        m_Next[slot] = m_Heads[lowest];
+        if (m_Heads[lowest] >= 0)
+        {
+            m_Previous[m_Heads[lowest]] = slot;
+        }
+        m_Heads[lowest] = slot;
+        m_AddedCount++;
+        return true;
+    }
+
+    /**
+     * Finds a nogood that placing a queen on the given square would complete
+     * @param x X-coordinate of the candidate square
+     * @param y Y-coordinate of the candidate square
+     * @param rowColumns Column of the queen on each row, or a negative value for rows without one
+     * @return Slot of a nogood indexed under (x,y) whose other squares all hold queens, or -1 if there is none
+     */
+    public int findViolated(int x, int y, int[] rowColumns)
+    {
+        for (int slot = m_Heads[y * m_BoardWidth + x]; slot >= 0; slot = m_Next[slot])
+        {
+            int offset = slot * m_MaxSize;
+            boolean violated = true;
+            for (int i = 0; i < m_Sizes[slot] && violated; i++)
+            {
+                int square = m_Squares[offset + i];
+                int squareY = square / m_BoardWidth;
+                violated = (squareY == y || rowColumns[squareY] == square - squareY * m_BoardWidth);
+            }
+            if (violated)
+            {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Number of squares in the nogood stored in slot
+     */
+    public int getSize(int slot)
+    {
+        return m_Sizes[slot];
+    }
+
+    /**
+     * @return Row of the i-th square of the nogood stored in slot
+     */
+    public int getRow(int slot, int i)
+    {
+        return m_Squares[slot * m_MaxSize + i] / m_BoardWidth;
+    }
+
+    /**
+     * @return Number of nogoods currently stored
+     */
+    public int size()
+    {
+        return m_Size;
+    }
+
+    /**
+     * @return Number of nogoods stored since the store was created, including those since overwritten
+     */
+    public long getAddedCount()
+    {
+        return m_AddedCount;
+    }
+
+    private void unlink(int slot)
+    {
+        if (m_Previous[slot] >= 0)
+        {
+            m_Next[m_Previous[slot]] = m_Next[slot];
+        }
+        else
+        {
+            m_Heads[m_IndexSquares[slot]] = m_Next[slot];
+        }
+        if (m_Next[slot] >= 0)
+        {
+            m_Previous[m_Next[slot]] = m_Previous[slot];
+        }
+        m_IndexSquares[slot] = -1;
+    }
+}
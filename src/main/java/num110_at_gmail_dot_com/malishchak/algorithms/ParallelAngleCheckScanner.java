@@ -0,0 +1,356 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.CountResults;
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the first row start positions in parallel. Each column for the first queen is submitted to a ForkJoinPool as
+ * its own task, which runs a ForbiddenMaskScanner restricted to that column. All tasks share a cancellation flag, so
+ * the first task to find and verify a solution stops the others. The best partial run of each task is merged into a
+ * shared reference with compare-and-set, so no locks are taken while workers are searching.
+ *
+ * In counting mode each column task counts every solution under its start position with its own worker, and adds its
+ * totals to shared striped counters when it finishes.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class ParallelAngleCheckScanner extends BaseN3QueensAlgorithm
+{
+    private int m_Threads;
+
+    private final AtomicBoolean m_SolutionFound = new AtomicBoolean(false);
+    private final AtomicReference<Results> m_Solution = new AtomicReference<Results>();
+    private final AtomicReference<Results> m_BestRun = new AtomicReference<Results>();
+    private final AtomicInteger m_IterationCount = new AtomicInteger(0);
+    private final AtomicLong m_NodeCount = new AtomicLong(0);
+
+    private final LongAdder m_SolutionCount = new LongAdder();
+    private LongAdder[] m_ColumnCounts = new LongAdder[0];
+
+    public ParallelAngleCheckScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset, int threads)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Threads = Math.max(1, threads);
+        m_Version = 1;
+        m_AlgorithmName = "ParallelAngleCheckScanner";
+        m_AlgorithmDescription = "Runs every first row start position in parallel on a fork-join pool.\n" +
+                "Each start position is searched by its own ForbiddenMaskScanner, which places\n" +
+                "queens row-by-row, marking every square attacked by or in line with placed\n" +
+                "queens as forbidden, and undoes failed branches. The first worker to find a\n" +
+                "solution that passes an exact integer check cancels the remaining workers. If no\n" +
+                "solution is found, the best partial run across all workers is reported.";
+    }
+
+    /**
+     * @param threads Number of worker threads to search with
+     */
+    public void setThreads(int threads)
+    {
+        m_Threads = Math.max(1, threads);
+    }
+
+    /**
+     * Also cancels every worker, which report their best runs so far
+     */
+    @Override
+    public void cancel()
+    {
+        super.cancel();
+        m_SolutionFound.set(true);
+    }
+
+    @Override
+    public Results run() {
+        m_SolutionFound.set(false);
+        m_Solution.set(null);
+        m_BestRun.set(null);
+        m_IterationCount.set(0);
+        m_NodeCount.set(0);
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Searching with " + m_Threads + " threads.");
+        if (m_SymmetryBreaking && !isSymmetryActive() && m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Symmetry breaking requires a square board with one queen per row and a startX of 0, searching without it.");
+        ForkJoinPool pool = new ForkJoinPool(m_Threads);
+        try
+        {
+            List<ColumnTask> tasks = new ArrayList<ColumnTask>();
+            for (int x = m_StartXOffset; x < getFirstQueenXLimit(); x++)
+            {
+                ColumnTask task = new ColumnTask(x);
+                tasks.add(task);
+                pool.execute(task);
+            }
+            for (ColumnTask task : tasks)
+            {
+                task.join();
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Workers expanded " + m_NodeCount.get() + " nodes.");
+
+        Results solution = m_Solution.get();
+        if (solution != null)
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Solution found with first queen at column " + solution.getFirst_queen_x() + ".");
+            return finishResults(solution, true);
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Algorithm failed after " + m_IterationCount.get() + " iterations.");
+        Results best = m_BestRun.get();
+        if (best == null)
+        {
+            best = new Results();
+            best.setPlaced_queens(new ArrayList<Queen>());
+            best.setRemaining_queens(m_TargetQueens);
+            best.setFirst_queen_x(m_StartXOffset);
+        }
+        m_BestPlacedQueens = best.getPlaced_queens();
+        m_BestRemainingQueens = best.getRemaining_queens();
+        m_BestIteration = best.getBest_iteration();
+        return finishResults(best, false);
+    }
+
+    @Override
+    public CountResults count()
+    {
+        m_SolutionFound.set(false);
+        m_NodeCount.set(0);
+        m_SolutionCount.reset();
+        m_ColumnCounts = new LongAdder[Math.max(1, m_BoardWidth)];
+        for (int x = 0; x < m_ColumnCounts.length; x++)
+        {
+            m_ColumnCounts[x] = new LongAdder();
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Counting with " + m_Threads + " threads.");
+        if (m_SymmetryBreaking && !isSymmetryActive() && m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Symmetry breaking requires a square board with one queen per row and a startX of 0, searching without it.");
+        ForkJoinPool pool = new ForkJoinPool(m_Threads);
+        try
+        {
+            List<CountTask> tasks = new ArrayList<CountTask>();
+            if (m_TargetQueens <= m_BoardHeight && m_TargetQueens <= m_BoardWidth)
+            {
+                for (int x = m_StartXOffset; x < getFirstQueenXLimit(); x++)
+                {
+                    CountTask task = new CountTask(x);
+                    tasks.add(task);
+                    pool.execute(task);
+                }
+            }
+            for (CountTask task : tasks)
+            {
+                task.join();
+            }
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+
+        long[] columnCounts = new long[m_ColumnCounts.length];
+        for (int x = 0; x < columnCounts.length; x++)
+        {
+            columnCounts[x] = m_ColumnCounts[x].sum();
+        }
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Counted " + m_SolutionCount.sum() + " solutions. Workers expanded " + m_NodeCount.get() + " nodes.");
+        return buildCountResults(m_SolutionCount.sum(), columnCounts, m_NodeCount.get(), m_Threads, isSymmetryActive());
+    }
+
+    /**
+     * @return True if symmetry breaking was requested and the board shape and start column allow it
+     */
+    private boolean isSymmetryActive()
+    {
+        return m_SymmetryBreaking && m_BoardWidth == m_BoardHeight && m_TargetQueens == m_BoardWidth && m_StartXOffset == 0;
+    }
+
+    /**
+     * @return Exclusive upper bound on the column of the first queen. With symmetry breaking, reflections of the right
+     * half of the first row are searched from the left half
+     */
+    private int getFirstQueenXLimit()
+    {
+        return (isSymmetryActive() ? (m_BoardWidth + 1) / 2 : m_BoardWidth);
+    }
+
+    /**
+     * Fills in the fields shared by successful and unsuccessful runs
+     */
+    private Results finishResults(Results results, boolean solved)
+    {
+        results.setAlgorithm(m_AlgorithmName);
+        results.setAlgorithm_version(m_Version);
+        results.setTarget_queens(m_TargetQueens);
+        results.setBoard_height(m_BoardHeight);
+        results.setBoard_width(m_BoardWidth);
+        results.setDate(System.currentTimeMillis());
+        results.setTotal_iterations(m_IterationCount.get());
+        results.setSuccess(solved ? 1 : 0);
+        results.setWas_best_run((solved || m_KeepBestRun) ? 1 : 0);
+        results.setRemaining_queens(solved ? 0 : results.getRemaining_queens());
+        return results;
+    }
+
+    /**
+     * Replaces the shared best run if the given run placed more queens, retrying if another worker updated it first
+     */
+    private void offerBestRun(Results candidate)
+    {
+        Results current = m_BestRun.get();
+        while (current == null || candidate.getPlaced_queens().size() > current.getPlaced_queens().size())
+        {
+            if (m_BestRun.compareAndSet(current, candidate))
+            {
+                return;
+            }
+            current = m_BestRun.get();
+        }
+    }
+
+    /**
+     * @return True if the placed queens pass an exact integer conflict check
+     */
+    private boolean isVerified(List<Queen> queens)
+    {
+        if (queens.size() != m_TargetQueens)
+        {
+            return false;
+        }
+        int[] xs = new int[queens.size()];
+        int[] ys = new int[queens.size()];
+        for (int i = 0; i < queens.size(); i++)
+        {
+            xs[i] = queens.get(i).getX();
+            ys[i] = queens.get(i).getY();
+        }
+        DirectionChecker checker = new DirectionChecker(m_BoardWidth, m_BoardHeight, m_TargetQueens);
+        return checker.checkAll(xs, ys, xs.length) == DirectionChecker.CONFLICT_NONE;
+    }
+
+    /**
+     * Searches every placement with the first queen on a single column of the first row
+     */
+    private class ColumnTask extends RecursiveAction
+    {
+        private final int m_Column;
+
+        ColumnTask(int column)
+        {
+            m_Column = column;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (m_SolutionFound.get() || isStopRequested())
+            {
+                return;
+            }
+            long timerStart = System.currentTimeMillis();
+            m_IterationCount.incrementAndGet();
+
+            ForbiddenMaskScanner worker = new ForbiddenMaskScanner(m_TargetQueens, m_BoardWidth, m_BoardHeight, m_Column);
+            worker.setFirstQueenXLimit(m_Column + 1);
+            worker.setCancellationFlag(m_SolutionFound);
+            worker.setDeadline(m_Deadline);
+            worker.setMetrics(m_Metrics);
+            worker.setKeepBestRun(m_KeepBestRun);
+            worker.setSymmetryBreaking(isSymmetryActive());
+            worker.setLoggingLevel(LOGGING_LEVEL_NONE);
+            Results results = worker.run();
+            results.setBest_iteration(m_Column + 1);
+            m_NodeCount.addAndGet(worker.getNodeCount());
+            if (worker.wasTimedOut()) m_TimedOut = true;
+
+            long timerDuration = System.currentTimeMillis() - timerStart;
+            if (results.getSuccess() > 0 && isVerified(results.getPlaced_queens()))
+            {
+                if (m_Solution.compareAndSet(null, results))
+                {
+                    m_SolutionFound.set(true);
+                    if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Success! Start position " + m_Column + " completed in " + timerDuration + "ms.");
+                }
+            }
+            else
+            {
+                offerBestRun(results);
+                if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+                {
+                    System.out.println("XXX Start position " + m_Column + " " + (worker.wasTimedOut() ? "timed out" : (worker.wasCancelled() ? "cancelled" : "exhausted")) + " after " + timerDuration + "ms. Best run placed " + results.getPlaced_queens().size() + " of " + m_TargetQueens + ". XXX");
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts every solution with the first queen on a single column of the first row
+     */
+    private class CountTask extends RecursiveAction
+    {
+        private final int m_Column;
+
+        CountTask(int column)
+        {
+            m_Column = column;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (m_SolutionFound.get() || isStopRequested())
+            {
+                return;
+            }
+            long timerStart = System.currentTimeMillis();
+            ForbiddenMaskScanner worker = new ForbiddenMaskScanner(m_TargetQueens, m_BoardWidth, m_BoardHeight, m_Column);
+            worker.setFirstQueenXLimit(m_Column + 1);
+            worker.setCancellationFlag(m_SolutionFound);
+            worker.setDeadline(m_Deadline);
+            worker.setMetrics(m_Metrics);
+            worker.setSymmetryBreaking(isSymmetryActive());
+            worker.setLoggingLevel(LOGGING_LEVEL_NONE);
+            CountResults counts = worker.count();
+            if (worker.wasTimedOut()) m_TimedOut = true;
+
+            //Worker counted into its own fields, merge them once per task
+            m_NodeCount.addAndGet(counts.getNodes());
+            m_SolutionCount.add(counts.getTotal_solutions());
+            long[] columnCounts = counts.getColumn_counts();
+            for (int x = 0; x < columnCounts.length; x++)
+            {
+                if (columnCounts[x] != 0) m_ColumnCounts[x].add(columnCounts[x]);
+            }
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+            {
+                System.out.println("Start position " + m_Column + " counted " + counts.getTotal_solutions() + " solutions in " + (System.currentTimeMillis() - timerStart) + "ms.");
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Snapshot of a row-by-row search, taken between two nodes, from which the search can continue at the exact node it
+ * stopped on. The frontier is the column of the queen on every row above the current row, or whether the row was left
+ * empty, together with the current row and the first column of it still to try. Counters, solution counts and the
+ * best run so far are kept alongside, so a resumed run reports totals across every session. Checkpoints are stored as
+ * a compact binary file, written to a temporary file and moved into place so a crash never leaves a partial one.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SearchCheckpoint {
+
+    private final static int MAGIC = 0x4E33434B;
+    private final static int FORMAT_VERSION = 1;
+
+    //Problem set and settings the search was run with
+    String m_AlgorithmName;
+    int m_AlgorithmVersion;
+    int m_TargetQueens;
+    int m_BoardWidth;
+    int m_BoardHeight;
+    int m_StartXOffset;
+    boolean m_SymmetryBreaking;
+    boolean m_CountingSolutions;
+
+    //Totals across every session of the run
+    long m_ElapsedMillis;
+    int m_IterationCount;
+    long m_NodeCount;
+    long m_SolutionCount;
+    long[] m_ColumnCounts;
+
+    //Frontier of the search
+    int m_FirstQueenX;
+    int m_Row;
+    int m_FromX;
+
+    /**
+     * Column of the queen on each row above m_Row, or ROW_SKIPPED. Rows from m_Row down are empty
+     */
+    int[] m_RowColumns;
+
+    //Best run so far
+    int[] m_BestXs;
+    int[] m_BestYs;
+    int m_BestRemainingQueens;
+    int m_BestIteration;
+
+    SearchCheckpoint()
+    {
+    }
+
+    /**
+     * @param algorithm Algorithm taking the checkpoint
+     * @param countingSolutions True if the algorithm is counting every solution
+     * @return Checkpoint holding the algorithm's problem set and settings, with the rest left to the caller
+     */
+    static SearchCheckpoint of(BaseN3QueensAlgorithm algorithm, boolean countingSolutions)
+    {
+        SearchCheckpoint checkpoint = new SearchCheckpoint();
+        checkpoint.m_AlgorithmName = algorithm.m_AlgorithmName;
+        checkpoint.m_AlgorithmVersion = algorithm.m_Version;
+        checkpoint.m_TargetQueens = algorithm.m_TargetQueens;
+        checkpoint.m_BoardWidth = algorithm.m_BoardWidth;
+        checkpoint.m_BoardHeight = algorithm.m_BoardHeight;
+        checkpoint.m_StartXOffset = algorithm.m_StartXOffset;
+        checkpoint.m_SymmetryBreaking = algorithm.m_SymmetryBreaking;
+        checkpoint.m_CountingSolutions = countingSolutions;
+        return checkpoint;
+    }
+
+    /**
+     * @param algorithm Algorithm about to resume the search
+     * @param countingSolutions True if the algorithm is counting every solution
+     * @return True if the checkpoint was written by the same algorithm, for the same problem set and mode
+     */
+    boolean isCheckpointOf(BaseN3QueensAlgorithm algorithm, boolean countingSolutions)
+    {
+        return m_AlgorithmName.equals(algorithm.m_AlgorithmName) && m_TargetQueens == algorithm.m_TargetQueens
+                && m_BoardWidth == algorithm.m_BoardWidth && m_BoardHeight == algorithm.m_BoardHeight
+                && m_StartXOffset == algorithm.m_StartXOffset && m_SymmetryBreaking == algorithm.m_SymmetryBreaking
+                && m_CountingSolutions == countingSolutions;
+    }
+
+    public String getAlgorithmName()
+    {
+        return m_AlgorithmName;
+    }
+
+    public int getAlgorithmVersion()
+    {
+        return m_AlgorithmVersion;
+    }
+
+    public int getTargetQueens()
+    {
+        return m_TargetQueens;
+    }
+
+    public int getBoardWidth()
+    {
+        return m_BoardWidth;
+    }
+
+    public int getBoardHeight()
+    {
+        return m_BoardHeight;
+    }
+
+    public int getStartXOffset()
+    {
+        return m_StartXOffset;
+    }
+
+    public boolean isSymmetryBreaking()
+    {
+        return m_SymmetryBreaking;
+    }
+
+    /**
+     * @return True if the checkpoint was taken while counting every solution, rather than finding the first
+     */
+    public boolean isCountingSolutions()
+    {
+        return m_CountingSolutions;
+    }
+
+    /**
+     * @return Time spent searching in every session up to the checkpoint
+     */
+    public long getElapsedMillis()
+    {
+        return m_ElapsedMillis;
+    }
+
+    public int getIterationCount()
+    {
+        return m_IterationCount;
+    }
+
+    public long getNodeCount()
+    {
+        return m_NodeCount;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file beside the target, then moves it over the target
+     * @param file File to write
+     * @throws IOException If the checkpoint could not be written, in which case any earlier checkpoint is left intact
+     */
+    public void write(File file) throws IOException
+    {
+        File directory = file.getAbsoluteFile().getParentFile();
+        File temporary = File.createTempFile(file.getName(), ".tmp", directory);
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(m_AlgorithmName);
+                out.writeInt(m_AlgorithmVersion);
+                out.writeInt(m_TargetQueens);
+                out.writeInt(m_BoardWidth);
+                out.writeInt(m_BoardHeight);
+                out.writeInt(m_StartXOffset);
+                out.writeBoolean(m_SymmetryBreaking);
+                out.writeBoolean(m_CountingSolutions);
+
+                out.writeLong(m_ElapsedMillis);
+                out.writeInt(m_IterationCount);
+                out.writeLong(m_NodeCount);
+                out.writeLong(m_SolutionCount);
+                for (int x = 0; x < m_BoardWidth; x++)
+                {
+                    out.writeLong(m_ColumnCounts[x]);
+                }
+
+                out.writeInt(m_FirstQueenX);
+                out.writeInt(m_Row);
+                out.writeInt(m_FromX);
+                for (int y = 0; y < m_Row; y++)
+                {
+                    out.writeInt(m_RowColumns[y]);
+                }
+
+                out.writeInt(m_BestXs.length);
+                for (int i = 0; i < m_BestXs.length; i++)
+                {
+                    out.writeInt(m_BestXs[i]);
+                    out.writeInt(m_BestYs[i]);
+                }
+                out.writeInt(m_BestRemainingQueens);
+                out.writeInt(m_BestIteration);
+            }
+            try
+            {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        finally
+        {
+            temporary.delete();
+        }
+    }
+
+    /**
+     * Reads a checkpoint written by write
+     * @param file File to read
+     * @return The checkpoint
+     * @throws IOException If the file could not be read, or is not a checkpoint of a supported format
+     */
+    public static SearchCheckpoint read(File file) throws IOException
+    {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+            {
+                throw new IOException("Not a checkpoint file of a supported format.");
+            }
+            SearchCheckpoint checkpoint = new SearchCheckpoint();
+            checkpoint.m_AlgorithmName = in.readUTF();
+            checkpoint.m_AlgorithmVersion = in.readInt();
+            checkpoint.m_TargetQueens = in.readInt();
+            checkpoint.m_BoardWidth = in.readInt();
+            checkpoint.m_BoardHeight = in.readInt();
+            checkpoint.m_StartXOffset = in.readInt();
+            checkpoint.m_SymmetryBreaking = in.readBoolean();
+            checkpoint.m_CountingSolutions = in.readBoolean();
+            if (checkpoint.m_TargetQueens < 1 || checkpoint.m_BoardWidth < 1 || checkpoint.m_BoardHeight < 1)
+            {
+                throw new IOException("Checkpoint has an invalid problem set.");
+            }
+
+            checkpoint.m_ElapsedMillis = in.readLong();
+            checkpoint.m_IterationCount = in.readInt();
+            checkpoint.m_NodeCount = in.readLong();
+            checkpoint.m_SolutionCount = in.readLong();
+            checkpoint.m_ColumnCounts = new long[checkpoint.m_BoardWidth];
+            for (int x = 0; x < checkpoint.m_BoardWidth; x++)
+            {
+                checkpoint.m_ColumnCounts[x] = in.readLong();
+            }
+
+            checkpoint.m_FirstQueenX = in.readInt();
+            checkpoint.m_Row = in.readInt();
+            checkpoint.m_FromX = in.readInt();
+            if (checkpoint.m_Row < 1 || checkpoint.m_Row > checkpoint.m_BoardHeight)
+            {
+                throw new IOException("Checkpoint has an invalid search frontier.");
+            }
+            checkpoint.m_RowColumns = new int[checkpoint.m_Row];
+            for (int y = 0; y < checkpoint.m_Row; y++)
+            {
+                int column = in.readInt();
+                if (column != BaseRowScannerAlgorithm.ROW_SKIPPED && (column < 0 || column >= checkpoint.m_BoardWidth))
+                {
+                    throw new IOException("Checkpoint has an invalid search frontier.");
+                }
+                checkpoint.m_RowColumns[y] = column;
+            }
+            if (checkpoint.m_RowColumns[0] != checkpoint.m_FirstQueenX)
+            {
+                throw new IOException("Checkpoint has an invalid search frontier.");
+            }
+
+            int bestCount = in.readInt();
+            if (bestCount < 0 || bestCount > checkpoint.m_TargetQueens)
+            {
+                throw new IOException("Checkpoint has an invalid best run.");
+            }
+            checkpoint.m_BestXs = new int[bestCount];
+            checkpoint.m_BestYs = new int[bestCount];
+            for (int i = 0; i < bestCount; i++)
+            {
+                checkpoint.m_BestXs[i] = in.readInt();
+                checkpoint.m_BestYs[i] = in.readInt();
+            }
+            checkpoint.m_BestRemainingQueens = in.readInt();
+            checkpoint.m_BestIteration = in.readInt();
+            return checkpoint;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records the events of a search at the VERBOSE and DEBUG logging levels into a preallocated ring buffer, and writes
+ * them as text from a background thread. Recording an event copies a few integers into the buffer, so the searching
+ * thread never builds strings or waits on output. The writing thread formats events in batches and prints each batch
+ * with a single call, keeping lines whole when they are interleaved with other output. Events are written in the order
+ * they were recorded, but may appear shortly after output the search prints directly.
+ * <p>
+ * Each log serves a single searching thread. If the buffer fills, the searching thread waits for the writing thread to
+ * catch up, so no event is lost.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SearchEventLog
+{
+    public final static int EVENT_PLACED = 1;
+    public final static int EVENT_REJECTED_ATTACK = 2;
+    public final static int EVENT_REJECTED_LINE = 3;
+    public final static int EVENT_REJECTED_DEAD_ROW = 4;
+    public final static int EVENT_REMOVED = 5;
+    public final static int EVENT_PRUNED = 6;
+    public final static int EVENT_ITERATION_ENDED = 7;
+    public final static int EVENT_SOLUTION_COUNTED = 8;
+    public final static int EVENT_ANGLE = 9;
+    public final static int EVENT_ROW_CHOSEN = 10;
+    public final static int EVENT_NOGOOD_LEARNED = 11;
+    public final static int EVENT_SWAPPED = 12;
+
+    /**
+     * Events held by the buffer of a log created without a capacity. Must be a power of two
+     */
+    public final static int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Each event is stored as its type followed by up to nine values
+     */
+    private final static int FIELDS_PER_EVENT = 10;
+
+    /**
+     * Characters of formatted events gathered before they are printed
+     */
+    private final static int PRINT_BATCH_CHARS = 1 << 16;
+
+    /**
+     * Time the writing thread sleeps while the buffer is empty
+     */
+    private final static long IDLE_PARK_NANOS = 200 * 1000;
+
+    private final PrintStream m_Out;
+    private final int[] m_Fields;
+    private final int m_Capacity;
+    private final int m_Mask;
+
+    /**
+     * Number of events recorded, written only by the searching thread
+     */
+    private final AtomicLong m_Head = new AtomicLong(0);
+
+    /**
+     * Number of events written, written only by the writing thread
+     */
+    private final AtomicLong m_Tail = new AtomicLong(0);
+
+    /**
+     * Last value of m_Tail seen by the searching thread, so it only reads m_Tail again when the buffer looks full
+     */
+    private long m_CachedTail = 0;
+
+    private volatile boolean m_Closed = false;
+    private final Thread m_Writer;
+
+    /**
+     * Creates a log writing to out, and starts its writing thread
+     * @param out Stream the events are printed to
+     */
+    public SearchEventLog(PrintStream out)
+    {
+        this(out, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a log writing to out, and starts its writing thread
+     * @param out Stream the events are printed to
+     * @param capacity Number of events the buffer holds. Must be a power of two
+     */
+    public SearchEventLog(PrintStream out, int capacity)
+    {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1)
+        {
+            throw new IllegalArgumentException("Capacity must be a power of two.");
+        }
+        m_Out = out;
+        m_Capacity = capacity;
+        m_Mask = capacity - 1;
+        m_Fields = new int[capacity * FIELDS_PER_EVENT];
+        m_Writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                drain();
+            }
+        }, "N3Queens-EventLog");
+        m_Writer.setDaemon(true);
+        m_Writer.start();
+    }
+
+    /**
+     * A queen was placed
+     * @param queen Number of the queen, counting from 1
+     */
+    public void placed(int queen, int x, int y)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_PLACED;
+        m_Fields[slot + 1] = queen;
+        m_Fields[slot + 2] = x;
+        m_Fields[slot + 3] = y;
+        publish();
+    }
+
+    /**
+     * A square was rejected because a placed queen attacks it
+     * @param queen Number the queen would have had, counting from 1
+     * @param other Number of the attacking queen
+     */
+    public void rejectedByAttack(int queen, int x, int y, int other, int otherX, int otherY)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_REJECTED_ATTACK;
+        m_Fields[slot + 1] = queen;
+        m_Fields[slot + 2] = x;
+        m_Fields[slot + 3] = y;
+        m_Fields[slot + 4] = other;
+        m_Fields[slot + 5] = otherX;
+        m_Fields[slot + 6] = otherY;
+        publish();
+    }
+
+    /**
+     * A square was rejected because it lies on a line through two placed queens
+     * @param queen Number the queen would have had, counting from 1
+     * @param first Number of one queen on the line
+     * @param second Number of the other queen on the line
+     */
+    public void rejectedByLine(int queen, int x, int y, int first, int firstX, int firstY, int second, int secondX, int secondY)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_REJECTED_LINE;
+        m_Fields[slot + 1] = queen;
+        m_Fields[slot + 2] = x;
+        m_Fields[slot + 3] = y;
+        m_Fields[slot + 4] = first;
+        m_Fields[slot + 5] = firstX;
+        m_Fields[slot + 6] = firstY;
+        m_Fields[slot + 7] = second;
+        m_Fields[slot + 8] = secondX;
+        m_Fields[slot + 9] = secondY;
+        publish();
+    }
+
+    /**
+     * A square was rejected because a queen on it would leave a later row with no legal squares
+     * @param queen Number the queen would have had, counting from 1
+     * @param row Row left with no legal squares
+     */
+    public void rejectedByDeadRow(int queen, int x, int y, int row)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_REJECTED_DEAD_ROW;
+        m_Fields[slot + 1] = queen;
+        m_Fields[slot + 2] = x;
+        m_Fields[slot + 3] = y;
+        m_Fields[slot + 4] = row;
+        publish();
+    }
+
+    /**
+     * A placed queen was removed to backtrack
+     * @param queen Number of the queen, counting from 1
+     */
+    public void removed(int queen, int x, int y)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_REMOVED;
+        m_Fields[slot + 1] = queen;
+        m_Fields[slot + 2] = x;
+        m_Fields[slot + 3] = y;
+        publish();
+    }
+
+    /**
+     * The search gave up on the current placement because too few rows remain for the queens still to place
+     */
+    public void pruned(int remainingQueens, int remainingRows)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_PRUNED;
+        m_Fields[slot + 1] = remainingQueens;
+        m_Fields[slot + 2] = remainingRows;
+        publish();
+    }
+
+    /**
+     * An iteration ended without a solution
+     * @param placed Queens placed when the iteration ended
+     * @param nextStartX Start position of the next iteration, or -1 if there is none
+     */
+    public void iterationEnded(int iteration, int placed, int target, int nextStartX)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_ITERATION_ENDED;
+        m_Fields[slot + 1] = iteration;
+        m_Fields[slot + 2] = placed;
+        m_Fields[slot + 3] = target;
+        m_Fields[slot + 4] = nextStartX;
+        publish();
+    }
+
+    /**
+     * A solution was counted
+     * @param solution Number of the solution, counting from 1
+     */
+    public void solutionCounted(long solution, int firstX, int firstY)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_SOLUTION_COUNTED;
+        m_Fields[slot + 1] = (int)(solution >>> 32);
+        m_Fields[slot + 2] = (int)solution;
+        m_Fields[slot + 3] = firstX;
+        m_Fields[slot + 4] = firstY;
+        publish();
+    }
+
+    /**
+     * The angle from a placed queen to a square was found
+     * @param queen Number the queen would have had, counting from 1
+     * @param other Number of the placed queen
+     * @param angle Angle in degrees
+     */
+    public void angle(int queen, int x, int y, int other, int otherX, int otherY, double angle)
+    {
+        long bits = Double.doubleToRawLongBits(angle);
+        int slot = claim();
+        m_Fields[slot] = EVENT_ANGLE;
+        m_Fields[slot + 1] = queen;
+        m_Fields[slot + 2] = x;
+        m_Fields[slot + 3] = y;
+        m_Fields[slot + 4] = other;
+        m_Fields[slot + 5] = otherX;
+        m_Fields[slot + 6] = otherY;
+        m_Fields[slot + 7] = (int)(bits >>> 32);
+        m_Fields[slot + 8] = (int)bits;
+        publish();
+    }
+
+    /**
+     * The search chose the next row to place a queen on
+     * @param legalSquares Number of legal squares left on the row
+     */
+    public void rowChosen(int row, int legalSquares)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_ROW_CHOSEN;
+        m_Fields[slot + 1] = row;
+        m_Fields[slot + 2] = legalSquares;
+        publish();
+    }
+
+    /**
+     * A placement of queens that cannot lead to a solution was learned
+     * @param queens Number of queens in the placement
+     */
+    public void nogoodLearned(int queens)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_NOGOOD_LEARNED;
+        m_Fields[slot + 1] = queens;
+        publish();
+    }
+
+    /**
+     * A local search step swapped the columns of two rows
+     * @param violations Violations left after the step
+     */
+    public void swapped(long step, int row, int otherRow, long violations)
+    {
+        int slot = claim();
+        m_Fields[slot] = EVENT_SWAPPED;
+        m_Fields[slot + 1] = (int)(step >>> 32);
+        m_Fields[slot + 2] = (int)step;
+        m_Fields[slot + 3] = row;
+        m_Fields[slot + 4] = otherRow;
+        m_Fields[slot + 5] = (int)(violations >>> 32);
+        m_Fields[slot + 6] = (int)violations;
+        publish();
+    }
+
+    /**
+     * Writes every event recorded so far, then stops the writing thread. Events recorded after the log is closed are
+     * never written
+     */
+    public void close()
+    {
+        m_Closed = true;
+        LockSupport.unpark(m_Writer);
+        try
+        {
+            m_Writer.join();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return Index in m_Fields of the next free slot, waiting for the writing thread if the buffer is full
+     */
+    private int claim()
+    {
+        long head = m_Head.get();
+        if (head - m_CachedTail >= m_Capacity)
+        {
+            while (head - (m_CachedTail = m_Tail.get()) >= m_Capacity)
+            {
+                if (m_Closed)
+                {
+                    //Nothing will make room, drop the oldest event rather than wait forever
+                    break;
+                }
+                LockSupport.unpark(m_Writer);
+                Thread.onSpinWait();
+            }
+        }
+        return (int)(head & m_Mask) * FIELDS_PER_EVENT;
+    }
+
+    /**
+     * Makes the event in the slot returned by claim visible to the writing thread
+     */
+    private void publish()
+    {
+        m_Head.lazySet(m_Head.get() + 1);
+    }
+
+    /**
+     * Body of the writing thread. Formats and prints events as they are recorded until the log is closed and empty
+     */
+    private void drain()
+    {
+        StringBuilder batch = new StringBuilder(PRINT_BATCH_CHARS + 256);
+        long tail = m_Tail.get();
+        while (true)
+        {
+            boolean closed = m_Closed;
+            long head = m_Head.get();
+            if (tail == head)
+            {
+                if (batch.length() > 0)
+                {
+                    m_Out.print(batch);
+                    m_Out.flush();
+                    batch.setLength(0);
+                }
+                if (closed)
+                {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            while (tail < head)
+            {
+                format(batch, (int)(tail & m_Mask) * FIELDS_PER_EVENT);
+                tail++;
+                if (batch.length() >= PRINT_BATCH_CHARS)
+                {
+                    m_Tail.lazySet(tail);
+                    m_Out.print(batch);
+                    batch.setLength(0);
+                }
+            }
+            m_Tail.lazySet(tail);
+        }
+    }
+
+    /**
+     * Appends the text of the event in a slot, followed by a line separator
+     */
+    private void format(StringBuilder out, int slot)
+    {
+        int[] f = m_Fields;
+        switch (f[slot])
+        {
+            case EVENT_PLACED:
+            {
+                out.append("(SUCCESS) New Queen ").append(f[slot + 1]).append(" placed at (").append(f[slot + 2]).append(',').append(f[slot + 3]).append(").");
+                break;
+            }
+            case EVENT_REJECTED_ATTACK:
+            {
+                out.append("(FAILURE) New Queen ").append(f[slot + 1]).append(" at (").append(f[slot + 2]).append(',').append(f[slot + 3])
+                        .append(") threatened by queen ").append(f[slot + 4]).append(" at (").append(f[slot + 5]).append(',').append(f[slot + 6]).append(").");
+                break;
+            }
+            case EVENT_REJECTED_LINE:
+            {
+                out.append("(FAILURE) New Queen ").append(f[slot + 1]).append(" at (").append(f[slot + 2]).append(',').append(f[slot + 3])
+                        .append(") on line with queen ").append(f[slot + 4]).append(" (").append(f[slot + 5]).append(',').append(f[slot + 6])
+                        .append(") and queen ").append(f[slot + 7]).append(" (").append(f[slot + 8]).append(',').append(f[slot + 9]).append(").");
+                break;
+            }
+            case EVENT_REJECTED_DEAD_ROW:
+            {
+                out.append("(FAILURE) New Queen ").append(f[slot + 1]).append(" at (").append(f[slot + 2]).append(',').append(f[slot + 3])
+                        .append(") leaves row ").append(f[slot + 4]).append(" with no legal squares.");
+                break;
+            }
+            case EVENT_REMOVED:
+            {
+                out.append("X No solution found. Reverted Queen ").append(f[slot + 1]).append(" previously at (").append(f[slot + 2]).append(',').append(f[slot + 3]).append(").");
+                break;
+            }
+            case EVENT_PRUNED:
+            {
+                out.append("X Solution not possible with ").append(f[slot + 1]).append(" queens and ").append(f[slot + 2]).append(" rows remaining.");
+                break;
+            }
+            case EVENT_ITERATION_ENDED:
+            {
+                out.append("XXX Iteration ").append(f[slot + 1]).append(" ended with ").append(f[slot + 2]).append(" of ").append(f[slot + 3]).append(" queens placed.");
+                if (f[slot + 4] >= 0)
+                {
+                    out.append(" Retrying with X start position ").append(f[slot + 4]).append('.');
+                }
+                out.append(" XXX");
+                break;
+            }
+            case EVENT_SOLUTION_COUNTED:
+            {
+                out.append("(SOLUTION) Solution ").append(toLong(f[slot + 1], f[slot + 2])).append(" counted with Queen 1 at (").append(f[slot + 3]).append(',').append(f[slot + 4]).append(").");
+                break;
+            }
+            case EVENT_ANGLE:
+            {
+                out.append("New Queen ").append(f[slot + 1]).append(" at (").append(f[slot + 2]).append(',').append(f[slot + 3])
+                        .append(") has angle ").append(Double.longBitsToDouble(toLong(f[slot + 7], f[slot + 8])))
+                        .append(" degrees to queen ").append(f[slot + 4]).append(" at (").append(f[slot + 5]).append(',').append(f[slot + 6]).append(").");
+                break;
+            }
+            case EVENT_ROW_CHOSEN:
+            {
+                out.append("Row ").append(f[slot + 1]).append(" chosen with ").append(f[slot + 2]).append(" legal squares.");
+                break;
+            }
+            case EVENT_NOGOOD_LEARNED:
+            {
+                out.append("Learned nogood of ").append(f[slot + 1]).append(" queens.");
+                break;
+            }
+            case EVENT_SWAPPED:
+            {
+                out.append("Step ").append(toLong(f[slot + 1], f[slot + 2])).append(": swapped rows ").append(f[slot + 3]).append(" and ").append(f[slot + 4])
+                        .append(". ").append(toLong(f[slot + 5], f[slot + 6])).append(" violations.");
+                break;
+            }
+            default:
+            {
+                out.append("Unknown event ").append(f[slot]).append('.');
+            }
+        }
+        out.append(System.lineSeparator());
+    }
+
+    private static long toLong(int high, int low)
+    {
+        return ((long)high << 32) | (low & 0xFFFFFFFFL);
+    }
+}
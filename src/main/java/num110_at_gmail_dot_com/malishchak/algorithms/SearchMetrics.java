@@ -0,0 +1,159 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Live counters of a search, published over JMX. Searching threads never touch these counters per node. Each keeps
+ * its own counts in plain fields and adds them here every few thousand nodes, so the cost on the hot path is a field
+ * increment. Counters are striped LongAdders, so the workers of parallel algorithms can report into one instance
+ * without contending.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SearchMetrics implements SearchMetricsMBean
+{
+    /**
+     * Name the metrics of the running algorithm are registered under
+     */
+    public final static String OBJECT_NAME = "num110_at_gmail_dot_com.malishchak:type=SearchMetrics";
+
+    private final String m_AlgorithmName;
+    private final long m_StartTime;
+
+    private final LongAdder m_Nodes = new LongAdder();
+    private final LongAdder m_Placements = new LongAdder();
+    private final LongAdder m_Undos = new LongAdder();
+    private final LongAdder m_AttackRejections = new LongAdder();
+    private final LongAdder m_LineRejections = new LongAdder();
+    private volatile int m_CurrentDepth = 0;
+    private final AtomicInteger m_DeepestDepth = new AtomicInteger(0);
+
+    /**
+     * @param algorithmName Name of the algorithm being run. The run is timed from construction
+     */
+    public SearchMetrics(String algorithmName)
+    {
+        m_AlgorithmName = algorithmName;
+        m_StartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing any metrics registered by an earlier run
+     * @throws JMException If the metrics could not be registered
+     */
+    public void register() throws JMException
+    {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+        {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+    }
+
+    /**
+     * Adds the counts a search thread gathered since it last reported. Safe to call from any number of threads
+     * @param nodes Nodes expanded since the last report
+     * @param placements Queens placed since the last report
+     * @param undos Queens removed since the last report
+     * @param attackRejections Squares ruled out by attacks since the last report
+     * @param lineRejections Squares ruled out by lines through two queens since the last report
+     * @param depth Queens on the board now, or -1 if the algorithm has no meaningful depth
+     * @param deepestDepth Most queens the thread has had on the board at once, or -1
+     */
+    public void record(long nodes, long placements, long undos, long attackRejections, long lineRejections, int depth, int deepestDepth)
+    {
+        m_Nodes.add(nodes);
+        m_Placements.add(placements);
+        m_Undos.add(undos);
+        m_AttackRejections.add(attackRejections);
+        m_LineRejections.add(lineRejections);
+        if (depth >= 0)
+        {
+            m_CurrentDepth = depth;
+        }
+        int deepest = m_DeepestDepth.get();
+        while (deepestDepth > deepest && !m_DeepestDepth.compareAndSet(deepest, deepestDepth))
+        {
+            deepest = m_DeepestDepth.get();
+        }
+    }
+
+    @Override
+    public String getAlgorithmName()
+    {
+        return m_AlgorithmName;
+    }
+
+    @Override
+    public long getNodesExpanded()
+    {
+        return m_Nodes.sum();
+    }
+
+    @Override
+    public long getPlacements()
+    {
+        return m_Placements.sum();
+    }
+
+    @Override
+    public long getUndos()
+    {
+        return m_Undos.sum();
+    }
+
+    @Override
+    public long getAttackRejections()
+    {
+        return m_AttackRejections.sum();
+    }
+
+    @Override
+    public long getLineRejections()
+    {
+        return m_LineRejections.sum();
+    }
+
+    @Override
+    public int getCurrentDepth()
+    {
+        return m_CurrentDepth;
+    }
+
+    @Override
+    public int getDeepestDepth()
+    {
+        return m_DeepestDepth.get();
+    }
+
+    @Override
+    public long getNodesPerSecond()
+    {
+        long elapsed = getElapsedMillis();
+        return (elapsed > 0 ? m_Nodes.sum() * 1000 / elapsed : 0);
+    }
+
+    @Override
+    public long getElapsedMillis()
+    {
+        return System.currentTimeMillis() - m_StartTime;
+    }
+}
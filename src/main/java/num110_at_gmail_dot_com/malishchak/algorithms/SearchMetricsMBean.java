@@ -0,0 +1,73 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+/**
+ * Management interface of SearchMetrics, exposing the live counters of a search to jconsole or any other JMX client.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public interface SearchMetricsMBean
+{
+    /**
+     * @return Name of the algorithm being run
+     */
+    String getAlgorithmName();
+
+    /**
+     * @return Nodes expanded by every thread of the search. Algorithms without a search tree count the squares or
+     * steps they test
+     */
+    long getNodesExpanded();
+
+    /**
+     * @return Queens placed on the board, including queens later removed
+     */
+    long getPlacements();
+
+    /**
+     * @return Queens removed from the board while backtracking or restarting
+     */
+    long getUndos();
+
+    /**
+     * @return Squares ruled out because a placed queen attacks them along a column or diagonal
+     */
+    long getAttackRejections();
+
+    /**
+     * @return Squares ruled out because they lie on a line through two placed queens
+     */
+    long getLineRejections();
+
+    /**
+     * @return Queens on the board when a search thread last reported
+     */
+    int getCurrentDepth();
+
+    /**
+     * @return Most queens on the board at once so far
+     */
+    int getDeepestDepth();
+
+    /**
+     * @return Average nodes expanded per second since the run started
+     */
+    long getNodesPerSecond();
+
+    /**
+     * @return Time since the run started
+     */
+    long getElapsedMillis();
+}
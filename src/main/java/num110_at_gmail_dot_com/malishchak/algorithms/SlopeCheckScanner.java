@@ -0,0 +1,98 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+/**
+ * Follows the same row-by-row placement and undo strategy as AngleCheckScannerUndo, but replaces the atan2 angle
+ * comparison with the exact integer DirectionChecker. Each candidate square is classified against every placed queen by
+ * reduced integer direction, so rejections cost O(k) integer operations for k placed queens and results are exact on
+ * boards of any practical width.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SlopeCheckScanner extends BaseRowScannerAlgorithm
+{
+    private DirectionChecker m_Checker;
+    private boolean[] m_BlockedXPositions;
+
+    public SlopeCheckScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Version = 1;
+        m_AlgorithmName = "SlopeCheckScanner";
+        m_AlgorithmDescription = "Iterates row-by-row through the chess board placing queens.\n" +
+                "Each potential queen is compared to every placed queen by the reduced integer\n" +
+                "direction (dx/g, dy/g) between them, where g is the greatest common divisor of\n" +
+                "the offsets. Horizontal, vertical and diagonal directions mean the potential\n" +
+                "queen is threatened. Two placed queens sharing a direction with the potential\n" +
+                "queen mean the three queens form a line. Directions seen are held in a primitive\n" +
+                "hash set, so no floating point angles are computed. Failed branches are undone\n" +
+                "in the same manner as AngleCheckScannerUndo, and each first row start position\n" +
+                "is treated as a new iteration.";
+    }
+
+    @Override
+    protected void onRunStarted()
+    {
+        m_Checker = new DirectionChecker(m_BoardWidth, m_BoardHeight, m_TargetQueens);
+        m_BlockedXPositions = new boolean[m_BoardWidth];
+    }
+
+    @Override
+    protected boolean canPlace(int x, int y)
+    {
+        //Skip checking squares we already know are threatened
+        if (m_BlockedXPositions[x])
+        {
+            m_AttackRejectionCount++;
+            return false;
+        }
+
+        int conflict = m_Checker.check(m_QueenXs, m_QueenYs, m_PlacedCount, x, y);
+        if (conflict == DirectionChecker.CONFLICT_ATTACK)
+        {
+            m_AttackRejectionCount++;
+        }
+        else if (conflict != DirectionChecker.CONFLICT_NONE)
+        {
+            m_LineRejectionCount++;
+        }
+        if (conflict != DirectionChecker.CONFLICT_NONE && m_LoggingLevel >= LOGGING_LEVEL_VERBOSE)
+        {
+            int j = m_Checker.getConflictIndex();
+            if (conflict == DirectionChecker.CONFLICT_ATTACK)
+            {
+                m_EventLog.rejectedByAttack(m_PlacedCount + 1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j]);
+            }
+            else
+            {
+                int k = m_Checker.getSecondConflictIndex();
+                m_EventLog.rejectedByLine(m_PlacedCount + 1, x, y, j + 1, m_QueenXs[j], m_QueenYs[j], k + 1, m_QueenXs[k], m_QueenYs[k]);
+            }
+        }
+        return conflict == DirectionChecker.CONFLICT_NONE;
+    }
+
+    @Override
+    protected void onQueenPlaced(int x, int y)
+    {
+        m_BlockedXPositions[x] = true;
+    }
+
+    @Override
+    protected void onQueenRemoved(int x, int y)
+    {
+        m_BlockedXPositions[x] = false;
+    }
+}
@@ -0,0 +1,229 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exact check of a complete solution using integer coordinates only. After the number of queens and their squares are
+ * checked, each queen's offset to every other queen is reduced by the greatest common divisor of its components and
+ * normalized so a direction and its opposite match, as in DirectionChecker but held in a long, so any board size is
+ * exact. Queens threaten one another along horizontal, vertical and diagonal directions, and two other queens sharing
+ * a reduced direction from a queen lie on one line with it. Every pair and every line is found from its lowest numbered
+ * queen, so each queen is only checked against the queens after it. Each queen's directions are collected in a
+ * LineCountMap, so checking N queens costs O(N^2) integer operations with no boxing.
+ *
+ * Solutions of PARALLEL_THRESHOLD queens or more are checked in parallel, splitting the queens across the common
+ * ForkJoinPool. The rejection reported is always the one found from the lowest numbered queen, the same as a check of
+ * one queen after another, and threads stop checking queens numbered above the lowest rejection found so far.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SolutionVerifier
+{
+    /**
+     * Fewest queens checked in parallel. Smaller solutions are checked faster on the calling thread
+     */
+    public final static int PARALLEL_THRESHOLD = 64;
+
+    /**
+     * Queens checked by each parallel task once the range is split
+     */
+    private final static int QUEENS_PER_TASK = 16;
+
+    private SolutionVerifier()
+    {
+    }
+
+    /**
+     * Checks a solution against every rule of the problem
+     * @param queens Queens placed by the solution
+     * @param targetQueens Number of queens the solution should place
+     * @param boardWidth Width of the chess board
+     * @param boardHeight Height of the chess board
+     * @return Verification holding the first rule broken, checked in the order queen count, squares, then each queen
+     * in placement order
+     */
+    public static Verification verify(List<Queen> queens, int targetQueens, int boardWidth, int boardHeight)
+    {
+        int count = queens.size();
+        if (count != targetQueens)
+        {
+            return Verification.wrongQueenCount(targetQueens, count);
+        }
+
+        int[] xs = new int[count];
+        int[] ys = new int[count];
+        for (int i = 0; i < count; i++)
+        {
+            Queen queen = queens.get(i);
+            xs[i] = queen.getX();
+            ys[i] = queen.getY();
+            if (xs[i] < 0 || xs[i] >= boardWidth || ys[i] < 0 || ys[i] >= boardHeight)
+            {
+                return Verification.offBoard(i, xs[i], ys[i]);
+            }
+        }
+
+        AtomicInteger firstRejected = new AtomicInteger(Integer.MAX_VALUE);
+        CheckTask task = new CheckTask(xs, ys, 0, count, firstRejected);
+        if (count < PARALLEL_THRESHOLD)
+        {
+            return task.compute();
+        }
+        return ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * Checks one queen against every queen after it
+     * @param xs X-coordinates of the queens, all on the board
+     * @param ys Y-coordinates of the queens, all on the board
+     * @param i Index of the queen to check
+     * @param directions Map to collect directions in, cleared before use
+     * @return The rule the queen breaks with the first later queens in placement order, or null if it breaks none
+     */
+    static Verification checkQueen(int[] xs, int[] ys, int i, LineCountMap directions)
+    {
+        directions.clear();
+        for (int j = i + 1; j < xs.length; j++)
+        {
+            int dx = xs[j] - xs[i];
+            int dy = ys[j] - ys[i];
+            if (dx == 0 && dy == 0)
+            {
+                return Verification.sharedSquare(i, j);
+            }
+            if (DirectionChecker.isAttack(dx, dy))
+            {
+                return Verification.attack(i, j);
+            }
+
+            long key = directionKey(dx, dy);
+            int seen = directions.get(key);
+            if (seen != 0)
+            {
+                return Verification.line(i, seen - 1, j);
+            }
+            //Stored as index + 1, since 0 marks a direction not yet seen
+            directions.put(key, j + 1);
+        }
+        return null;
+    }
+
+    /**
+     * @param dx Horizontal offset between two squares, not an attacking direction
+     * @param dy Vertical offset between two squares, not an attacking direction
+     * @return Key shared by every offset along the same line, in either direction
+     */
+    static long directionKey(int dx, int dy)
+    {
+        int g = binaryGcd(Math.abs(dx), Math.abs(dy));
+        dx /= g;
+        dy /= g;
+        if (dy < 0)
+        {
+            dx = -dx;
+            dy = -dy;
+        }
+        return ((long) dy << 32) | (dx & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Greatest common divisor by shifts and subtraction, which avoids the divisions of Euclid's algorithm in the
+     * innermost loop of a check
+     * @param a First positive value
+     * @param b Second positive value
+     * @return Greatest common divisor of a and b
+     */
+    static int binaryGcd(int a, int b)
+    {
+        int shift = Integer.numberOfTrailingZeros(a | b);
+        a >>= Integer.numberOfTrailingZeros(a);
+        while (b != 0)
+        {
+            b >>= Integer.numberOfTrailingZeros(b);
+            if (a > b)
+            {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            b -= a;
+        }
+        return a << shift;
+    }
+
+    /**
+     * Checks a range of queens, splitting it in half while it holds more than QUEENS_PER_TASK queens
+     */
+    private static class CheckTask extends RecursiveTask<Verification>
+    {
+        private final int[] m_Xs;
+        private final int[] m_Ys;
+        private final int m_From;
+        private final int m_To;
+        private final AtomicInteger m_FirstRejected;
+
+        CheckTask(int[] xs, int[] ys, int from, int to, AtomicInteger firstRejected)
+        {
+            m_Xs = xs;
+            m_Ys = ys;
+            m_From = from;
+            m_To = to;
+            m_FirstRejected = firstRejected;
+        }
+
+        @Override
+        protected Verification compute()
+        {
+            if (m_To - m_From > QUEENS_PER_TASK && m_Xs.length >= PARALLEL_THRESHOLD)
+            {
+                int middle = (m_From + m_To) >>> 1;
+                CheckTask low = new CheckTask(m_Xs, m_Ys, m_From, middle, m_FirstRejected);
+                CheckTask high = new CheckTask(m_Xs, m_Ys, middle, m_To, m_FirstRejected);
+                high.fork();
+                Verification lowResult = low.compute();
+                Verification highResult = high.join();
+                //Rejections from the lower half were found from lower numbered queens
+                return (lowResult.isVerified() ? highResult : lowResult);
+            }
+
+            LineCountMap directions = new LineCountMap(m_Xs.length);
+            for (int i = m_From; i < m_To; i++)
+            {
+                if (i > m_FirstRejected.get())
+                {
+                    //A lower numbered queen is already rejected, so nothing found here would be reported
+                    break;
+                }
+                Verification rejection = checkQueen(m_Xs, m_Ys, i, directions);
+                if (rejection != null)
+                {
+                    int first = m_FirstRejected.get();
+                    while (i < first && !m_FirstRejected.compareAndSet(first, i))
+                    {
+                        first = m_FirstRejected.get();
+                    }
+                    return rejection;
+                }
+            }
+            return Verification.verified();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+/**
+ * Outcome of checking a solution with SolutionVerifier. A rejected solution carries the reason it was rejected and the
+ * indices, in placement order, of the queens that break the rule, so callers can report or act on the failure without
+ * parsing a message.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class Verification {
+
+    public final static int REASON_NONE = 0;
+    public final static int REASON_QUEEN_COUNT = 1;
+    public final static int REASON_OFF_BOARD = 2;
+    public final static int REASON_SHARED_SQUARE = 3;
+    public final static int REASON_ATTACK = 4;
+    public final static int REASON_LINE = 5;
+
+    private final static Verification VERIFIED = new Verification(REASON_NONE, new int[0], "Solution verified!");
+
+    private final int m_Reason;
+    private final int[] m_Queens;
+    private final String m_Message;
+
+    private Verification(int reason, int[] queens, String message)
+    {
+        m_Reason = reason;
+        m_Queens = queens;
+        m_Message = message;
+    }
+
+    /**
+     * @return Verification of a solution that breaks no rule
+     */
+    public static Verification verified()
+    {
+        return VERIFIED;
+    }
+
+    /**
+     * @param targetQueens Number of queens the solution should place
+     * @param placedQueens Number of queens the solution placed
+     */
+    public static Verification wrongQueenCount(int targetQueens, int placedQueens)
+    {
+        return new Verification(REASON_QUEEN_COUNT, new int[0], "Target was to place " + targetQueens + " queens, solution placed " + placedQueens + ".");
+    }
+
+    /**
+     * @param queen Index of the queen placed off the board
+     * @param x X-coordinate of the queen
+     * @param y Y-coordinate of the queen
+     */
+    public static Verification offBoard(int queen, int x, int y)
+    {
+        return new Verification(REASON_OFF_BOARD, new int[] {queen}, "Queen " + (queen + 1) + " placed off the board at " + x + "," + y + ".");
+    }
+
+    /**
+     * @param queen Index of the first queen on the square
+     * @param other Index of the second queen on the square
+     */
+    public static Verification sharedSquare(int queen, int other)
+    {
+        return new Verification(REASON_SHARED_SQUARE, new int[] {queen, other}, "Queen " + (queen + 1) + " placed on the same square as Queen " + (other + 1) + ".");
+    }
+
+    /**
+     * @param queen Index of the threatened queen
+     * @param other Index of the queen threatening it
+     */
+    public static Verification attack(int queen, int other)
+    {
+        return new Verification(REASON_ATTACK, new int[] {queen, other}, "Queen " + (queen + 1) + " threatened by Queen " + (other + 1) + ".");
+    }
+
+    /**
+     * @param queen Index of the queen the line was found from
+     * @param first Index of the first other queen on the line
+     * @param second Index of the second other queen on the line
+     */
+    public static Verification line(int queen, int first, int second)
+    {
+        return new Verification(REASON_LINE, new int[] {queen, first, second}, "Queen " + (queen + 1) + " on a line with Queens " + (first + 1) + " and " + (second + 1) + ".");
+    }
+
+    /**
+     * @return True if the solution breaks no rule
+     */
+    public boolean isVerified()
+    {
+        return m_Reason == REASON_NONE;
+    }
+
+    /**
+     * @return One of the REASON constants
+     */
+    public int getReason()
+    {
+        return m_Reason;
+    }
+
+    /**
+     * @return Indices of the queens that break the rule, empty for REASON_NONE and REASON_QUEEN_COUNT
+     */
+    public int[] getQueens()
+    {
+        return m_Queens.clone();
+    }
+
+    /**
+     * @return Description of the outcome, numbering queens from 1
+     */
+    public String getMessage()
+    {
+        return m_Message;
+    }
+
+    @Override
+    public String toString()
+    {
+        return m_Message;
+    }
+}
@@ -0,0 +1,358 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.CountResults;
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Parallel search that splits the tree dynamically instead of only by first queen column. Each worker runs a
+ * ForbiddenMaskScanner over its subtree, and whenever it places a queen near the top of the board while the pool has
+ * few queued tasks, it hands the rest of that row to a new fork-join task and carries on with its own branch. Idle
+ * threads steal these tasks from busy ones, so start columns that die quickly no longer leave threads idle while
+ * others run for minutes. A task carries only the compact prefix of placed queen coordinates, the row to resume on and
+ * the first unexplored column, never a copy of the search state.
+ *
+ * In counting mode the same tasks enumerate every solution. Each worker counts into its own fields, and only adds its
+ * totals to the shared striped counters once its task is finished.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class WorkStealingScanner extends BaseN3QueensAlgorithm
+{
+    /**
+     * Workers stop handing out rows once this many tasks are queued beyond what idle threads could take
+     */
+    private final static int SURPLUS_TASK_THRESHOLD = 2;
+
+    /**
+     * Rows within this distance of the bottom of the board are never split, as their subtrees are too small to be
+     * worth a task
+     */
+    private final static int MIN_ROWS_BELOW_SPLIT = 6;
+
+    private int m_Threads;
+    private int m_MaxSplitRow;
+
+    private final AtomicBoolean m_SolutionFound = new AtomicBoolean(false);
+    private final AtomicReference<ArrayList<Queen>> m_Solution = new AtomicReference<ArrayList<Queen>>();
+    private final AtomicReference<ArrayList<Queen>> m_BestRun = new AtomicReference<ArrayList<Queen>>();
+    private final AtomicInteger m_IterationCount = new AtomicInteger(0);
+    private final LongAdder m_NodeCount = new LongAdder();
+    private final LongAdder m_TaskCount = new LongAdder();
+
+    private boolean m_CountingSolutions = false;
+    private final LongAdder m_SolutionCount = new LongAdder();
+    private LongAdder[] m_ColumnCounts = new LongAdder[0];
+
+    public WorkStealingScanner(int targetQueens, int boardWidth, int boardHeight, int startXOffset, int threads)
+    {
+        super(targetQueens, boardWidth, boardHeight, startXOffset);
+        m_Threads = Math.max(1, threads);
+        m_Version = 1;
+        m_AlgorithmName = "WorkStealingScanner";
+        m_AlgorithmDescription = "Searches the board in parallel on a work-stealing fork-join pool.\n" +
+                "Each first row start position begins as its own task. Workers place queens\n" +
+                "row-by-row, marking every square attacked by or in line with placed queens as\n" +
+                "forbidden. When a worker places a queen near the top of the board while other\n" +
+                "threads are short of work, it hands the unexplored remainder of that row to a new\n" +
+                "task, described only by the coordinates of the queens above it. Idle threads\n" +
+                "steal these tasks, keeping every thread busy on unbalanced trees. The first\n" +
+                "verified solution cancels all remaining work.";
+    }
+
+    /**
+     * @param threads Number of worker threads to search with
+     */
+    public void setThreads(int threads)
+    {
+        m_Threads = Math.max(1, threads);
+    }
+
+    /**
+     * Also cancels every task, which report their best runs or counts so far
+     */
+    @Override
+    public void cancel()
+    {
+        super.cancel();
+        m_SolutionFound.set(true);
+    }
+
+    @Override
+    public Results run() {
+        m_CountingSolutions = false;
+        searchAllTasks();
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println("Workers expanded " + m_NodeCount.sum() + " nodes across " + m_TaskCount.sum() + " tasks.");
+        }
+
+        Results results = new Results();
+        results.setAlgorithm(m_AlgorithmName);
+        results.setAlgorithm_version(m_Version);
+        results.setTarget_queens(m_TargetQueens);
+        results.setBoard_height(m_BoardHeight);
+        results.setBoard_width(m_BoardWidth);
+        results.setDate(System.currentTimeMillis());
+        results.setTotal_iterations(m_IterationCount.get());
+
+        ArrayList<Queen> solution = m_Solution.get();
+        if (solution != null)
+        {
+            if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Solution found with first queen at column " + solution.get(0).getX() + ".");
+            results.setPlaced_queens(solution);
+            results.setRemaining_queens(0);
+            results.setBest_iteration(solution.get(0).getX() + 1);
+            results.setSuccess(1);
+            results.setFirst_queen_x(solution.get(0).getX());
+            results.setWas_best_run(1);
+            return results;
+        }
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("XXX Algorithm failed after " + m_IterationCount.get() + " iterations.");
+        m_BestPlacedQueens = m_BestRun.get();
+        m_BestRemainingQueens = m_TargetQueens - m_BestPlacedQueens.size();
+        m_BestIteration = (m_BestPlacedQueens.isEmpty() ? 0 : m_BestPlacedQueens.get(0).getX() + 1);
+        results.setPlaced_queens(new ArrayList<Queen>(m_BestPlacedQueens));
+        results.setRemaining_queens(m_BestRemainingQueens);
+        results.setBest_iteration(m_BestIteration);
+        results.setSuccess(0);
+        results.setFirst_queen_x((m_BestPlacedQueens.isEmpty() ? m_StartXOffset : m_BestPlacedQueens.get(0).getX()));
+        results.setWas_best_run(1);
+        return results;
+    }
+
+    @Override
+    public CountResults count()
+    {
+        m_CountingSolutions = true;
+        searchAllTasks();
+        m_CountingSolutions = false;
+
+        long[] columnCounts = new long[m_ColumnCounts.length];
+        for (int x = 0; x < columnCounts.length; x++)
+        {
+            columnCounts[x] = m_ColumnCounts[x].sum();
+        }
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY)
+        {
+            System.out.println("Counted " + m_SolutionCount.sum() + " solutions. Workers expanded " + m_NodeCount.sum() + " nodes across " + m_TaskCount.sum() + " tasks.");
+        }
+        return buildCountResults(m_SolutionCount.sum(), columnCounts, m_NodeCount.sum(), m_Threads, isSymmetryActive());
+    }
+
+    /**
+     * Resets the shared state and runs the root task and every task it spawns to completion
+     */
+    private void searchAllTasks()
+    {
+        m_SolutionFound.set(false);
+        m_Solution.set(null);
+        m_BestRun.set(new ArrayList<Queen>());
+        m_IterationCount.set(0);
+        m_NodeCount.reset();
+        m_TaskCount.reset();
+        m_SolutionCount.reset();
+        m_ColumnCounts = new LongAdder[Math.max(1, m_BoardWidth)];
+        for (int x = 0; x < m_ColumnCounts.length; x++)
+        {
+            m_ColumnCounts[x] = new LongAdder();
+        }
+        m_MaxSplitRow = Math.max(1, m_BoardHeight - MIN_ROWS_BELOW_SPLIT);
+
+        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Searching with " + m_Threads + " threads.");
+        if (m_SymmetryBreaking && !isSymmetryActive() && m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("Symmetry breaking requires a square board with one queen per row and a startX of 0, searching without it.");
+        ForkJoinPool pool = new ForkJoinPool(m_Threads);
+        try
+        {
+            pool.invoke(new RootTask());
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return True if symmetry breaking was requested and the board shape and start column allow it
+     */
+    private boolean isSymmetryActive()
+    {
+        return m_SymmetryBreaking && m_BoardWidth == m_BoardHeight && m_TargetQueens == m_BoardWidth && m_StartXOffset == 0;
+    }
+
+    /**
+     * Replaces the shared best run if the given run placed more queens, retrying if another worker updated it first
+     */
+    private void offerBestRun(ArrayList<Queen> candidate)
+    {
+        ArrayList<Queen> current = m_BestRun.get();
+        while (candidate.size() > current.size())
+        {
+            if (m_BestRun.compareAndSet(current, candidate))
+            {
+                return;
+            }
+            current = m_BestRun.get();
+        }
+    }
+
+    /**
+     * Starts one subtree task per first row start position, completing once all tasks they spawn have completed
+     */
+    private class RootTask extends CountedCompleter<Void>
+    {
+        @Override
+        public void compute()
+        {
+            if (m_TargetQueens <= m_BoardHeight && m_TargetQueens <= m_BoardWidth)
+            {
+                //With symmetry breaking, reflections of the right half of the first row are searched from the left half
+                int firstQueenXLimit = (isSymmetryActive() ? (m_BoardWidth + 1) / 2 : m_BoardWidth);
+                for (int x = m_StartXOffset; x < firstQueenXLimit; x++)
+                {
+                    addToPendingCount(1);
+                    new SubtreeTask(this, new int[]{x}, new int[]{0}, 1, 0, true).fork();
+                }
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * Searches every placement extending a prefix of placed queens, starting part way through a row
+     */
+    private class SubtreeTask extends CountedCompleter<Void>
+    {
+        private final int[] m_PrefixXs;
+        private final int[] m_PrefixYs;
+        private final int m_Row;
+        private final int m_FromX;
+        private final boolean m_IsIteration;
+
+        SubtreeTask(CountedCompleter<?> parent, int[] prefixXs, int[] prefixYs, int row, int fromX, boolean isIteration)
+        {
+            super(parent);
+            m_PrefixXs = prefixXs;
+            m_PrefixYs = prefixYs;
+            m_Row = row;
+            m_FromX = fromX;
+            m_IsIteration = isIteration;
+        }
+
+        @Override
+        public void compute()
+        {
+            if (!m_SolutionFound.get() && !isStopRequested())
+            {
+                long timerStart = System.currentTimeMillis();
+                if (m_IsIteration) m_IterationCount.incrementAndGet();
+                m_TaskCount.increment();
+
+                SubtreeWorker worker = new SubtreeWorker(this);
+                worker.setCancellationFlag(m_SolutionFound);
+                worker.setDeadline(m_Deadline);
+                worker.setMetrics(m_Metrics);
+                worker.setLoggingLevel(LOGGING_LEVEL_NONE);
+                worker.setSymmetryBreaking(isSymmetryActive());
+                worker.setCountingSolutions(m_CountingSolutions);
+                boolean solved = worker.searchFromPrefix(m_PrefixXs, m_PrefixYs, m_PrefixXs.length, m_Row, m_FromX);
+                m_NodeCount.add(worker.getNodeCount());
+                if (worker.wasTimedOut()) m_TimedOut = true;
+
+                if (m_CountingSolutions)
+                {
+                    //Worker counted into its own fields, merge them once per task
+                    m_SolutionCount.add(worker.getSolutionCount());
+                    long[] columnCounts = worker.getColumnCounts();
+                    for (int x = 0; x < columnCounts.length; x++)
+                    {
+                        if (columnCounts[x] != 0) m_ColumnCounts[x].add(columnCounts[x]);
+                    }
+                }
+                else if (solved)
+                {
+                    ArrayList<Queen> solution = worker.copyPlacedQueens();
+                    if (worker.isVerifiedPlacement() && m_Solution.compareAndSet(null, solution))
+                    {
+                        m_SolutionFound.set(true);
+                        if (m_LoggingLevel >= LOGGING_LEVEL_SUMMARY) System.out.println("!!! Success! Subtree under start position " + m_PrefixXs[0] + " solved in " + (System.currentTimeMillis() - timerStart) + "ms.");
+                    }
+                }
+                else
+                {
+                    offerBestRun(worker.getBestPlacedQueens());
+                    if (m_IsIteration && m_LoggingLevel >= LOGGING_LEVEL_VERBOSE)
+                    {
+                        System.out.println("XXX Start position " + m_PrefixXs[0] + " task finished after " + (System.currentTimeMillis() - timerStart) + "ms. XXX");
+                    }
+                }
+            }
+            tryComplete();
+        }
+    }
+
+    /**
+     * ForbiddenMaskScanner that gives away the rest of shallow rows while the pool is short of queued work
+     */
+    private class SubtreeWorker extends ForbiddenMaskScanner
+    {
+        private final SubtreeTask m_Task;
+
+        SubtreeWorker(SubtreeTask task)
+        {
+            super(WorkStealingScanner.this.m_TargetQueens, WorkStealingScanner.this.m_BoardWidth, WorkStealingScanner.this.m_BoardHeight, 0);
+            m_Task = task;
+        }
+
+        @Override
+        protected boolean shouldDonateSiblings(int y)
+        {
+            return y < m_MaxSplitRow && ForkJoinTask.getSurplusQueuedTaskCount() < SURPLUS_TASK_THRESHOLD;
+        }
+
+        @Override
+        protected void donateSiblings(int y, int fromX)
+        {
+            //The most recent queen is on row y, the prefix is every queen above it
+            int prefixCount = m_PlacedCount - 1;
+            m_Task.addToPendingCount(1);
+            new SubtreeTask(m_Task, Arrays.copyOf(m_QueenXs, prefixCount), Arrays.copyOf(m_QueenYs, prefixCount), y, fromX, false).fork();
+        }
+
+        ArrayList<Queen> getBestPlacedQueens()
+        {
+            return m_BestPlacedQueens;
+        }
+
+        boolean isVerifiedPlacement()
+        {
+            DirectionChecker checker = new DirectionChecker(m_BoardWidth, m_BoardHeight, m_TargetQueens);
+            return m_PlacedCount == m_TargetQueens && checker.checkAll(m_QueenXs, m_QueenYs, m_PlacedCount) == DirectionChecker.CONFLICT_NONE;
+        }
+    }
+}
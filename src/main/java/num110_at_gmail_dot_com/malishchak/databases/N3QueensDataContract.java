@@ -27,14 +27,19 @@ public final class N3QueensDataContract {
      */
     public static final String DATABASE_NAME = "n3queens.db";
 
+    /**
+     * Name of the line table cache file for a board of width by height, kept beside the database
+     */
+    public static final String LINE_TABLE_CACHE_NAME = "n3queens_lines_%dx%d.bin";
+
     public N3QueensDataContract()
     {
 
     }
 
     /**
-     * The Results table stores the Results of runs, except for the list of all placed queens
-     * TODO: Add table for storing placed queens
+     * The Results table stores the Results of runs. Placed queens are packed into a blob holding the column of the
+     * queen on each row, see Results.getPacked_queens
      */
     public static final class ResultsTable {
         public static final String TABLE_NAME = "results";
@@ -53,5 +58,50 @@ public final class N3QueensDataContract {
         public static final String COLUMN_NAME_BEST_ITERATION = "best_iteration";
         public static final String COLUMN_NAME_TOTAL_ITERATIONS = "total_iteration";
         public static final String COLUMN_NAME_SOLUTION_TIME_IN_MS = "solution_time_in_ms";
+        public static final String COLUMN_NAME_RANDOM_SEED = "random_seed";
+        public static final String COLUMN_NAME_ATTEMPTS = "attempts";
+        public static final String COLUMN_NAME_TIMED_OUT = "timed_out";
+        public static final String COLUMN_NAME_SWEEP_ID = "sweep_id";
+        public static final String COLUMN_NAME_PACKED_QUEENS = "packed_queens";
+        public static final String COLUMN_NAME_TRANSPOSED = "transposed";
+    }
+
+    /**
+     * The Counts table stores the totals of exhaustive counting runs. Counts for each x position of the first queen
+     * are stored as a single comma separated string
+     */
+    public static final class CountsTable {
+        public static final String TABLE_NAME = "counts";
+        public static final String COLUMN_NAME_ID = "id";
+        public static final String COLUMN_NAME_DATE = "date";
+        public static final String COLUMN_NAME_ALGORITHM_NAME = "algorithm";
+        public static final String COLUMN_NAME_ALGORITHM_VERSION = "algorithm_version";
+        public static final String COLUMN_NAME_TARGET_QUEENS = "target_queens";
+        public static final String COLUMN_NAME_BOARD_WIDTH = "board_width";
+        public static final String COLUMN_NAME_BOARD_HEIGHT = "board_height";
+        public static final String COLUMN_NAME_START_X = "start_x";
+        public static final String COLUMN_NAME_SYMMETRY_BREAKING = "symmetry_breaking";
+        public static final String COLUMN_NAME_THREADS = "threads";
+        public static final String COLUMN_NAME_TOTAL_SOLUTIONS = "total_solutions";
+        public static final String COLUMN_NAME_COLUMN_COUNTS = "column_counts";
+        public static final String COLUMN_NAME_NODES = "nodes";
+        public static final String COLUMN_NAME_COUNT_TIME_IN_MS = "count_time_in_ms";
+    }
+
+    /**
+     * The Solutions table stores every distinct solution found, including the rotations and reflections of solutions
+     * found by a run. Each solution is packed as in ResultsTable, and solutions in the same symmetry class share the
+     * same canonical packing. A solution is stored once per problem set however many times it is found
+     */
+    public static final class SolutionsTable {
+        public static final String TABLE_NAME = "solutions";
+        public static final String COLUMN_NAME_ID = "id";
+        public static final String COLUMN_NAME_DATE = "date";
+        public static final String COLUMN_NAME_ALGORITHM_NAME = "algorithm";
+        public static final String COLUMN_NAME_TARGET_QUEENS = "target_queens";
+        public static final String COLUMN_NAME_BOARD_WIDTH = "board_width";
+        public static final String COLUMN_NAME_BOARD_HEIGHT = "board_height";
+        public static final String COLUMN_NAME_PACKED_QUEENS = "packed_queens";
+        public static final String COLUMN_NAME_CANONICAL_QUEENS = "canonical_queens";
     }
 }
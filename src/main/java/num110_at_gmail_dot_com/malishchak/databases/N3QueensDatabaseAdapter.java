@@ -3,18 +3,28 @@ package num110_at_gmail_dot_com.malishchak.databases;
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
 
+import num110_at_gmail_dot_com.malishchak.CountResults;
 import num110_at_gmail_dot_com.malishchak.Results;
+import num110_at_gmail_dot_com.malishchak.SymmetricSolutions;
 import org.sqlite.SQLiteDataSource;
 
 /**
  * Database Adapter for a simple SQLite Database in which to store and retrieve the Results from algorithm runs.
  *
+ * A single connection to the database is opened when the adapter is first used and kept until the program exits. The
+ * database is kept in WAL journal mode, so other processes may read it while rows are written. Rows are added through
+ * a write-behind queue: addResults, addCounts and addSolutions return once the row is queued, and a background thread
+ * inserts queued rows with prepared statements, committing up to WRITE_BATCH_SIZE rows per transaction. Queries flush
+ * the queue first, so they see every row added before them, and the queue is flushed when the program exits.
+ *
  * @author nmalishchak
  * Copyright (C) 2021 Nick Malishchak
  * This program is free software: you can redistribute it and/or modify
@@ -32,8 +42,42 @@ import org.sqlite.SQLiteDataSource;
  */
 public class N3QueensDatabaseAdapter {
 
+    /**
+     * Most rows inserted in a single transaction by the writing thread
+     */
+    private static final int WRITE_BATCH_SIZE = 256;
+
     private static SQLiteDataSource m_DataSource;
 
+    /**
+     * Connection shared by every query and the writing thread, or null if the database could not be opened. Only
+     * used while holding m_ConnectionLock
+     */
+    private static Connection m_Connection;
+    private static final Object m_ConnectionLock = new Object();
+    private static PreparedStatement m_InsertResults;
+    private static PreparedStatement m_InsertCounts;
+    private static PreparedStatement m_InsertSolutions;
+
+    /**
+     * Rows waiting to be written, each a Results, CountResults or SymmetricSolutions. Unbounded, so threads adding rows never wait on
+     * the disk
+     */
+    private static final LinkedBlockingQueue<Object> m_WriteQueue = new LinkedBlockingQueue<Object>();
+
+    /**
+     * Queued to stop the writing thread once every row ahead of it is written
+     */
+    private static final Object STOP_WRITER = new Object();
+    private static Thread m_Writer;
+
+    //Counters of queued rows, guarded by m_WriteProgressLock, which is notified as rows are written
+    private static final Object m_WriteProgressLock = new Object();
+    private static long m_RowsQueued = 0;
+    private static long m_RowsWritten = 0;
+    private static int m_FailedRows = 0;
+    private static boolean m_Closed = false;
+
     private static final String CREATE_TABLE_RESULTS =
             "CREATE TABLE IF NOT EXISTS " + N3QueensDataContract.ResultsTable.TABLE_NAME
                     + " ( " + N3QueensDataContract.ResultsTable.COLUMN_NAME_ID + " INTEGER PRIMARY KEY,"
@@ -50,7 +94,45 @@ public class N3QueensDatabaseAdapter {
                     + N3QueensDataContract.ResultsTable.COLUMN_NAME_FIRST_QUEEN_X + " INTEGER NOT NULL,"
                     + N3QueensDataContract.ResultsTable.COLUMN_NAME_BEST_ITERATION + " INTEGER NOT NULL,"
                     + N3QueensDataContract.ResultsTable.COLUMN_NAME_TOTAL_ITERATIONS + " INTEGER NOT NULL,"
-                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_SOLUTION_TIME_IN_MS  + " INTEGER NOT NULL);";
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_SOLUTION_TIME_IN_MS  + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_RANDOM_SEED + " INTEGER NOT NULL DEFAULT 0,"
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0,"
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_TIMED_OUT + " INTEGER NOT NULL DEFAULT 0,"
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_SWEEP_ID + " INTEGER NOT NULL DEFAULT 0,"
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_PACKED_QUEENS + " BLOB DEFAULT NULL,"
+                    + N3QueensDataContract.ResultsTable.COLUMN_NAME_TRANSPOSED + " INTEGER NOT NULL DEFAULT 0);";
+
+    private static final String CREATE_TABLE_COUNTS =
+            "CREATE TABLE IF NOT EXISTS " + N3QueensDataContract.CountsTable.TABLE_NAME
+                    + " ( " + N3QueensDataContract.CountsTable.COLUMN_NAME_ID + " INTEGER PRIMARY KEY,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_DATE + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_ALGORITHM_NAME + " TEXT NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_ALGORITHM_VERSION + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_TARGET_QUEENS + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_BOARD_WIDTH + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_BOARD_HEIGHT + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_START_X + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_SYMMETRY_BREAKING + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_THREADS + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_TOTAL_SOLUTIONS + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_COLUMN_COUNTS + " TEXT NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_NODES + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.CountsTable.COLUMN_NAME_COUNT_TIME_IN_MS + " INTEGER NOT NULL);";
+
+    private static final String CREATE_TABLE_SOLUTIONS =
+            "CREATE TABLE IF NOT EXISTS " + N3QueensDataContract.SolutionsTable.TABLE_NAME
+                    + " ( " + N3QueensDataContract.SolutionsTable.COLUMN_NAME_ID + " INTEGER PRIMARY KEY,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_DATE + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_ALGORITHM_NAME + " TEXT NOT NULL,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_TARGET_QUEENS + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_BOARD_WIDTH + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_BOARD_HEIGHT + " INTEGER NOT NULL,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_PACKED_QUEENS + " BLOB NOT NULL,"
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_CANONICAL_QUEENS + " BLOB NOT NULL,"
+                    + "UNIQUE (" + N3QueensDataContract.SolutionsTable.COLUMN_NAME_TARGET_QUEENS + ", "
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_BOARD_WIDTH + ", "
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_BOARD_HEIGHT + ", "
+                    + N3QueensDataContract.SolutionsTable.COLUMN_NAME_PACKED_QUEENS + "));";
 
     //Initialize Database and DataSource
     static {
@@ -64,30 +146,99 @@ public class N3QueensDatabaseAdapter {
                     //Initialize Database
                     Statement statement = connection.createStatement();
                     statement.setQueryTimeout(30);  // set timeout to 30 sec.
+                    //WAL lets other processes read while rows are written, and with synchronous=NORMAL commits only
+                    //sync to disk at checkpoints, which is still safe against corruption
+                    statement.execute("pragma journal_mode=WAL");
+                    statement.execute("pragma synchronous=NORMAL");
                     statement.executeUpdate(CREATE_TABLE_RESULTS);
+                    statement.executeUpdate(CREATE_TABLE_COUNTS);
+                    statement.executeUpdate(CREATE_TABLE_SOLUTIONS);
+
+                    //Databases created before these columns existed have them appended, keeping insert order intact
+                    addColumnIfMissing(statement, N3QueensDataContract.ResultsTable.TABLE_NAME, N3QueensDataContract.ResultsTable.COLUMN_NAME_RANDOM_SEED, "INTEGER NOT NULL DEFAULT 0");
+                    addColumnIfMissing(statement, N3QueensDataContract.ResultsTable.TABLE_NAME, N3QueensDataContract.ResultsTable.COLUMN_NAME_ATTEMPTS, "INTEGER NOT NULL DEFAULT 0");
+                    addColumnIfMissing(statement, N3QueensDataContract.ResultsTable.TABLE_NAME, N3QueensDataContract.ResultsTable.COLUMN_NAME_TIMED_OUT, "INTEGER NOT NULL DEFAULT 0");
+                    addColumnIfMissing(statement, N3QueensDataContract.ResultsTable.TABLE_NAME, N3QueensDataContract.ResultsTable.COLUMN_NAME_SWEEP_ID, "INTEGER NOT NULL DEFAULT 0");
+                    addColumnIfMissing(statement, N3QueensDataContract.ResultsTable.TABLE_NAME, N3QueensDataContract.ResultsTable.COLUMN_NAME_PACKED_QUEENS, "BLOB DEFAULT NULL");
+                    addColumnIfMissing(statement, N3QueensDataContract.ResultsTable.TABLE_NAME, N3QueensDataContract.ResultsTable.COLUMN_NAME_TRANSPOSED, "INTEGER NOT NULL DEFAULT 0");
+                    statement.close();
+
+                    m_InsertResults = connection.prepareStatement("insert into "+N3QueensDataContract.ResultsTable.TABLE_NAME+" values(null, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    m_InsertResults.setQueryTimeout(30);
+                    m_InsertCounts = connection.prepareStatement("insert into "+N3QueensDataContract.CountsTable.TABLE_NAME+" values(null, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                    m_InsertCounts.setQueryTimeout(30);
+                    //Solutions found again, by any run, are already stored and skipped
+                    m_InsertSolutions = connection.prepareStatement("insert or ignore into "+N3QueensDataContract.SolutionsTable.TABLE_NAME+" values(null, ?, ?, ?, ?, ?, ?, ?)");
+                    m_InsertSolutions.setQueryTimeout(30);
+                    m_Connection = connection;
                 }
                 catch(SQLException e)
                 {
                     System.err.println(e.getMessage());
-                }
-                finally
-                {
                     try
                     {
-                        if(connection != null)
-                            connection.close();
+                        connection.close();
                     }
-                    catch(SQLException e)
+                    catch(SQLException closeException)
                     {
-                        System.err.println(e.getMessage());
+                        System.err.println(closeException.getMessage());
                     }
                 }
             }
+
+            if(m_Connection != null)
+            {
+                m_Writer = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        writeQueuedRows();
+                    }
+                }, "N3Queens-DatabaseWriter");
+                m_Writer.setDaemon(true);
+                m_Writer.start();
+
+                //Rows still queued when the program exits, including through System.exit, are written before it ends
+                Runtime.getRuntime().addShutdownHook(new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        close();
+                    }
+                }, "N3Queens-DatabaseClose"));
+            }
     }
 
     /**
-     * @return A connection for accessing the N3Queens Database directly. Classes should use N3QueensDatabaseAdapter
-     * helper functions where possible.
+     * Appends a column to an existing table if an older version of the table does not have it yet
+     * @param statement Open statement to run the queries with
+     * @param tableName Table to check
+     * @param columnName Column that should exist
+     * @param columnDefinition Type and constraints of the column, which must include a default for existing rows
+     * @throws SQLException If the table could not be read or altered
+     */
+    private static void addColumnIfMissing(Statement statement, String tableName, String columnName, String columnDefinition) throws SQLException
+    {
+        ResultSet rs = statement.executeQuery("pragma table_info("+tableName+")");
+        boolean found = false;
+        while(rs.next())
+        {
+            if(columnName.equalsIgnoreCase(rs.getString("name")))
+            {
+                found = true;
+            }
+        }
+        rs.close();
+        if(!found)
+        {
+            statement.executeUpdate("alter table "+tableName+" add column "+columnName+" "+columnDefinition);
+        }
+    }
+
+    /**
+     * @return A new connection to the N3Queens Database, or null if it could not be opened
      */
     private static Connection getConnection() {
         try
@@ -102,59 +253,406 @@ public class N3QueensDatabaseAdapter {
     }
 
     /**
-     * Adds a result set to the database
+     * Queues a result set to be added to the database. The result set must not be changed once queued
      * @param result Set of complete results obtained from an algorithm, and finished with data from the main program
-     * @return True if the result set was added successfully
+     * @return True if the result set was queued, false if the database is not open. Whether it was written is
+     * reported by flush
      */
     public static boolean addResults(Results result)
     {
-        Connection connection = getConnection();
+        return queueRow(result);
+    }
 
-        if(connection == null)
+    /**
+     * Queues a row for the writing thread
+     * @param row Results, CountResults or SymmetricSolutions to insert
+     * @return True if the row was queued
+     */
+    private static boolean queueRow(Object row)
+    {
+        synchronized (m_WriteProgressLock)
         {
-            System.err.println("Error opening connection to database.");
-            return false;
+            if(m_Connection == null || m_Closed)
+            {
+                System.err.println("Error opening connection to database.");
+                return false;
+            }
+            m_RowsQueued++;
+            m_WriteQueue.add(row);
         }
+        return true;
+    }
 
-        boolean operationComplete = false;
+    /**
+     * Waits until every row queued so far has been written
+     * @return True if every row queued since the last flush was written, false if any failed to insert
+     */
+    public static boolean flush()
+    {
+        synchronized (m_WriteProgressLock)
+        {
+            boolean complete = awaitQueuedRows() && m_FailedRows == 0;
+            m_FailedRows = 0;
+            return complete;
+        }
+    }
+
+    /**
+     * Waits until every row queued so far has been written, without consuming the failures flush reports
+     * @return True if the writing thread is running and wrote every row queued so far
+     */
+    private static boolean awaitQueuedRows()
+    {
+        synchronized (m_WriteProgressLock)
+        {
+            long target = m_RowsQueued;
+            boolean interrupted = false;
+            while(m_RowsWritten < target && m_Writer != null && m_Writer.isAlive())
+            {
+                try
+                {
+                    m_WriteProgressLock.wait();
+                }
+                catch(InterruptedException e)
+                {
+                    interrupted = true;
+                }
+            }
+            if(interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+            return m_RowsWritten >= target;
+        }
+    }
+
+    /**
+     * Writes every queued row, then stops the writing thread and closes the connection. Rows queued after the adapter
+     * is closed are refused. Called when the program exits
+     */
+    public static void close()
+    {
+        synchronized (m_WriteProgressLock)
+        {
+            if(m_Connection == null || m_Closed)
+            {
+                return;
+            }
+            m_Closed = true;
+            m_WriteQueue.add(STOP_WRITER);
+        }
+        try
+        {
+            m_Writer.join();
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (m_ConnectionLock)
+        {
+            try
+            {
+                m_InsertResults.close();
+                m_InsertCounts.close();
+                m_InsertSolutions.close();
+                m_Connection.close();
+            }
+            catch(SQLException e)
+            {
+                System.err.println(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Body of the writing thread. Takes every row queued at once, up to WRITE_BATCH_SIZE, and inserts them in a single
+     * transaction, until STOP_WRITER is taken
+     */
+    private static void writeQueuedRows()
+    {
+        ArrayList<Object> batch = new ArrayList<Object>(WRITE_BATCH_SIZE);
+        boolean stopping = false;
+        while(!stopping)
+        {
+            try
+            {
+                batch.add(m_WriteQueue.take());
+            }
+            catch(InterruptedException e)
+            {
+                continue;
+            }
+            m_WriteQueue.drainTo(batch, WRITE_BATCH_SIZE - 1);
+            if(batch.get(batch.size() - 1) == STOP_WRITER)
+            {
+                //Nothing is queued after STOP_WRITER, so it can only be last
+                batch.remove(batch.size() - 1);
+                stopping = true;
+            }
+
+            int failed = 0;
+            if(batch.size() > 0)
+            {
+                synchronized (m_ConnectionLock)
+                {
+                    if(!writeBatch(batch))
+                    {
+                        //Retry each row on its own, so one bad row does not lose the rest of the batch
+                        for(Object row : batch)
+                        {
+                            ArrayList<Object> single = new ArrayList<Object>(1);
+                            single.add(row);
+                            if(!writeBatch(single))
+                            {
+                                failed++;
+                            }
+                        }
+                    }
+                }
+            }
+
+            synchronized (m_WriteProgressLock)
+            {
+                m_RowsWritten += batch.size();
+                m_FailedRows += failed;
+                m_WriteProgressLock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Inserts rows in a single transaction. Must be called holding m_ConnectionLock
+     * @param rows Results, CountResults and SymmetricSolutions to insert
+     * @return True if every row was committed, false if the transaction was rolled back
+     */
+    private static boolean writeBatch(ArrayList<Object> rows)
+    {
         try
         {
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);  // set timeout to 30 sec.
-            statement.executeUpdate("insert into "+N3QueensDataContract.ResultsTable.TABLE_NAME+" values(null, " +
-                    result.getDate() + ", " +
-                    "'" + result.getAlgorithm() + "', " +
-                    result.getAlgorithm_version() + ", " +
-                    result.getTarget_queens() + ", " +
-                    result.getBoard_width() + ", " +
-                    result.getBoard_height() + ", " +
-                    result.getSuccess() + ", " +
-                    result.getVerified() + ", " +
-                    result.getWas_best_run() + ", " +
-                    result.getRemaining_queens() + ", " +
-                    result.getFirst_queen_x() + ", " +
-                    result.getBest_iteration() + ", " +
-                    result.getTotal_iterations() + ", " +
-                    result.getSolution_time_in_ms() + ")");
-            operationComplete = true;
+            m_Connection.setAutoCommit(false);
+            boolean hasResults = false;
+            boolean hasCounts = false;
+            boolean hasSolutions = false;
+            for(Object row : rows)
+            {
+                if(row instanceof Results)
+                {
+                    bindResults((Results) row);
+                    m_InsertResults.addBatch();
+                    hasResults = true;
+                }
+                else if(row instanceof CountResults)
+                {
+                    bindCounts((CountResults) row);
+                    m_InsertCounts.addBatch();
+                    hasCounts = true;
+                }
+                else
+                {
+                    //One row for each image of the solution
+                    SymmetricSolutions solutions = (SymmetricSolutions) row;
+                    for(byte[] image : solutions.getImages())
+                    {
+                        bindSolution(solutions, image);
+                        m_InsertSolutions.addBatch();
+                    }
+                    hasSolutions = true;
+                }
+            }
+            if(hasResults)
+            {
+                m_InsertResults.executeBatch();
+            }
+            if(hasCounts)
+            {
+                m_InsertCounts.executeBatch();
+            }
+            if(hasSolutions)
+            {
+                m_InsertSolutions.executeBatch();
+            }
+            m_Connection.commit();
+            return true;
         }
         catch(SQLException e)
         {
             System.err.println(e.getMessage());
+            try
+            {
+                m_InsertResults.clearBatch();
+                m_InsertCounts.clearBatch();
+                m_InsertSolutions.clearBatch();
+                m_Connection.rollback();
+            }
+            catch(SQLException rollbackException)
+            {
+                System.err.println(rollbackException.getMessage());
+            }
+            return false;
         }
         finally
         {
             try
             {
-                if(connection != null)
-                    connection.close();
+                m_Connection.setAutoCommit(true);
             }
             catch(SQLException e)
             {
                 System.err.println(e.getMessage());
             }
         }
-        return operationComplete;
+    }
+
+    /**
+     * Sets the parameters of the results insert, in column order
+     * @param result Result set to insert
+     * @throws SQLException If a parameter could not be set
+     */
+    private static void bindResults(Results result) throws SQLException
+    {
+        m_InsertResults.setLong(1, result.getDate());
+        m_InsertResults.setString(2, result.getAlgorithm());
+        m_InsertResults.setInt(3, result.getAlgorithm_version());
+        m_InsertResults.setInt(4, result.getTarget_queens());
+        m_InsertResults.setInt(5, result.getBoard_width());
+        m_InsertResults.setInt(6, result.getBoard_height());
+        m_InsertResults.setInt(7, result.getSuccess());
+        m_InsertResults.setInt(8, result.getVerified());
+        m_InsertResults.setInt(9, result.getWas_best_run());
+        m_InsertResults.setInt(10, result.getRemaining_queens());
+        m_InsertResults.setInt(11, result.getFirst_queen_x());
+        m_InsertResults.setInt(12, result.getBest_iteration());
+        m_InsertResults.setInt(13, result.getTotal_iterations());
+        m_InsertResults.setLong(14, result.getSolution_time_in_ms());
+        m_InsertResults.setLong(15, result.getRandom_seed());
+        m_InsertResults.setInt(16, result.getAttempts());
+        m_InsertResults.setInt(17, result.getTimed_out());
+        m_InsertResults.setLong(18, result.getSweep_id());
+        m_InsertResults.setBytes(19, result.getPacked_queens());
+        m_InsertResults.setInt(20, result.getTransposed());
+    }
+
+    /**
+     * Sets the parameters of the counts insert, in column order
+     * @param counts Counts to insert
+     * @throws SQLException If a parameter could not be set
+     */
+    private static void bindCounts(CountResults counts) throws SQLException
+    {
+        m_InsertCounts.setLong(1, counts.getDate());
+        m_InsertCounts.setString(2, counts.getAlgorithm());
+        m_InsertCounts.setInt(3, counts.getAlgorithm_version());
+        m_InsertCounts.setInt(4, counts.getTarget_queens());
+        m_InsertCounts.setInt(5, counts.getBoard_width());
+        m_InsertCounts.setInt(6, counts.getBoard_height());
+        m_InsertCounts.setInt(7, counts.getStart_x());
+        m_InsertCounts.setInt(8, counts.getSymmetry_breaking());
+        m_InsertCounts.setInt(9, counts.getThreads());
+        m_InsertCounts.setLong(10, counts.getTotal_solutions());
+        m_InsertCounts.setString(11, counts.getColumnCountsString());
+        m_InsertCounts.setLong(12, counts.getNodes());
+        m_InsertCounts.setLong(13, counts.getCount_time_in_ms());
+    }
+
+    /**
+     * Sets the parameters of the solutions insert, in column order
+     * @param solutions Images of a solution
+     * @param image The image to insert
+     * @throws SQLException If a parameter could not be set
+     */
+    private static void bindSolution(SymmetricSolutions solutions, byte[] image) throws SQLException
+    {
+        m_InsertSolutions.setLong(1, solutions.getDate());
+        m_InsertSolutions.setString(2, solutions.getAlgorithm());
+        m_InsertSolutions.setInt(3, solutions.getTarget_queens());
+        m_InsertSolutions.setInt(4, solutions.getBoard_width());
+        m_InsertSolutions.setInt(5, solutions.getBoard_height());
+        m_InsertSolutions.setBytes(6, image);
+        m_InsertSolutions.setBytes(7, solutions.getCanonical_queens());
+    }
+
+    /**
+     * Queues every image of a solution to be added to the Solutions table, in a single transaction with other queued
+     * rows. Images already stored are skipped. The images must not be changed once queued
+     * @param solutions Distinct images of a verified solution
+     * @return True if the images were queued, false if the database is not open. Whether they were written is reported
+     * by flush
+     */
+    public static boolean addSolutions(SymmetricSolutions solutions)
+    {
+        return queueRow(solutions);
+    }
+
+    /**
+     * Counts the distinct solutions stored for a problem set
+     * @param targetQueens Number of queens placed
+     * @param boardWidth Width of the board
+     * @param boardHeight Height of the board
+     * @return The number of solutions and the number of symmetry classes they fall in, or null if an error occurs
+     */
+    public static long[] getSolutionCounts(int targetQueens, int boardWidth, int boardHeight)
+    {
+        if(m_Connection == null)
+        {
+            System.err.println("Error opening connection to database.");
+            return null;
+        }
+        //Rows still queued would otherwise be missing from the query
+        awaitQueuedRows();
+
+        synchronized (m_ConnectionLock)
+        {
+            try
+            {
+                Statement statement = m_Connection.createStatement();
+                statement.setQueryTimeout(30);  // set timeout to 30 sec.
+                ResultSet rs = statement.executeQuery("select count(*), count(distinct "
+                        + N3QueensDataContract.SolutionsTable.COLUMN_NAME_CANONICAL_QUEENS + ") from "
+                        + N3QueensDataContract.SolutionsTable.TABLE_NAME + " where "
+                        + N3QueensDataContract.SolutionsTable.COLUMN_NAME_TARGET_QUEENS + " = " + targetQueens
+                        + " AND " + N3QueensDataContract.SolutionsTable.COLUMN_NAME_BOARD_WIDTH + " = " + boardWidth
+                        + " AND " + N3QueensDataContract.SolutionsTable.COLUMN_NAME_BOARD_HEIGHT + " = " + boardHeight);
+                long[] counts = null;
+                if(rs.next())
+                {
+                    counts = new long[] {rs.getLong(1), rs.getLong(2)};
+                }
+                rs.close();
+                statement.close();
+                return counts;
+            }
+            catch(SQLException e)
+            {
+                System.err.println("Error: " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the fastest verified solution saved for a problem set, with its placed queens
+     * @param targetQueens Number of queens placed
+     * @param boardWidth Width of the board
+     * @param boardHeight Height of the board
+     * @return The solution, or null if none is saved or an error occurs
+     */
+    public static Results getCachedSolution(int targetQueens, int boardWidth, int boardHeight)
+    {
+        ArrayList<Results> solutions = getResults("where "
+                + N3QueensDataContract.ResultsTable.COLUMN_NAME_TARGET_QUEENS + " = " + targetQueens
+                + " AND " + N3QueensDataContract.ResultsTable.COLUMN_NAME_BOARD_WIDTH + " = " + boardWidth
+                + " AND " + N3QueensDataContract.ResultsTable.COLUMN_NAME_BOARD_HEIGHT + " = " + boardHeight
+                + " AND " + N3QueensDataContract.ResultsTable.COLUMN_NAME_SUCCESS + " = 1"
+                + " AND " + N3QueensDataContract.ResultsTable.COLUMN_NAME_VERIFIED + " = 1"
+                + " AND " + N3QueensDataContract.ResultsTable.COLUMN_NAME_PACKED_QUEENS + " IS NOT NULL"
+                + " ORDER BY " + N3QueensDataContract.ResultsTable.COLUMN_NAME_SOLUTION_TIME_IN_MS + " ASC LIMIT 1");
+        if(solutions == null || solutions.size() == 0)
+        {
+            return null;
+        }
+        return solutions.get(0);
     }
 
     /**
@@ -176,53 +674,123 @@ public class N3QueensDatabaseAdapter {
      */
     public static ArrayList<Results> getResults(String whereSQLString)
     {
-        Connection connection = getConnection();
-
-        if(connection == null)
+        if(m_Connection == null)
         {
             System.err.println("Error opening connection to database.");
             return null;
         }
+        //Rows still queued would otherwise be missing from the query
+        awaitQueuedRows();
 
         ArrayList<Results> returnList = new ArrayList<Results>();
         boolean operationComplete = false;
-        try
+        synchronized (m_ConnectionLock)
         {
-            Statement statement = connection.createStatement();
-            statement.setQueryTimeout(30);  // set timeout to 30 sec.
-            ResultSet rs = statement.executeQuery("select * from results "+whereSQLString);
-
-            while(rs.next())
-            {
-                Results result = new Results();
-                result.setDate(rs.getLong(N3QueensDataContract.ResultsTable.COLUMN_NAME_DATE));
-                result.setAlgorithm(rs.getString(N3QueensDataContract.ResultsTable.COLUMN_NAME_ALGORITHM_NAME));
-                result.setAlgorithm_version(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_ALGORITHM_VERSION));
-                result.setTarget_queens(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_TARGET_QUEENS));
-                result.setBoard_width(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_BOARD_WIDTH));
-                result.setBoard_height(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_BOARD_HEIGHT));
-                result.setSuccess(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_SUCCESS));
-                result.setVerified(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_VERIFIED));
-                result.setWas_best_run(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_WAS_BEST_RUN));
-                result.setRemaining_queens(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_REMAINING_QUEENS));
-                result.setFirst_queen_x(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_FIRST_QUEEN_X));
-                result.setBest_iteration(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_BEST_ITERATION));
-                result.setTotal_iterations(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_TOTAL_ITERATIONS));
-                result.setSolution_time_in_ms(rs.getLong(N3QueensDataContract.ResultsTable.COLUMN_NAME_SOLUTION_TIME_IN_MS));
-                returnList.add(result);
-            }
-            operationComplete = true;
+            try
+            {
+                Statement statement = m_Connection.createStatement();
+                statement.setQueryTimeout(30);  // set timeout to 30 sec.
+                ResultSet rs = statement.executeQuery("select * from results "+whereSQLString);
+
+                while(rs.next())
+                {
+                    Results result = new Results();
+                    result.setDate(rs.getLong(N3QueensDataContract.ResultsTable.COLUMN_NAME_DATE));
+                    result.setAlgorithm(rs.getString(N3QueensDataContract.ResultsTable.COLUMN_NAME_ALGORITHM_NAME));
+                    result.setAlgorithm_version(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_ALGORITHM_VERSION));
+                    result.setTarget_queens(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_TARGET_QUEENS));
+                    result.setBoard_width(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_BOARD_WIDTH));
+                    result.setBoard_height(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_BOARD_HEIGHT));
+                    result.setSuccess(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_SUCCESS));
+                    result.setVerified(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_VERIFIED));
+                    result.setWas_best_run(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_WAS_BEST_RUN));
+                    result.setRemaining_queens(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_REMAINING_QUEENS));
+                    result.setFirst_queen_x(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_FIRST_QUEEN_X));
+                    result.setBest_iteration(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_BEST_ITERATION));
+                    result.setTotal_iterations(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_TOTAL_ITERATIONS));
+                    result.setSolution_time_in_ms(rs.getLong(N3QueensDataContract.ResultsTable.COLUMN_NAME_SOLUTION_TIME_IN_MS));
+                    result.setRandom_seed(rs.getLong(N3QueensDataContract.ResultsTable.COLUMN_NAME_RANDOM_SEED));
+                    result.setAttempts(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_ATTEMPTS));
+                    result.setTimed_out(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_TIMED_OUT));
+                    result.setSweep_id(rs.getLong(N3QueensDataContract.ResultsTable.COLUMN_NAME_SWEEP_ID));
+                    result.setPacked_queens(rs.getBytes(N3QueensDataContract.ResultsTable.COLUMN_NAME_PACKED_QUEENS));
+                    result.setTransposed(rs.getInt(N3QueensDataContract.ResultsTable.COLUMN_NAME_TRANSPOSED));
+                    returnList.add(result);
+                }
+                rs.close();
+                statement.close();
+                operationComplete = true;
+            }
+            catch(SQLException e)
+            {
+                System.err.println("Error: " + e.getMessage());
+            }
         }
-        catch(SQLException e)
+        if(operationComplete) {
+            return returnList;
+        }
+
+        return null;
+    }
+
+    /**
+     * Queues the totals of a counting run to be added to the database. The counts must not be changed once queued
+     * @param counts Complete counts obtained from an algorithm, and finished with data from the main program
+     * @return True if the counts were queued, false if the database is not open. Whether they were written is
+     * reported by flush
+     */
+    public static boolean addCounts(CountResults counts)
+    {
+        return queueRow(counts);
+    }
+
+    /**
+     * Queries the Counts Table using the given where clause (to include follow on SQL modifiers) and returns a list
+     * of CountResults matching the given where clause.
+     * @param whereSQLString SQL string to append to "select * from counts"
+     * @return ArrayList of CountResults matching the whereSQLString, or null if an error occurs
+     */
+    public static ArrayList<CountResults> getCounts(String whereSQLString)
+    {
+        if(m_Connection == null)
         {
-            System.err.println("Error: " + e.getMessage());
+            System.err.println("Error opening connection to database.");
+            return null;
         }
-        finally
+        //Rows still queued would otherwise be missing from the query
+        awaitQueuedRows();
+
+        ArrayList<CountResults> returnList = new ArrayList<CountResults>();
+        boolean operationComplete = false;
+        synchronized (m_ConnectionLock)
         {
             try
             {
-                if(connection != null)
-                    connection.close();
+                Statement statement = m_Connection.createStatement();
+                statement.setQueryTimeout(30);  // set timeout to 30 sec.
+                ResultSet rs = statement.executeQuery("select * from "+N3QueensDataContract.CountsTable.TABLE_NAME+" "+whereSQLString);
+
+                while(rs.next())
+                {
+                    CountResults counts = new CountResults();
+                    counts.setDate(rs.getLong(N3QueensDataContract.CountsTable.COLUMN_NAME_DATE));
+                    counts.setAlgorithm(rs.getString(N3QueensDataContract.CountsTable.COLUMN_NAME_ALGORITHM_NAME));
+                    counts.setAlgorithm_version(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_ALGORITHM_VERSION));
+                    counts.setTarget_queens(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_TARGET_QUEENS));
+                    counts.setBoard_width(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_BOARD_WIDTH));
+                    counts.setBoard_height(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_BOARD_HEIGHT));
+                    counts.setStart_x(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_START_X));
+                    counts.setSymmetry_breaking(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_SYMMETRY_BREAKING));
+                    counts.setThreads(rs.getInt(N3QueensDataContract.CountsTable.COLUMN_NAME_THREADS));
+                    counts.setTotal_solutions(rs.getLong(N3QueensDataContract.CountsTable.COLUMN_NAME_TOTAL_SOLUTIONS));
+                    counts.setColumnCountsString(rs.getString(N3QueensDataContract.CountsTable.COLUMN_NAME_COLUMN_COUNTS));
+                    counts.setNodes(rs.getLong(N3QueensDataContract.CountsTable.COLUMN_NAME_NODES));
+                    counts.setCount_time_in_ms(rs.getLong(N3QueensDataContract.CountsTable.COLUMN_NAME_COUNT_TIME_IN_MS));
+                    returnList.add(counts);
+                }
+                rs.close();
+                statement.close();
+                operationComplete = true;
             }
             catch(SQLException e)
             {
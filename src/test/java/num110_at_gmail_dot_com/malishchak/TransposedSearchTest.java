@@ -0,0 +1,108 @@
+package num110_at_gmail_dot_com.malishchak;
+
+import num110_at_gmail_dot_com.malishchak.algorithms.BaseN3QueensAlgorithm;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that runs on boards taller than they are wide map back to verified solutions of the board as given, and
+ * that the first queen respects -startX whether or not the board is searched transposed.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class TransposedSearchTest
+{
+    private static final int FORBIDDEN_MASK_SCANNER = 4;
+
+    /**
+     * Runs algorithm 4 on a 6 wide, 9 tall board as N3Queens does, mapping transposed results back
+     */
+    private static Results runTallBoard(int startX)
+    {
+        N3Queens.m_TargetQueens = 6;
+        N3Queens.m_BoardWidth = 6;
+        N3Queens.m_BoardHeight = 9;
+        N3Queens.m_StartXOffset = startX;
+        BaseN3QueensAlgorithm algorithm = N3Queens.createAlgorithm(FORBIDDEN_MASK_SCANNER);
+        algorithm.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        Results results = algorithm.run();
+        if (N3Queens.isTransposedSearch())
+        {
+            results.transpose();
+        }
+        return results;
+    }
+
+    private static Queen queenOnFirstRow(Results results)
+    {
+        for (Queen queen : results.getPlaced_queens())
+        {
+            if (queen.getY() == 0)
+            {
+                return queen;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSolvedOnBoardAsGiven(Results results)
+    {
+        assertEquals(1, results.getSuccess());
+        assertEquals(6, results.getBoard_width());
+        assertEquals(9, results.getBoard_height());
+        assertTrue(N3Queens.verifySolution(results.getPlaced_queens()).isVerified());
+    }
+
+    @Test
+    public void tallBoardFromFirstColumnIsTransposed()
+    {
+        Results results = runTallBoard(0);
+        assertTrue(N3Queens.isTransposedSearch());
+        assertEquals(1, results.getTransposed());
+        assertSolvedOnBoardAsGiven(results);
+
+        Queen first = queenOnFirstRow(results);
+        assertEquals((first != null ? first.getX() : 0), results.getFirst_queen_x());
+    }
+
+    @Test
+    public void tallBoardRespectsStartX()
+    {
+        int solved = 0;
+        for (int startX = 1; startX < 6; startX++)
+        {
+            Results results = runTallBoard(startX);
+            assertFalse(N3Queens.isTransposedSearch());
+            if (results.getSuccess() == 0)
+            {
+                //No solution has its first queen this far right
+                continue;
+            }
+            solved++;
+            assertEquals(0, results.getTransposed());
+            assertSolvedOnBoardAsGiven(results);
+
+            Queen first = queenOnFirstRow(results);
+            assertTrue(first != null && first.getX() >= startX, "First queen left of startX " + startX);
+            assertEquals(first.getX(), results.getFirst_queen_x());
+        }
+        N3Queens.m_StartXOffset = 0;
+        assertTrue(solved > 0);
+    }
+}
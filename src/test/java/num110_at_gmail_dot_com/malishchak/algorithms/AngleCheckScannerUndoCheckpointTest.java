@@ -0,0 +1,139 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+import num110_at_gmail_dot_com.malishchak.Results;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that a run of AngleCheckScannerUndo stopped part way through and resumed from its checkpoint ends with the
+ * same result, and the same total iterations, as a run that was never stopped.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class AngleCheckScannerUndoCheckpointTest
+{
+    /**
+     * Scanner that stops itself after a fixed number of passes, in place of a timeout
+     */
+    private static class StoppingScanner extends AngleCheckScannerUndo
+    {
+        private int m_PassesLeft;
+
+        StoppingScanner(int boardSize, int passes)
+        {
+            super(boardSize, boardSize, boardSize, 0);
+            m_PassesLeft = passes;
+        }
+
+        @Override
+        protected boolean isStopRequested()
+        {
+            return m_PassesLeft-- <= 0;
+        }
+    }
+
+    private static List<String> squares(Results results)
+    {
+        List<String> squares = new ArrayList<String>();
+        for (Queen queen : results.getPlaced_queens())
+        {
+            squares.add(queen.getX() + "," + queen.getY());
+        }
+        return squares;
+    }
+
+    private static void assertResumedRunMatches(int boardSize, int passes) throws IOException
+    {
+        AngleCheckScannerUndo plain = new AngleCheckScannerUndo(boardSize, boardSize, boardSize, 0);
+        plain.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        Results expected = plain.run();
+
+        File checkpointFile = File.createTempFile("n3queens_checkpoint", ".bin");
+        checkpointFile.deleteOnExit();
+        assertTrue(checkpointFile.delete());
+
+        StoppingScanner stopped = new StoppingScanner(boardSize, passes);
+        stopped.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        stopped.setCheckpointFile(checkpointFile, BaseN3QueensAlgorithm.DEFAULT_CHECKPOINT_INTERVAL_MS);
+        assertEquals(0, stopped.run().getSuccess());
+        assertTrue(checkpointFile.exists(), "No checkpoint after " + passes + " passes on " + boardSize + "x" + boardSize);
+
+        AngleCheckScannerUndo resumed = new AngleCheckScannerUndo(boardSize, boardSize, boardSize, 0);
+        resumed.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        resumed.setCheckpointFile(checkpointFile, BaseN3QueensAlgorithm.DEFAULT_CHECKPOINT_INTERVAL_MS);
+        resumed.setResumeCheckpoint(SearchCheckpoint.read(checkpointFile));
+        Results results = resumed.run();
+
+        String problem = boardSize + "x" + boardSize + " stopped after " + passes + " passes";
+        assertEquals(expected.getSuccess(), results.getSuccess(), problem);
+        assertEquals(expected.getTotal_iterations(), results.getTotal_iterations(), problem);
+        if (expected.getSuccess() == 1)
+        {
+            assertEquals(squares(expected), squares(results), problem);
+        }
+        assertFalse(checkpointFile.exists(), "Checkpoint kept after the run completed, " + problem);
+    }
+
+    @Test
+    public void resumedRunFindsSameSolution() throws IOException
+    {
+        assertResumedRunMatches(10, 5);
+        assertResumedRunMatches(12, 40);
+        assertResumedRunMatches(16, 300);
+    }
+
+    @Test
+    public void resumedRunCountsIterationsAcrossSessions() throws IOException
+    {
+        //No start position leads to a solution on 7x7, so the run ends after an iteration for each of them
+        assertResumedRunMatches(7, 5);
+        assertResumedRunMatches(7, 60);
+    }
+
+    @Test
+    public void rejectsCheckpointOfOtherProblem() throws IOException
+    {
+        File checkpointFile = File.createTempFile("n3queens_checkpoint", ".bin");
+        checkpointFile.deleteOnExit();
+        StoppingScanner stopped = new StoppingScanner(10, 5);
+        stopped.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        stopped.setCheckpointFile(checkpointFile, BaseN3QueensAlgorithm.DEFAULT_CHECKPOINT_INTERVAL_MS);
+        stopped.run();
+
+        AngleCheckScannerUndo other = new AngleCheckScannerUndo(11, 11, 11, 0);
+        other.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        other.setResumeCheckpoint(SearchCheckpoint.read(checkpointFile));
+        boolean rejected = false;
+        try
+        {
+            other.run();
+        }
+        catch (IllegalArgumentException e)
+        {
+            rejected = true;
+        }
+        assertTrue(rejected);
+    }
+}
@@ -0,0 +1,201 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.Queen;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks SolutionVerifier against each rule of the problem, on small hand placed solutions and on solutions large
+ * enough to be split across the ForkJoinPool.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SolutionVerifierTest
+{
+    /**
+     * Prime side of the large board. Its parabola holds 106 points before attacking pairs are removed
+     */
+    private static final int LARGE_BOARD = 211;
+
+    private static List<Queen> queens(int... coordinates)
+    {
+        List<Queen> queens = new ArrayList<Queen>();
+        for (int i = 0; i < coordinates.length; i += 2)
+        {
+            queens.add(new Queen(coordinates[i], coordinates[i + 1]));
+        }
+        return queens;
+    }
+
+    /**
+     * Points (x, x^2 mod p) for the left half of a prime board, skipping any point attacked by one already taken.
+     * No three points of a parabola mod p lie on one line, and no two share a row or column
+     */
+    private static List<Queen> parabolaQueens(int p)
+    {
+        List<Queen> queens = new ArrayList<Queen>();
+        for (int x = 0; x <= (p - 1) / 2; x++)
+        {
+            int y = (int) ((long) x * x % p);
+            boolean attacked = false;
+            for (Queen queen : queens)
+            {
+                if (DirectionChecker.isAttack(x - queen.getX(), y - queen.getY()))
+                {
+                    attacked = true;
+                    break;
+                }
+            }
+            if (!attacked)
+            {
+                queens.add(new Queen(x, y));
+            }
+        }
+        return queens;
+    }
+
+    /**
+     * Moves a queen onto the row of the queen after it, so the two attack each other
+     */
+    private static void plantAttack(List<Queen> queens, int queen)
+    {
+        queens.set(queen, new Queen(queens.get(queen).getX(), queens.get(queen + 1).getY()));
+    }
+
+    /**
+     * @return The rejection of a check of one queen after another on the calling thread, or null if none
+     */
+    private static Verification checkInOrder(List<Queen> queens)
+    {
+        int[] xs = new int[queens.size()];
+        int[] ys = new int[queens.size()];
+        for (int i = 0; i < xs.length; i++)
+        {
+            xs[i] = queens.get(i).getX();
+            ys[i] = queens.get(i).getY();
+        }
+        LineCountMap directions = new LineCountMap(xs.length);
+        for (int i = 0; i < xs.length; i++)
+        {
+            Verification rejection = SolutionVerifier.checkQueen(xs, ys, i, directions);
+            if (rejection != null)
+            {
+                return rejection;
+            }
+        }
+        return null;
+    }
+
+    private static void assertRejected(Verification verification, int reason, int... queens)
+    {
+        assertFalse(verification.isVerified(), verification.getMessage());
+        assertEquals(reason, verification.getReason(), verification.getMessage());
+        assertArrayEquals(queens, verification.getQueens(), verification.getMessage());
+    }
+
+    @Test
+    public void acceptsValidSolution()
+    {
+        Verification verification = SolutionVerifier.verify(queens(1, 0, 3, 1, 0, 2, 2, 3), 4, 4, 4);
+        assertTrue(verification.isVerified(), verification.getMessage());
+        assertEquals(Verification.REASON_NONE, verification.getReason());
+    }
+
+    @Test
+    public void rejectsWrongQueenCount()
+    {
+        assertRejected(SolutionVerifier.verify(queens(1, 0, 3, 1, 0, 2), 4, 4, 4), Verification.REASON_QUEEN_COUNT);
+        assertRejected(SolutionVerifier.verify(queens(1, 0, 3, 1, 0, 2, 2, 3), 3, 4, 4), Verification.REASON_QUEEN_COUNT);
+    }
+
+    @Test
+    public void rejectsQueenOffBoard()
+    {
+        assertRejected(SolutionVerifier.verify(queens(1, 0, 4, 1, 0, 2, 2, 3), 4, 4, 4), Verification.REASON_OFF_BOARD, 1);
+        assertRejected(SolutionVerifier.verify(queens(1, 0, 3, 1, 0, 2, 2, -1), 4, 4, 4), Verification.REASON_OFF_BOARD, 3);
+    }
+
+    @Test
+    public void rejectsSharedSquare()
+    {
+        assertRejected(SolutionVerifier.verify(queens(0, 0, 2, 1, 0, 0), 3, 4, 4), Verification.REASON_SHARED_SQUARE, 0, 2);
+    }
+
+    @Test
+    public void rejectsAttack()
+    {
+        //Diagonal
+        assertRejected(SolutionVerifier.verify(queens(0, 0, 1, 2, 3, 3), 3, 4, 4), Verification.REASON_ATTACK, 0, 2);
+        //Row, found from the lower numbered queen of the pair
+        assertRejected(SolutionVerifier.verify(queens(0, 0, 1, 2, 3, 2), 3, 4, 4), Verification.REASON_ATTACK, 1, 2);
+    }
+
+    @Test
+    public void rejectsThreeInLineAlongReducedDirection()
+    {
+        //(2,4) from the first queen reduces to the same direction as (1,2)
+        assertRejected(SolutionVerifier.verify(queens(0, 0, 1, 2, 2, 4), 3, 5, 5), Verification.REASON_LINE, 0, 1, 2);
+        //Opposite directions (-2,-4) and (-1,-2) are the same line
+        assertRejected(SolutionVerifier.verify(queens(2, 4, 0, 0, 1, 2), 3, 5, 5), Verification.REASON_LINE, 0, 1, 2);
+    }
+
+    @Test
+    public void directionKeyMatchesEveryOffsetAlongALine()
+    {
+        long key = SolutionVerifier.directionKey(1, 2);
+        assertEquals(key, SolutionVerifier.directionKey(2, 4));
+        assertEquals(key, SolutionVerifier.directionKey(-3, -6));
+        assertTrue(key != SolutionVerifier.directionKey(-1, 2));
+        assertEquals(6, SolutionVerifier.binaryGcd(12, 18));
+    }
+
+    @Test
+    public void acceptsLargeValidSolution()
+    {
+        List<Queen> queens = parabolaQueens(LARGE_BOARD);
+        assertTrue(queens.size() >= SolutionVerifier.PARALLEL_THRESHOLD);
+        Verification verification = SolutionVerifier.verify(queens, queens.size(), LARGE_BOARD, LARGE_BOARD);
+        assertTrue(verification.isVerified(), verification.getMessage());
+    }
+
+    @Test
+    public void reportsLowestRejectionWhenSplit()
+    {
+        List<Queen> lateOnly = parabolaQueens(LARGE_BOARD);
+        plantAttack(lateOnly, 100);
+        //The moved queen also lines up with two earlier queens, which is found first
+        assertRejected(SolutionVerifier.verify(lateOnly, lateOnly.size(), LARGE_BOARD, LARGE_BOARD), Verification.REASON_LINE, 92, 99, 100);
+
+        List<Queen> queens = parabolaQueens(LARGE_BOARD);
+        plantAttack(queens, 100);
+        plantAttack(queens, 10);
+        Verification expected = checkInOrder(queens);
+        assertRejected(expected, Verification.REASON_ATTACK, 10, 11);
+        //Threads checking the later queens can finish first, so repeat to give them the chance
+        for (int run = 0; run < 20; run++)
+        {
+            Verification verification = SolutionVerifier.verify(queens, queens.size(), LARGE_BOARD, LARGE_BOARD);
+            assertRejected(verification, expected.getReason(), expected.getQueens());
+        }
+    }
+}
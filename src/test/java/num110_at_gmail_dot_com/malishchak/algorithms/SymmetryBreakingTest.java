@@ -0,0 +1,80 @@
+package num110_at_gmail_dot_com.malishchak.algorithms;
+
+import num110_at_gmail_dot_com.malishchak.N3Queens;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that symmetry breaking never changes the number of solutions counted, including runs that start past the
+ * first column, where rotations and reflections of a placement can start left of the search and symmetry breaking
+ * must be turned off.
+ *
+ * @author nmalishchak
+ * Copyright (C) 2021 Nick Malishchak
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+public class SymmetryBreakingTest
+{
+    private static final int THREADS = 2;
+
+    /**
+     * Counts with the algorithm N3Queens runs for an -algorithm index, on a square board
+     */
+    private static long count(int algorithm, int boardSize, int startX, boolean symmetryBreaking)
+    {
+        N3Queens.m_TargetQueens = boardSize;
+        N3Queens.m_BoardWidth = boardSize;
+        N3Queens.m_BoardHeight = boardSize;
+        N3Queens.m_StartXOffset = startX;
+        N3Queens.m_Threads = THREADS;
+        BaseN3QueensAlgorithm engine = N3Queens.createAlgorithm(algorithm);
+        N3Queens.m_StartXOffset = 0;
+        engine.setLoggingLevel(BaseN3QueensAlgorithm.LOGGING_LEVEL_NONE);
+        engine.setSymmetryBreaking(symmetryBreaking);
+        return engine.count().getTotal_solutions();
+    }
+
+    private static void assertSymmetryCountsMatch(int boardSize, int startX)
+    {
+        long expected = count(4, boardSize, startX, false);
+        for (int algorithm : new int[]{2, 3, 4, 5, 6, 8, 9, 10})
+        {
+            assertEquals(expected, count(algorithm, boardSize, startX, true),
+                    "Algorithm " + algorithm + " on " + boardSize + "x" + boardSize + " from startX " + startX);
+        }
+    }
+
+    @Test
+    public void symmetryCountsMatchFromFirstColumn()
+    {
+        assertSymmetryCountsMatch(8, 0);
+        assertSymmetryCountsMatch(10, 0);
+    }
+
+    @Test
+    public void symmetryCountsMatchPastFirstColumn()
+    {
+        assertSymmetryCountsMatch(8, 3);
+        assertSymmetryCountsMatch(10, 3);
+        assertSymmetryCountsMatch(10, 6);
+    }
+
+    @Test
+    public void plainCountFromStartXOnTenByTen()
+    {
+        assertEquals(29, count(4, 10, 3, false));
+        assertEquals(29, count(4, 10, 3, true));
+    }
+}